@@ -0,0 +1,106 @@
+package pt.up.fe.comp2023;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2023.analysis.Analyzer;
+import pt.up.fe.comp2023.backend.Backend;
+import pt.up.fe.comp2023.optimization.Optimizer;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * The programs each benchmark runs over, along with the output of every stage for them, so that each stage can be
+ * measured on its own.
+ * <p>
+ * {@code corpus} is every program in the test folder that compiles without errors, and {@code synthetic-N} is a
+ * single program with N methods from the {@link ProgramGenerator}, seeded with N.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkInputs {
+    @Param({"corpus", "synthetic-10", "synthetic-100"})
+    public String input;
+
+    public Map<String, String> config;
+    public List<String> sources;
+    public List<JmmParserResult> parserResults;
+    public List<JmmSemanticsResult> optimizedSemanticsResults;
+    public List<OllirResult> ollirResults;
+    public List<JasminResult> jasminResults;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        config = new HashMap<>();
+        config.put("optimize", "true");
+        config.put("registerAllocation", "0");
+        config.put("debug", "false");
+
+        var candidates = new ArrayList<String>();
+        if (input.equals("corpus")) {
+            var files = new ArrayList<>(SpecsIo.getFilesRecursive(new File("test"), List.of("jmm")));
+            files.sort(Comparator.comparing(File::getPath));
+
+            for (var file : files)
+                candidates.add(SpecsIo.read(file));
+        } else {
+            var methods = Integer.parseInt(input.substring(input.indexOf('-') + 1));
+            candidates.add(new ProgramGenerator(methods).className("Synthetic").methods(methods).generate());
+        }
+
+        sources = new ArrayList<>();
+        parserResults = new ArrayList<>();
+        optimizedSemanticsResults = new ArrayList<>();
+        ollirResults = new ArrayList<>();
+        jasminResults = new ArrayList<>();
+
+        for (var source : candidates) {
+            try {
+                var parserResult = new SimpleParser().parse(source, config);
+                if (hasErrors(parserResult.getReports()))
+                    continue;
+
+                // The analysis annotates the tree, so the parser results are kept unannotated
+                var semanticsResult = analyze(source);
+                if (semanticsResult == null)
+                    continue;
+
+                var optimizer = new Optimizer();
+                var ollirResult = optimizer.optimize(optimizer.toOllir(optimizer.optimize(semanticsResult)));
+                if (hasErrors(ollirResult.getReports()))
+                    continue;
+
+                var jasminResult = new Backend().toJasmin(ollirResult);
+                if (hasErrors(jasminResult.getReports()))
+                    continue;
+
+                sources.add(source);
+                parserResults.add(parserResult);
+                optimizedSemanticsResults.add(new Optimizer().optimize(analyze(source)));
+                ollirResults.add(ollirResult);
+                jasminResults.add(jasminResult);
+            } catch (RuntimeException e) {
+                // Programs the compiler does not support are left out
+            }
+        }
+    }
+
+    /**
+     * @return the semantic analysis of a freshly parsed tree, or null if there are errors
+     */
+    public JmmSemanticsResult analyze(String source) {
+        var parserResult = new SimpleParser().parse(source, config);
+        var semanticsResult = new Analyzer().semanticAnalysis(parserResult);
+
+        return hasErrors(semanticsResult.getReports()) ? null : semanticsResult;
+    }
+
+    private static boolean hasErrors(List<Report> reports) {
+        return reports.stream().anyMatch(report -> report.getType() == ReportType.ERROR);
+    }
+}
@@ -0,0 +1,122 @@
+package pt.up.fe.comp2023;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.analysis.Analyzer;
+import pt.up.fe.comp2023.analysis.JmmSymbolTable;
+import pt.up.fe.comp2023.backend.Backend;
+import pt.up.fe.comp2023.backend.JasminOptimizer;
+import pt.up.fe.comp2023.optimization.*;
+import pt.up.fe.comp2023.parser.RecursiveDescentParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each stage of the compiler on its own, over every program of the {@link BenchmarkInputs}.
+ * <p>
+ * Run with {@code gradle jmh}, the results are written to {@code build/reports/jmh/results.json}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompilerBenchmark {
+
+    /**
+     * Freshly analysed trees, for the optimizations that change the tree they visit.
+     */
+    @State(Scope.Thread)
+    public static class FreshTrees {
+        public List<JmmSemanticsResult> semanticsResults;
+
+        @Setup(Level.Invocation)
+        public void setup(BenchmarkInputs inputs) {
+            semanticsResults = new ArrayList<>();
+            for (var source : inputs.sources)
+                semanticsResults.add(inputs.analyze(source));
+        }
+    }
+
+    /**
+     * Freshly built OLLIR, since register allocation changes the variable tables of the methods.
+     */
+    @State(Scope.Thread)
+    public static class FreshOllir {
+        public List<OllirResult> ollirResults;
+
+        @Setup(Level.Invocation)
+        public void setup(BenchmarkInputs inputs) {
+            ollirResults = new ArrayList<>();
+            for (var semanticsResult : inputs.optimizedSemanticsResults)
+                ollirResults.add(new Optimizer().toOllir(semanticsResult));
+        }
+    }
+
+    @Benchmark
+    public void parse(BenchmarkInputs inputs, Blackhole blackhole) {
+        for (var source : inputs.sources)
+            blackhole.consume(new SimpleParser().parse(source, inputs.config));
+    }
+
+    @Benchmark
+    public void recursiveDescentParse(BenchmarkInputs inputs, Blackhole blackhole) {
+        for (var source : inputs.sources)
+            blackhole.consume(new RecursiveDescentParser().parse(source, inputs.config));
+    }
+
+    @Benchmark
+    public void semanticAnalysis(BenchmarkInputs inputs, Blackhole blackhole) {
+        for (var parserResult : inputs.parserResults)
+            blackhole.consume(new Analyzer().semanticAnalysis(parserResult));
+    }
+
+    @Benchmark
+    public void astSimplification(FreshTrees trees, Blackhole blackhole) {
+        for (var semanticsResult : trees.semanticsResults)
+            blackhole.consume(new ASTSimplificationVisitor().visit(semanticsResult.getRootNode()));
+    }
+
+    @Benchmark
+    public void constantFolding(FreshTrees trees, Blackhole blackhole) {
+        for (var semanticsResult : trees.semanticsResults)
+            blackhole.consume(new ConstantFoldingVisitor().visit(semanticsResult.getRootNode()));
+    }
+
+    @Benchmark
+    public void constantPropagation(FreshTrees trees, Blackhole blackhole) {
+        for (var semanticsResult : trees.semanticsResults)
+            blackhole.consume(new ConstantPropagationVisitor().visit(semanticsResult.getRootNode()));
+    }
+
+    @Benchmark
+    public void ollirGeneration(BenchmarkInputs inputs, Blackhole blackhole) {
+        for (var semanticsResult : inputs.optimizedSemanticsResults) {
+            var ollirBuilder = new OllirBuilder((JmmSymbolTable) semanticsResult.getSymbolTable());
+            ollirBuilder.visit(semanticsResult.getRootNode());
+            blackhole.consume(ollirBuilder.getOllirClass());
+        }
+    }
+
+    @Benchmark
+    public void registerAllocation(FreshOllir ollir, Blackhole blackhole) {
+        for (var ollirResult : ollir.ollirResults)
+            blackhole.consume(new RegisterAllocator().optimizeRegisters(ollirResult));
+    }
+
+    @Benchmark
+    public void jasminGeneration(BenchmarkInputs inputs, Blackhole blackhole) {
+        for (var ollirResult : inputs.ollirResults)
+            blackhole.consume(new Backend().toJasmin(ollirResult));
+    }
+
+    @Benchmark
+    public void jasminOptimization(BenchmarkInputs inputs, Blackhole blackhole) {
+        for (var jasminResult : inputs.jasminResults)
+            blackhole.consume(new JasminOptimizer().optimize(jasminResult));
+    }
+}
@@ -0,0 +1,106 @@
+package pt.up.fe.comp2023;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp2023.parser.RecursiveDescentParser;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Measures how fast the {@link IterativeJmmVisitor}s pick the visit method of each node, over the AST of a single
+ * program with N methods from the {@link ProgramGenerator}, which for the largest has millions of nodes.
+ * <p>
+ * With {@code dispatch=table}, the tree is made of {@link CompactJmmNode}s, whose visit method is taken from a table
+ * indexed by their kind. With {@code dispatch=map}, it is the same tree made of {@link JmmNodeImpl}s, whose visit
+ * method is looked up by the kinds of their hierarchy in the map filled by {@code addVisit}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class VisitorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class LargeTree {
+        @Param({"100", "1000"})
+        public int methods;
+
+        @Param({"table", "map"})
+        public String dispatch;
+
+        public JmmNode root;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            var source = new ProgramGenerator(methods).className("Synthetic").methods(methods).generate();
+            root = new RecursiveDescentParser().parse(source, new HashMap<>()).getRootNode();
+
+            if (dispatch.equals("map"))
+                root = toJmmNodeImpl(root);
+        }
+
+        private static JmmNode toJmmNodeImpl(JmmNode node) {
+            var copy = new JmmNodeImpl(node.getKind());
+            copy.setHierarchy(node.getHierarchy());
+            for (var attribute : node.getAttributes())
+                copy.put(attribute, node.get(attribute));
+            for (var child : node.getChildren())
+                copy.add(toJmmNodeImpl(child));
+            return copy;
+        }
+    }
+
+    /**
+     * Has a visit method for every kind of statement and expression, like the visitors of the compiler, which only
+     * count the nodes they visit.
+     */
+    private static class CountingVisitor extends IterativeJmmVisitor<Void, Integer> {
+        @Override
+        protected void buildVisitor() {
+            for (var kind : NodeKind.values())
+                if (kind.getHierarchy().contains("Statement") || kind.getHierarchy().contains("Expression"))
+                    addVisit(kind.name(), this::visitChildren);
+
+            setDefaultVisit(this::visitChildren);
+        }
+
+        private void visitChildren(JmmNode node, Void data, Consumer<Integer> result) {
+            visitAll(node.getChildren(), data, counts -> {
+                int count = 1;
+                for (var childCount : counts)
+                    count += childCount;
+                result.accept(count);
+            });
+        }
+    }
+
+    /**
+     * Visits every node after its children, with the method of a few kinds and the default one for the rest.
+     */
+    private static class PostorderCountingVisitor extends IterativePostorderJmmVisitor<Void, Integer> {
+        @Override
+        protected void buildVisitor() {
+            addVisit("BinaryOp", (node, data) -> 1);
+            addVisit("IdentifierExpression", (node, data) -> 1);
+            addVisit("LiteralExpression", (node, data) -> 1);
+            addVisit("Statement", (node, data) -> 1);
+            setDefaultVisit((node, data) -> 1);
+            setReduceSimple(Integer::sum);
+        }
+    }
+
+    @Benchmark
+    public void preorder(LargeTree tree, Blackhole blackhole) {
+        blackhole.consume(new CountingVisitor().visit(tree.root));
+    }
+
+    @Benchmark
+    public void postorder(LargeTree tree, Blackhole blackhole) {
+        blackhole.consume(new PostorderCountingVisitor().visit(tree.root));
+    }
+}
@@ -1,3 +1,3 @@
 @echo off
 
-call "./build/install/jmm/bin/jmm.bat" %*
+java -cp "./build/install/jmm/lib/*" pt.up.fe.comp2023.CompileClient %*
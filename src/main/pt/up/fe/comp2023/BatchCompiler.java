@@ -0,0 +1,127 @@
+package pt.up.fe.comp2023;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compiles every .jmm file inside a folder in parallel, writing a .j file (or a .class file, with {@code --emit=class})
+ * for each of them.
+ * <p>
+ * The reports of each file are buffered and printed together, in the order the files were found, so the output of
+ * different files is never interleaved.
+ */
+public class BatchCompiler {
+    private final Map<String, String> config;
+
+    public BatchCompiler(Map<String, String> config) {
+        this.config = config;
+    }
+
+    private record FileResult(File file, boolean success, String out, String err, Metrics metrics) {
+    }
+
+    /**
+     * @return the exit code of the whole batch, 0 if every file was compiled successfully and 1 otherwise
+     */
+    public int compile(File folder) {
+        if (!folder.isDirectory()) {
+            System.err.println("Expected a path to an existing folder, got '" + folder + "'.");
+            return 1;
+        }
+
+        var files = new ArrayList<>(SpecsIo.getFilesRecursive(folder, List.of("jmm")));
+        files.sort(Comparator.comparing(File::getPath));
+
+        var jobs = Integer.parseInt(config.getOrDefault("jobs", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        var pool = new ForkJoinPool(Math.max(1, jobs));
+
+        try {
+            List<ForkJoinTask<FileResult>> tasks = new ArrayList<>();
+            for (var file : files)
+                tasks.add(pool.submit(() -> compileFile(folder, file)));
+
+            var exitCode = 0;
+            var metrics = new JsonArray();
+            for (var task : tasks) {
+                var result = task.join();
+
+                var fileMetrics = result.metrics().toJsonObject();
+                fileMetrics.addProperty("file", result.file().getPath());
+                metrics.add(fileMetrics);
+
+                System.out.println("[" + result.file().getPath() + "]");
+                System.out.print(result.out());
+                System.err.print(result.err());
+
+                if (!result.success())
+                    exitCode = 1;
+            }
+
+            if (config.containsKey("metricsFile")) {
+                var json = new JsonObject();
+                json.add("files", metrics);
+                SpecsIo.write(new File(config.get("metricsFile")), Metrics.toJson(json));
+            }
+
+            System.out.println("Compiled " + files.size() + " files, " + (exitCode == 0 ? "no errors" : "with errors"));
+            System.out.flush();
+            System.err.flush();
+
+            return exitCode;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private FileResult compileFile(File folder, File file) {
+        var out = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+        var outStream = new PrintStream(out, true);
+        var errStream = new PrintStream(err, true);
+
+        var fileConfig = new HashMap<>(config);
+        fileConfig.put("inputFile", file.getPath());
+        fileConfig.remove("batchFolder");
+
+        var metrics = new Metrics();
+
+        boolean success;
+        try {
+            if (Launcher.emitsClassFile(config)) {
+                var classFileResult = Launcher.compileClassFile(SpecsIo.read(file), fileConfig, outStream, errStream, metrics);
+                success = classFileResult != null;
+
+                if (success)
+                    classFileResult.write(getOutputFolder(folder, file));
+            } else {
+                var jasminFile = new File(getOutputFolder(folder, file), SpecsIo.removeExtension(file.getName()) + ".j");
+                success = Launcher.compileToFile(SpecsIo.read(file), fileConfig, outStream, errStream, metrics, jasminFile);
+            }
+        } catch (RuntimeException e) {
+            errStream.println("ERROR@GENERATION Exception during compilation: " + e);
+            success = false;
+        }
+
+        return new FileResult(file, success, out.toString(), err.toString(), metrics);
+    }
+
+    private File getOutputFolder(File folder, File file) {
+        if (!config.containsKey("outputFolder"))
+            return file.getParentFile();
+
+        var relative = SpecsIo.getRelativePath(file.getParentFile(), folder);
+        return new File(config.get("outputFolder"), relative);
+    }
+}
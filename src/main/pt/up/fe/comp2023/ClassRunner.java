@@ -0,0 +1,157 @@
+package pt.up.fe.comp2023;
+
+import jasmin.ClassFile;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.specs.util.system.ProcessOutputAsString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Runs generated classes inside the current JVM, instead of writing them to disk and starting a new one.
+ * <p>
+ * Each class is defined in its own class loader, which also loads the jmm libraries, so classes from different runs
+ * never see each other. The standard output and error are captured while {@code main} runs, which replaces them for the
+ * whole JVM, so only one class runs at a time.
+ */
+public class ClassRunner {
+    private static final Object RUN_LOCK = new Object();
+
+    private static class GeneratedClassLoader extends URLClassLoader {
+        private final String className;
+        private final byte[] classFile;
+
+        private GeneratedClassLoader(String className, byte[] classFile, URL[] classpath) {
+            super(classpath, ClassLoader.getPlatformClassLoader());
+            this.className = className;
+            this.classFile = classFile;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            if (name.equals(className))
+                return defineClass(name, classFile, 0, classFile.length);
+
+            return super.findClass(name);
+        }
+    }
+
+    /**
+     * Assembles the Jasmin code in memory, through the Jasmin API.
+     *
+     * @return the bytes of the class file
+     */
+    public static byte[] assemble(JasminResult jasminResult) {
+        var classFile = new ClassFile();
+
+        try {
+            classFile.readJasmin(new StringReader(jasminResult.getJasminCode()), jasminResult.getClassName(), false);
+            if (classFile.errorCount() > 0)
+                throw new RuntimeException("Could not assemble " + jasminResult.getClassName() + ", found " + classFile.errorCount() + " errors");
+
+            var bytes = new ByteArrayOutputStream();
+            classFile.write(bytes);
+            return bytes.toByteArray();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Could not assemble " + jasminResult.getClassName(), e);
+        }
+    }
+
+    public static ProcessOutputAsString run(JasminResult jasminResult, List<String> args, boolean print) {
+        return run(jasminResult.getClassName(), assemble(jasminResult), args, print);
+    }
+
+    /**
+     * Calls the main method of the given class, with the jmm libraries in its classpath.
+     *
+     * @param print whether the output is also printed as the program runs
+     * @return the captured output, with a return value of 1 if the program threw an exception
+     */
+    public static ProcessOutputAsString run(String className, byte[] classFile, List<String> args, boolean print) {
+        var out = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+        var returnValue = 0;
+
+        synchronized (RUN_LOCK) {
+            var systemOut = System.out;
+            var systemErr = System.err;
+
+            var outStream = new PrintStream(print ? new TeeOutputStream(out, systemOut) : out, true, StandardCharsets.UTF_8);
+            var errStream = new PrintStream(print ? new TeeOutputStream(err, systemErr) : err, true, StandardCharsets.UTF_8);
+
+            System.setOut(outStream);
+            System.setErr(errStream);
+
+            try (var loader = new GeneratedClassLoader(className, classFile, getLibsClasspath())) {
+                var main = loader.loadClass(className).getMethod("main", String[].class);
+                if (!Modifier.isStatic(main.getModifiers()))
+                    throw new NoSuchMethodException(className + ".main is not static");
+
+                main.invoke(null, (Object) args.toArray(String[]::new));
+            } catch (InvocationTargetException e) {
+                e.getCause().printStackTrace(errStream);
+                returnValue = 1;
+            } catch (ReflectiveOperationException | LinkageError | IOException e) {
+                errStream.println("Could not run " + className + ": " + e);
+                returnValue = 1;
+            } finally {
+                outStream.flush();
+                errStream.flush();
+                System.setOut(systemOut);
+                System.setErr(systemErr);
+            }
+        }
+
+        return new ProcessOutputAsString(returnValue, out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8));
+    }
+
+    private static URL[] getLibsClasspath() {
+        try {
+            return new URL[]{new File(TestUtils.getLibsClasspath()).toURI().toURL()};
+        } catch (MalformedURLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class TeeOutputStream extends OutputStream {
+        private final OutputStream first;
+        private final OutputStream second;
+
+        private TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            first.flush();
+            second.flush();
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+import pt.up.fe.specs.util.SpecsCheck;
+import pt.up.fe.specs.util.SpecsSystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A {@link JmmNode} that takes a fraction of the memory of a {@link pt.up.fe.comp.jmm.ast.JmmNodeImpl}, for the ASTs
+ * the parsers build.
+ * <p>
+ * The kind is a {@link NodeKind}, which also gives the hierarchy. The attributes are kept in a single array of
+ * alternating names and values, in the order they were first put, as a node only ever has a few, and the position is
+ * kept in four ints instead of four strings. The children are kept in an array, and each child knows its index in it,
+ * so replacing a node does not have to search for it.
+ */
+public class CompactJmmNode implements JmmNode {
+    private static final Object[] NO_ATTRIBUTES = {};
+    private static final JmmNode[] NO_CHILDREN = {};
+    private static final int NO_POSITION = Integer.MIN_VALUE;
+
+    private final NodeKind kind;
+    private JmmNode parent;
+    private int index = -1;
+
+    private Object[] attributes = NO_ATTRIBUTES;
+    private int numAttributes;
+    private JmmNode[] children = NO_CHILDREN;
+    private int numChildren;
+
+    private int lineStart = NO_POSITION;
+    private int colStart = NO_POSITION;
+    private int lineEnd = NO_POSITION;
+    private int colEnd = NO_POSITION;
+
+    public CompactJmmNode(NodeKind kind) {
+        this.kind = kind;
+    }
+
+    public NodeKind getNodeKind() {
+        return kind;
+    }
+
+    @Override
+    public String getKind() {
+        return kind.name();
+    }
+
+    @Override
+    public Collection<String> getHierarchy() {
+        return kind.getHierarchy();
+    }
+
+    public void setPosition(int lineStart, int colStart, int lineEnd, int colEnd) {
+        this.lineStart = lineStart;
+        this.colStart = colStart;
+        this.lineEnd = lineEnd;
+        this.colEnd = colEnd;
+    }
+
+    // Attributes
+
+    @Override
+    public Collection<String> getAttributes() {
+        var names = new ArrayList<String>(numAttributes + 4);
+        for (int i = 0; i < numAttributes; i++)
+            names.add((String) attributes[2 * i]);
+
+        for (var position : NodePosition.values())
+            if (getPosition(position.getKey()) != NO_POSITION)
+                names.add(position.getKey());
+
+        return names;
+    }
+
+    @Override
+    public boolean hasAttribute(String attribute) {
+        return indexOf(attribute) >= 0 || getPosition(attribute) != NO_POSITION;
+    }
+
+    @Override
+    public void putObject(String attribute, Object value) {
+        if (setPosition(attribute, value))
+            return;
+
+        int i = indexOf(attribute);
+        if (i >= 0) {
+            attributes[2 * i + 1] = value;
+            return;
+        }
+
+        if (2 * numAttributes == attributes.length)
+            attributes = Arrays.copyOf(attributes, Math.max(4, 2 * attributes.length));
+
+        attributes[2 * numAttributes] = attribute;
+        attributes[2 * numAttributes + 1] = value;
+        numAttributes++;
+    }
+
+    @Override
+    public Object getObject(String attribute) {
+        var value = getAttribute(attribute);
+
+        SpecsCheck.checkNotNull(value, () -> "Node " + getKind() + " does not contain attribute '" + attribute + "'");
+
+        return value;
+    }
+
+    @Override
+    public Optional<Object> getOptionalObject(String attribute) {
+        return Optional.ofNullable(getAttribute(attribute));
+    }
+
+    private Object getAttribute(String attribute) {
+        int i = indexOf(attribute);
+        if (i >= 0)
+            return attributes[2 * i + 1];
+
+        var position = getPosition(attribute);
+        return position == NO_POSITION ? null : Integer.toString(position);
+    }
+
+    private int indexOf(String attribute) {
+        // The names are almost always the same literals, so they are compared by identity before by value
+        for (int i = 0; i < numAttributes; i++)
+            if (attributes[2 * i] == attribute)
+                return i;
+
+        for (int i = 0; i < numAttributes; i++)
+            if (attributes[2 * i].equals(attribute))
+                return i;
+
+        return -1;
+    }
+
+    private int getPosition(String attribute) {
+        return switch (attribute) {
+            case "lineStart" -> lineStart;
+            case "colStart" -> colStart;
+            case "lineEnd" -> lineEnd;
+            case "colEnd" -> colEnd;
+            default -> NO_POSITION;
+        };
+    }
+
+    /**
+     * @return whether the attribute is part of the position, which is then set to the value
+     */
+    private boolean setPosition(String attribute, Object value) {
+        switch (attribute) {
+            case "lineStart" -> lineStart = Integer.parseInt(value.toString());
+            case "colStart" -> colStart = Integer.parseInt(value.toString());
+            case "lineEnd" -> lineEnd = Integer.parseInt(value.toString());
+            case "colEnd" -> colEnd = Integer.parseInt(value.toString());
+            default -> {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Tree
+
+    @Override
+    public JmmNode getJmmParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(JmmNode parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public void removeParent() {
+        parent = null;
+        index = -1;
+    }
+
+    @Override
+    public List<JmmNode> getChildren() {
+        var copy = new ArrayList<JmmNode>(numChildren);
+        for (int i = 0; i < numChildren; i++)
+            copy.add(children[i]);
+        return copy;
+    }
+
+    @Override
+    public JmmNode getJmmChild(int index) {
+        Objects.checkIndex(index, numChildren);
+        return children[index];
+    }
+
+    @Override
+    public int getNumChildren() {
+        return numChildren;
+    }
+
+    @Override
+    public void add(JmmNode child) {
+        add(child, numChildren);
+    }
+
+    @Override
+    public void add(JmmNode child, int index) {
+        Objects.checkIndex(index, numChildren + 1);
+
+        if (numChildren == children.length)
+            children = Arrays.copyOf(children, Math.max(2, 2 * children.length));
+
+        System.arraycopy(children, index, children, index + 1, numChildren - index);
+        numChildren++;
+        place(child, index);
+        reindex(index + 1);
+    }
+
+    @Override
+    public void setChild(JmmNode newNode, int index) {
+        var currentChild = getJmmChild(index);
+
+        // If the new node already has a parent, the current child takes its place there
+        var newNodeParent = newNode.getJmmParent();
+        if (newNodeParent != null) {
+            int newNodeIndex = newNode.getIndexOfSelf();
+            newNodeParent.removeJmmChild(newNodeIndex);
+            currentChild.removeParent();
+            newNodeParent.add(currentChild, newNodeIndex);
+        } else
+            currentChild.removeParent();
+
+        place(newNode, index);
+    }
+
+    @Override
+    public JmmNode removeJmmChild(int index) {
+        if (index >= numChildren) {
+            System.out.println("[WARNING] Tried to remove child at index " + index + ", but node only has "
+                    + numChildren + " children");
+            return null;
+        }
+
+        var removedChild = children[index];
+
+        System.arraycopy(children, index + 1, children, index, numChildren - index - 1);
+        children[--numChildren] = null;
+        reindex(index);
+
+        removedChild.removeParent();
+        return removedChild;
+    }
+
+    @Override
+    public int removeJmmChild(JmmNode node) {
+        int index = node.getJmmParent() == this ? node.getIndexOfSelf() : -1;
+
+        if (index < 0) {
+            System.out.println("[WARNING] Tried to remove child from node, but could not find it.\nChild:" + node
+                    + "\nParent:" + this);
+            return -1;
+        }
+
+        removeJmmChild(index);
+        return index;
+    }
+
+    @Override
+    public void delete() {
+        if (parent == null) {
+            System.out.println("[WARNING] Tried to remove itself from the tree, but node has no parent");
+            return;
+        }
+
+        parent.removeJmmChild(this);
+    }
+
+    @Override
+    public int getIndexOfSelf() {
+        if (parent instanceof CompactJmmNode compactParent && compactParent.isChildAt(this, index))
+            return index;
+
+        return JmmNode.super.getIndexOfSelf();
+    }
+
+    private boolean isChildAt(JmmNode node, int index) {
+        return index >= 0 && index < numChildren && children[index] == node;
+    }
+
+    private void place(JmmNode child, int index) {
+        children[index] = child;
+        child.setParent(this);
+        if (child instanceof CompactJmmNode compactChild)
+            compactChild.index = index;
+    }
+
+    private void reindex(int from) {
+        for (int i = from; i < numChildren; i++)
+            if (children[i] instanceof CompactJmmNode compactChild)
+                compactChild.index = i;
+    }
+
+    @Override
+    public String toString() {
+        var string = new StringBuilder(getKind());
+
+        for (int i = 0; i < numAttributes; i++)
+            string.append(i == 0 ? " (" : ", ").append(attributes[2 * i]).append(": ").append(attributes[2 * i + 1]);
+
+        if (numAttributes > 0)
+            string.append(")");
+
+        if (SpecsSystem.isDebug() && lineStart != NO_POSITION)
+            string.append(" ").append(lineStart).append(":").append(colStart)
+                    .append("->").append(lineEnd).append(":").append(colEnd);
+
+        return string.toString();
+    }
+}
@@ -0,0 +1,291 @@
+package pt.up.fe.comp2023;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content-addressed on-disk cache of compilation results, keyed by the hash of the source code, of the config options
+ * that change the generated code and of the {@link CompilerVersion} that generated it, so a cache folder that outlives
+ * a change to the compiler does not keep serving the old code.
+ * <p>
+ * Each entry stores the reports of every stage that ran and, if none of them failed, the generated jasmin, so a hit
+ * replays the whole pipeline. The entries live in {@code objects/}, and {@code index} is a memory-mapped hash table
+ * with the size and last access time of each of them, used to evict the least recently used entries once the cache
+ * grows over its maximum size.
+ */
+public class CompilationCache {
+    // The input file ends up in the .source directive, and debug mode adds warnings to the reports
+    private static final List<String> KEY_OPTIONS = List.of("optimize", "registerAllocation", "debug", "inputFile");
+
+    private static final int MAGIC = 0x4a4d4d43;
+    private static final int HEADER_SIZE = Integer.BYTES;
+    private static final int HASH_SIZE = 32;
+    private static final int SLOT_SIZE = HASH_SIZE + 2 * Long.BYTES;
+    private static final int SLOT_COUNT = 8192;
+    private static final int PROBE_LENGTH = 8;
+    private static final long DEFAULT_MAX_SIZE = 64L << 20;
+
+    private static final Map<File, CompilationCache> caches = new ConcurrentHashMap<>();
+
+    private record CachedReport(ReportType type, Stage stage, int line, int column, String message) {
+    }
+
+    private record Entry(List<CachedReport> reports, String className, String jasmin) {
+    }
+
+    public record Result(List<Report> reports, JasminResult jasminResult) {
+    }
+
+    private final Gson gson = new Gson();
+    private final Path objectsFolder;
+    private final FileChannel indexChannel;
+    private final MappedByteBuffer index;
+
+    private CompilationCache(File folder) {
+        this.objectsFolder = new File(folder, "objects").toPath();
+
+        try {
+            Files.createDirectories(objectsFolder);
+
+            indexChannel = FileChannel.open(new File(folder, "index").toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) SLOT_COUNT * SLOT_SIZE);
+
+            var lock = indexChannel.lock();
+            try {
+                if (index.getInt(0) != MAGIC) {
+                    for (int i = 0; i < index.capacity(); i++)
+                        index.put(i, (byte) 0);
+
+                    index.putInt(0, MAGIC);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not open the compilation cache in '" + folder + "'", e);
+        }
+    }
+
+    /**
+     * @return the cache in the folder given by the {@code cacheFolder} option, or null if caching is disabled
+     */
+    public static CompilationCache open(Map<String, String> config) {
+        if (!config.containsKey("cacheFolder"))
+            return null;
+
+        var folder = new File(config.get("cacheFolder")).getAbsoluteFile();
+
+        return caches.computeIfAbsent(folder, CompilationCache::new);
+    }
+
+    /**
+     * The maximum size is read from the config of each put, as the same cache is shared by every compilation in the
+     * JVM that uses its folder, which may set different sizes.
+     */
+    private static long getMaxSize(Map<String, String> config) {
+        return config.containsKey("cacheSize") ? Long.parseLong(config.get("cacheSize")) << 20 : DEFAULT_MAX_SIZE;
+    }
+
+    public static byte[] key(String code, Map<String, String> config) {
+        return key(code, config, CompilerVersion.fingerprint());
+    }
+
+    /**
+     * @param compilerVersion the {@link CompilerVersion#fingerprint()} of the compiler that generates the result
+     */
+    public static byte[] key(String code, Map<String, String> config, String compilerVersion) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+
+        digest.update(("compiler=" + compilerVersion + "\n").getBytes(StandardCharsets.UTF_8));
+        for (var option : KEY_OPTIONS)
+            digest.update((option + "=" + config.get(option) + "\n").getBytes(StandardCharsets.UTF_8));
+        digest.update(code.getBytes(StandardCharsets.UTF_8));
+
+        return digest.digest();
+    }
+
+    /**
+     * @return the cached result for the given key, or null if it is not in the cache
+     */
+    public synchronized Result get(byte[] key, Map<String, String> config) throws IOException {
+        var lock = indexChannel.lock();
+        try {
+            var slot = findSlot(key);
+            if (slot == -1)
+                return null;
+
+            Entry entry;
+            try {
+                entry = gson.fromJson(Files.readString(getObject(key)), Entry.class);
+            } catch (NoSuchFileException | JsonParseException e) {
+                clearSlot(slot);
+                return null;
+            }
+
+            index.putLong(slot + HASH_SIZE, System.currentTimeMillis());
+
+            var reports = new ArrayList<Report>();
+            for (var report : entry.reports())
+                reports.add(new Report(report.type(), report.stage(), report.line(), report.column(), report.message()));
+
+            var jasminResult = entry.jasmin() == null ? null : new JasminResult(entry.className(), entry.jasmin(), reports, config);
+
+            return new Result(reports, jasminResult);
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * Debug reports are only stored when debug mode is on, so their messages are not built otherwise.
+     */
+    public synchronized void put(byte[] key, List<Report> reports, JasminResult jasminResult, Map<String, String> config) throws IOException {
+        var debug = Boolean.parseBoolean(config.get("debug"));
+        var cachedReports = reports.stream()
+                .filter(report -> debug || report.getType() != ReportType.DEBUG)
+                .map(report -> new CachedReport(report.getType(), report.getStage(), report.getLine(), report.getColumn(), report.getMessage()))
+                .toList();
+        var entry = jasminResult == null
+                ? new Entry(cachedReports, null, null)
+                : new Entry(cachedReports, jasminResult.getClassName(), jasminResult.getJasminCode());
+
+        var object = getObject(key);
+        var temp = Files.createTempFile(objectsFolder, null, ".tmp");
+        Files.writeString(temp, gson.toJson(entry));
+        var size = Files.size(temp);
+
+        var lock = indexChannel.lock();
+        try {
+            Files.move(temp, object, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            var slot = findSlot(key);
+            if (slot == -1)
+                slot = findFreeSlot(key);
+
+            index.put(slot, key, 0, HASH_SIZE);
+            index.putLong(slot + HASH_SIZE, System.currentTimeMillis());
+            index.putLong(slot + HASH_SIZE + Long.BYTES, size);
+
+            evict(getMaxSize(config));
+        } finally {
+            lock.release();
+        }
+    }
+
+    private int getBucket(byte[] key) {
+        var hash = ((key[0] & 0xff) << 24) | ((key[1] & 0xff) << 16) | ((key[2] & 0xff) << 8) | (key[3] & 0xff);
+        return Integer.remainderUnsigned(hash, SLOT_COUNT);
+    }
+
+    private int getSlot(int bucket, int probe) {
+        return HEADER_SIZE + ((bucket + probe) % SLOT_COUNT) * SLOT_SIZE;
+    }
+
+    private long getSize(int slot) {
+        return index.getLong(slot + HASH_SIZE + Long.BYTES);
+    }
+
+    private long getLastAccess(int slot) {
+        return index.getLong(slot + HASH_SIZE);
+    }
+
+    private int findSlot(byte[] key) {
+        var bucket = getBucket(key);
+
+        for (int probe = 0; probe < PROBE_LENGTH; probe++) {
+            var slot = getSlot(bucket, probe);
+            if (getSize(slot) != 0 && index.slice(slot, HASH_SIZE).equals(ByteBuffer.wrap(key)))
+                return slot;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds an empty slot in the bucket of the key, evicting the least recently used entry of the bucket if it is full.
+     */
+    private int findFreeSlot(byte[] key) throws IOException {
+        var bucket = getBucket(key);
+        var oldest = -1;
+
+        for (int probe = 0; probe < PROBE_LENGTH; probe++) {
+            var slot = getSlot(bucket, probe);
+            if (getSize(slot) == 0)
+                return slot;
+
+            if (oldest == -1 || getLastAccess(slot) < getLastAccess(oldest))
+                oldest = slot;
+        }
+
+        removeSlot(oldest);
+        return oldest;
+    }
+
+    private void evict(long maxSize) throws IOException {
+        var slots = new ArrayList<Integer>();
+        long total = 0;
+
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            var slot = getSlot(i, 0);
+            if (getSize(slot) != 0) {
+                slots.add(slot);
+                total += getSize(slot);
+            }
+        }
+
+        if (total <= maxSize)
+            return;
+
+        slots.sort(Comparator.comparingLong(this::getLastAccess));
+
+        for (var slot : slots) {
+            if (total <= maxSize)
+                break;
+
+            total -= getSize(slot);
+            removeSlot(slot);
+        }
+    }
+
+    private void removeSlot(int slot) throws IOException {
+        var key = new byte[HASH_SIZE];
+        index.get(slot, key, 0, HASH_SIZE);
+
+        Files.deleteIfExists(getObject(key));
+        clearSlot(slot);
+    }
+
+    private void clearSlot(int slot) {
+        index.putLong(slot + HASH_SIZE, 0);
+        index.putLong(slot + HASH_SIZE + Long.BYTES, 0);
+    }
+
+    private Path getObject(byte[] key) {
+        return objectsFolder.resolve(HexFormat.of().formatHex(key) + ".json");
+    }
+}
@@ -0,0 +1,214 @@
+package pt.up.fe.comp2023;
+
+import com.google.gson.Gson;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2023.backend.ClassFileResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.*;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Thin client for {@link CompileServer}, taking the same arguments as {@link Launcher}. A batch ({@code -b}) is
+ * compiled by the client itself.
+ * <p>
+ * If no server is listening yet, or the one listening is from another build of the compiler, one is started in the
+ * background with the classpath of the client, and left running for the next invocations. {@code --shutdown} stops it.
+ * <p>
+ * The server may have been started from another directory, so the paths in the arguments and the parser named by
+ * config.properties are resolved here before sending them.
+ */
+public class CompileClient {
+    private static final int CONNECT_ATTEMPTS = 100;
+    private static final long CONNECT_DELAY_MS = 100;
+    private static final List<String> PATH_OPTIONS = List.of("-i=", "--input=", "--cache=");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var address = CompileServer.parseAddress(args);
+        var serverArgs = new ArrayList<String>();
+        var request = new CompileServer.Request();
+
+        for (var arg : args) {
+            if (arg.startsWith("--socket=") || arg.startsWith("--port="))
+                serverArgs.add(arg);
+            else if (arg.equals("--shutdown"))
+                request.shutdown = true;
+            else
+                request.args.add(resolvePath(arg));
+        }
+
+        if (!request.shutdown)
+            request.args.add("--parser=" + Launcher.getParserClass());
+
+        // Started explicitly on the address of the client, the default one depends on the class path of the server
+        if (serverArgs.isEmpty() && address instanceof UnixDomainSocketAddress unixAddress)
+            serverArgs.add("--socket=" + unixAddress.getPath());
+
+        var config = Launcher.parseArgs(request.args.toArray(String[]::new));
+
+        // A batch already shares a single JVM between its files, so it is compiled here instead of in the server
+        if (!request.shutdown && config.containsKey("batchFolder")) {
+            Launcher.main(request.args.toArray(String[]::new));
+            return;
+        }
+
+        File inputFile = null;
+        if (!request.shutdown) {
+            if (!config.containsKey("inputFile")) {
+                System.err.println("Missing input file.");
+                System.exit(1);
+            }
+
+            inputFile = new File(config.get("inputFile"));
+            if (!inputFile.isFile())
+                throw new RuntimeException("Expected a path to an existing input file, got '" + inputFile + "'.");
+
+            // The server may run on another directory, so the code is sent instead of the path
+            request.code = SpecsIo.read(inputFile);
+            request.version = CompilerVersion.fingerprint();
+        }
+
+        var response = send(request, address, serverArgs);
+
+        // The stale server has already stopped, so the next connection starts a new one
+        if (response != null && response.stale)
+            response = send(request, address, serverArgs);
+
+        if (response == null)
+            return;
+
+        if (response.stale) {
+            System.err.println("The compile server is from another build of the compiler.");
+            System.exit(1);
+        }
+
+        System.out.print(response.out);
+        System.err.print(response.err);
+        System.out.flush();
+        System.err.flush();
+
+        if (response.metrics != null) {
+            response.metrics.addProperty("file", inputFile.getPath());
+            SpecsIo.write(new File(config.get("metricsFile")), Metrics.toJson(response.metrics));
+        }
+
+        if (!response.success)
+            System.exit(1);
+
+        if (response.classFile != null) {
+            var classFile = Base64.getDecoder().decode(response.classFile);
+            if (Launcher.runsIsolated(config))
+                new ClassFileResult(response.className, classFile, new ArrayList<>(), config).run();
+            else
+                ClassRunner.run(response.className, classFile, List.of(), true);
+            return;
+        }
+
+        var jasminResult = new JasminResult(response.className, response.jasmin, new ArrayList<>(), config);
+        if (Launcher.runsIsolated(config))
+            jasminResult.run();
+        else
+            ClassRunner.run(jasminResult, List.of(), true);
+    }
+
+    /**
+     * Sends the request, starting a server if needed.
+     *
+     * @return the answer of the server, or null for a shutdown request
+     */
+    private static CompileServer.Response send(CompileServer.Request request, SocketAddress address, List<String> serverArgs) throws IOException, InterruptedException {
+        var gson = new Gson();
+
+        try (var channel = connect(address, serverArgs, !request.shutdown)) {
+            if (channel == null)
+                return null;
+
+            var writer = new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+            var reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+
+            writer.println(gson.toJson(request));
+            writer.flush();
+
+            if (request.shutdown)
+                return null;
+
+            var line = reader.readLine();
+            if (line == null) {
+                System.err.println("The compile server closed the connection without answering.");
+                System.exit(1);
+            }
+
+            return gson.fromJson(line, CompileServer.Response.class);
+        }
+    }
+
+    /**
+     * Makes the path of a path option absolute, since the server does not share the working directory of the client.
+     */
+    static String resolvePath(String arg) {
+        for (var option : PATH_OPTIONS) {
+            if (arg.startsWith(option))
+                return option + new File(arg.substring(option.length())).getAbsolutePath();
+        }
+
+        return arg;
+    }
+
+    private static SocketChannel connect(SocketAddress address, List<String> serverArgs, boolean startServer) throws IOException, InterruptedException {
+        try {
+            return open(address);
+        } catch (IOException e) {
+            if (!startServer)
+                return null;
+        }
+
+        startServer(serverArgs);
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return open(address);
+            } catch (IOException e) {
+                if (attempt == CONNECT_ATTEMPTS)
+                    throw e;
+
+                Thread.sleep(CONNECT_DELAY_MS);
+            }
+        }
+    }
+
+    private static SocketChannel open(SocketAddress address) throws IOException {
+        var channel = SocketChannel.open(CompileServer.getFamily(address));
+
+        try {
+            channel.connect(address);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void startServer(List<String> serverArgs) throws IOException {
+        var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+        var command = new ArrayList<String>();
+        command.add(java);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(CompileServer.class.getName());
+        command.addAll(serverArgs);
+
+        new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+}
@@ -0,0 +1,263 @@
+package pt.up.fe.comp2023;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import pt.up.fe.specs.util.SpecsSystem;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-running compile server, so that the JVM, the ANTLR DFA caches and the OLLIR/Jasmin libraries are loaded only
+ * once and shared between every compilation.
+ * <p>
+ * Listens on a Unix socket (or on a loopback TCP port, with {@code --port=}) for requests, one JSON object per line,
+ * and answers each of them with a single JSON line. Requests are compiled concurrently, each on its own connection.
+ * <p>
+ * Each request carries the {@link CompilerVersion#fingerprint() fingerprint} of the client. If it is not the one of the
+ * server, the compiler was rebuilt since the server started, so the server stops and answers that it is stale, and the
+ * client starts a new one.
+ */
+public class CompileServer {
+    // One server for each user and each installation of the compiler
+    static final String DEFAULT_SOCKET = new File(System.getProperty("java.io.tmpdir"), "jmm-compiler-"
+            + System.getProperty("user.name").replaceAll("[^\\w.-]", "_") + "-"
+            + CompilerVersion.installation().substring(0, 16) + ".sock").getPath();
+
+    private static final String WARMUP_CODE = """
+            class Warmup {
+                public static void main(String[] args) {
+                    int i;
+                    i = 0;
+                    while (i < 10) {
+                        if (i < 5 && !false) io.println(i * 2 + 1); else io.println(i);
+                        i = i + 1;
+                    }
+                }
+            }
+            """;
+
+    static class Request {
+        List<String> args = new ArrayList<>();
+        String code;
+        // The fingerprint of the client's compiler, if any
+        String version;
+        boolean shutdown;
+    }
+
+    static class Response {
+        boolean success;
+        // The server is from another build of the compiler, and stopped instead of compiling the request
+        boolean stale;
+        String out = "";
+        String err = "";
+        String className;
+        String jasmin;
+        // With --emit=class, the class file in Base64 instead of the Jasmin code
+        String classFile;
+        // With --metrics, the metrics of the compilation, which the client writes to the file
+        JsonObject metrics;
+    }
+
+    private final Gson gson = new Gson();
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        var thread = new Thread(runnable, "jmm-compile");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final SocketAddress address;
+    private final String version = CompilerVersion.fingerprint();
+    private ServerSocketChannel channel;
+    private boolean stopped;
+
+    public CompileServer(SocketAddress address) {
+        this.address = address;
+    }
+
+    public static void main(String[] args) throws IOException {
+        SpecsSystem.programStandardInit();
+
+        var server = new CompileServer(parseAddress(args));
+        server.warmup();
+        server.serve();
+    }
+
+    /**
+     * Parses the {@code --socket=} and {@code --port=} options shared by the server and the client.
+     */
+    static SocketAddress parseAddress(String[] args) {
+        SocketAddress address = UnixDomainSocketAddress.of(DEFAULT_SOCKET);
+
+        for (var arg : args) {
+            if (arg.startsWith("--socket="))
+                address = UnixDomainSocketAddress.of(arg.split("=")[1]);
+            else if (arg.startsWith("--port="))
+                address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(arg.split("=")[1]));
+        }
+
+        return address;
+    }
+
+    static StandardProtocolFamily getFamily(SocketAddress address) {
+        return address instanceof UnixDomainSocketAddress ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET;
+    }
+
+    /**
+     * Compiles a small program, so that the first real request does not pay for filling the parser caches.
+     */
+    public void warmup() {
+        var request = new Request();
+        request.code = WARMUP_CODE;
+        request.args.add("--input=Warmup.jmm");
+        request.args.add("--optimize");
+
+        compile(request);
+    }
+
+    public void serve() throws IOException {
+        if (address instanceof UnixDomainSocketAddress unixAddress)
+            Files.deleteIfExists(unixAddress.getPath());
+
+        channel = ServerSocketChannel.open(getFamily(address));
+        channel.bind(address);
+        System.out.println("Listening on " + address);
+
+        try {
+            while (true) {
+                var client = channel.accept();
+                executor.submit(() -> handle(client));
+            }
+        } catch (ClosedChannelException e) {
+            // Closed by a shutdown request
+        } finally {
+            stop();
+            executor.shutdown();
+
+            // Let the requests that were already accepted finish, the threads are daemons
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and removes the socket file, before a new server can be started on it.
+     */
+    private synchronized void stop() throws IOException {
+        if (stopped)
+            return;
+
+        stopped = true;
+        channel.close();
+
+        if (address instanceof UnixDomainSocketAddress unixAddress)
+            Files.deleteIfExists(unixAddress.getPath());
+    }
+
+    private void handle(SocketChannel client) {
+        try (client) {
+            var reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+            var writer = new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(client), StandardCharsets.UTF_8));
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Response response;
+                try {
+                    var request = gson.fromJson(line, Request.class);
+
+                    // A blank line is parsed as null
+                    if (request == null || request.args == null)
+                        throw new JsonParseException("expected an object with the arguments of the compiler");
+
+                    if (request.shutdown) {
+                        stop();
+                        return;
+                    }
+
+                    if (request.version != null && !request.version.equals(version)) {
+                        stop();
+                        response = new Response();
+                        response.stale = true;
+                    } else {
+                        response = compile(request);
+                    }
+                } catch (JsonParseException e) {
+                    response = new Response();
+                    response.err = "Invalid request: " + e.getMessage() + "\n";
+                } catch (RuntimeException e) {
+                    response = new Response();
+                    response.err = "Exception while handling the request: " + e + "\n";
+                }
+
+                writer.println(gson.toJson(response));
+                writer.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Connection failed: " + e.getMessage());
+        }
+    }
+
+    Response compile(Request request) {
+        var response = new Response();
+        var out = new ByteArrayOutputStream();
+        var err = new ByteArrayOutputStream();
+        var outStream = new PrintStream(out, true, StandardCharsets.UTF_8);
+        var errStream = new PrintStream(err, true, StandardCharsets.UTF_8);
+
+        var config = Launcher.parseArgs(request.args.toArray(String[]::new));
+
+        if (request.code == null) {
+            errStream.println("Missing input file.");
+        } else {
+            var metrics = new Metrics();
+
+            try {
+                if (Launcher.emitsClassFile(config)) {
+                    var classFileResult = Launcher.compileClassFile(request.code, config, outStream, errStream, metrics);
+
+                    if (classFileResult != null) {
+                        response.success = true;
+                        response.className = classFileResult.getClassName();
+                        response.classFile = Base64.getEncoder().encodeToString(classFileResult.getClassFile());
+                    }
+                } else {
+                    var jasminResult = Launcher.compile(request.code, config, outStream, errStream, metrics);
+
+                    if (jasminResult != null) {
+                        response.success = true;
+                        response.className = jasminResult.getClassName();
+                        response.jasmin = jasminResult.getJasminCode();
+                    }
+                }
+            } catch (RuntimeException e) {
+                errStream.println("ERROR@GENERATION Exception during compilation: " + e);
+            }
+
+            if (config.containsKey("metricsFile"))
+                response.metrics = metrics.toJsonObject();
+        }
+
+        response.out = out.toString(StandardCharsets.UTF_8);
+        response.err = err.toString(StandardCharsets.UTF_8);
+        return response;
+    }
+}
@@ -0,0 +1,92 @@
+package pt.up.fe.comp2023;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+/**
+ * Identifies the build of the compiler that is running, so results and servers of a different build are not reused.
+ * <p>
+ * The fingerprint is a hash of the path, size and last modification time of every class path entry, and of every file
+ * inside the entries that are folders. Rebuilding or reinstalling the compiler changes it, without having to read the
+ * contents of every class.
+ * <p>
+ * The installation, on the other hand, only depends on where the class path entries are, so it stays the same when the
+ * compiler is rebuilt in place.
+ */
+public final class CompilerVersion {
+    private static volatile String fingerprint;
+
+    private CompilerVersion() {
+    }
+
+    /**
+     * @return the fingerprint of the class path of this JVM, worked out the first time it is needed
+     */
+    public static String fingerprint() {
+        var fingerprint = CompilerVersion.fingerprint;
+        if (fingerprint == null)
+            CompilerVersion.fingerprint = fingerprint = fingerprint(System.getProperty("java.class.path"));
+        return fingerprint;
+    }
+
+    /**
+     * @return the fingerprint of the given class path
+     */
+    public static String fingerprint(String classPath) {
+        var digest = newDigest();
+
+        for (var entry : classPath.split(File.pathSeparator)) {
+            if (entry.isEmpty())
+                continue;
+
+            var path = Path.of(entry).toAbsolutePath();
+            if (!Files.isDirectory(path)) {
+                update(digest, path, path);
+                continue;
+            }
+
+            try (Stream<Path> files = Files.walk(path)) {
+                files.filter(Files::isRegularFile).sorted().forEach(file -> update(digest, path, file));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return a hash of the absolute paths of the class path of this JVM
+     */
+    public static String installation() {
+        var digest = newDigest();
+
+        for (var entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (!entry.isEmpty())
+                digest.update((Path.of(entry).toAbsolutePath().normalize() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, Path entry, Path file) {
+        var line = entry + "/" + entry.relativize(file) + ":" + file.toFile().length() + ":" + file.toFile().lastModified() + "\n";
+        digest.update(line.getBytes(StandardCharsets.UTF_8));
+    }
+}
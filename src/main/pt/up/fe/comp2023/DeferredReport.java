@@ -0,0 +1,56 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.function.Supplier;
+
+/**
+ * A report whose message is only built the first time it is read, for debug output such as whole trees or generated
+ * code that is thrown away unless debug mode is on.
+ * <p>
+ * The message shows whatever it refers to as it is when first read, so it should only refer to things that do not
+ * change afterwards, or be read right after the stage that created it, as the launcher does.
+ */
+public class DeferredReport extends Report {
+    private Supplier<String> supplier;
+    private String message;
+
+    public DeferredReport(ReportType type, Stage stage, int line, int column, Supplier<String> message) {
+        super(type, stage, line, column, null);
+        this.supplier = message;
+    }
+
+    public static DeferredReport newDebug(Stage stage, Supplier<String> message) {
+        return new DeferredReport(ReportType.DEBUG, stage, -1, -1, message);
+    }
+
+    /**
+     * @return whether the message has already been built
+     */
+    public synchronized boolean isRendered() {
+        return supplier == null;
+    }
+
+    @Override
+    public synchronized String getMessage() {
+        if (supplier != null) {
+            message = supplier.get();
+            // Whatever the supplier holds on to is no longer needed
+            supplier = null;
+        }
+
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        var message = getType() + "@" + getStage() + ", line " + getLine() + ", col " + getColumn() + ": " + getMessage();
+
+        if (getException().isPresent())
+            message += " (exception: " + getException().get().getMessage() + ")";
+
+        return message;
+    }
+}
@@ -0,0 +1,115 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * What encloses each node of a tree: its method or constructor, its innermost loop, the innermost statement a
+ * {@code break} leaves, and how many conditional and loop statements it is nested in.
+ * <p>
+ * Everything is found in a single walk of the tree when it is created, so a lookup does not climb the ancestors of the
+ * node, which on deeply nested code would be done for nodes at every level. A node added to the tree afterwards is
+ * looked up from its parent the first time, but a node moved to another parent keeps what enclosed it before.
+ */
+public final class EnclosingContext {
+
+    /**
+     * What encloses a node, shared by every node between two statements that change it.
+     */
+    private record Scope(JmmNode method, JmmNode loop, JmmNode breakTarget, int controlFlowDepth) {
+        private static final Scope NONE = new Scope(null, null, null, 0);
+
+        /**
+         * @return the scope of the children of the node, which is in this scope
+         */
+        private Scope enter(JmmNode node) {
+            return switch (node.getKind()) {
+                case "MethodDeclaration", "ConstructorDeclaration" -> new Scope(node, null, null, 0);
+                case "WhileStatement", "DoStatement", "ForStatement", "ForEachStatement" ->
+                        new Scope(method, node, node, controlFlowDepth + 1);
+                case "SwitchStatement" -> new Scope(method, loop, node, controlFlowDepth + 1);
+                case "IfStatement" -> new Scope(method, loop, breakTarget, controlFlowDepth + 1);
+                default -> this;
+            };
+        }
+    }
+
+    private final Map<JmmNode, Scope> scopes = new IdentityHashMap<>();
+
+    /**
+     * Finds what encloses every node of the subtree of the given node, which does not have to be the root.
+     */
+    public EnclosingContext(JmmNode node) {
+        var stack = new ArrayDeque<JmmNode>();
+        scopeOf(node);
+        stack.push(node);
+
+        while (!stack.isEmpty()) {
+            var parent = stack.pop();
+            var scope = scopes.get(parent).enter(parent);
+
+            for (var child : parent.getChildren()) {
+                scopes.put(child, scope);
+                stack.push(child);
+            }
+        }
+    }
+
+    /**
+     * @return the method or constructor declaration the node is in, or null if it is not in one
+     */
+    public JmmNode getMethod(JmmNode node) {
+        return scopeOf(node).method();
+    }
+
+    /**
+     * @return the innermost loop the node is in, whose iteration a {@code continue} ends, or null if it is not in one
+     */
+    public JmmNode getLoop(JmmNode node) {
+        return scopeOf(node).loop();
+    }
+
+    /**
+     * @return the innermost loop or switch statement the node is in, which a {@code break} leaves, or null if it is not
+     * in one
+     */
+    public JmmNode getBreakTarget(JmmNode node) {
+        return scopeOf(node).breakTarget();
+    }
+
+    /**
+     * @return how many conditional and loop statements of its method the node is in
+     */
+    public int getControlFlowDepth(JmmNode node) {
+        return scopeOf(node).controlFlowDepth();
+    }
+
+    private Scope scopeOf(JmmNode node) {
+        var scope = scopes.get(node);
+        if (scope != null)
+            return scope;
+
+        // The scope of a node that was not walked is found from its closest ancestor that was, or from the root
+        var unseen = new ArrayDeque<JmmNode>();
+        var ancestor = node;
+        do {
+            unseen.push(ancestor);
+            ancestor = ancestor.getJmmParent();
+        } while (ancestor != null && !scopes.containsKey(ancestor));
+
+        scope = ancestor == null ? Scope.NONE : scopes.get(ancestor).enter(ancestor);
+
+        while (true) {
+            var next = unseen.pop();
+            scopes.put(next, scope);
+
+            if (unseen.isEmpty())
+                return scope;
+
+            scope = scope.enter(next);
+        }
+    }
+}
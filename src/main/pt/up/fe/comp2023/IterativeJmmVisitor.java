@@ -0,0 +1,203 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmVisitor;
+import pt.up.fe.specs.util.SpecsCheck;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * A visitor that keeps the work left to do in an explicit stack instead of recursing on the Java stack, so that how deep
+ * a tree is nested does not limit it.
+ * <p>
+ * Instead of visiting a node and using its result, a visit method schedules the visit with
+ * {@link #visit(JmmNode, Object, Consumer)} and continues in the consumer, and hands its own result to the consumer it
+ * was given. Everything scheduled by a step runs in the order it was scheduled, each with all the work it schedules in
+ * turn before the next one starts, just like a sequence of recursive calls would.
+ * <p>
+ * Visit methods that do not visit other nodes can still be added as a {@link BiFunction}, and
+ * {@link #visit(JmmNode, Object)} can still be called from a visit method, as long as the node it visits is shallow.
+ */
+public abstract class IterativeJmmVisitor<D, R> implements JmmVisitor<D, R> {
+
+    @FunctionalInterface
+    public interface Visit<D, R> {
+        void visit(JmmNode node, D data, Consumer<R> result);
+    }
+
+    private final Map<String, Visit<D, R>> visitMap = new HashMap<>();
+    private Visit<D, R> defaultVisit;
+    // the visit method of each kind of node by its ordinal, compiled from the map once no more are added
+    private Visit<D, R>[] visitsByKind;
+
+    private Deque<Runnable> stack = new ArrayDeque<>();
+    // the steps scheduled by the running step, pushed once it ends so that the first one is the next to run
+    private List<Runnable> scheduled = new ArrayList<>();
+    private long visitedNodes;
+
+    protected IterativeJmmVisitor() {
+        buildVisitor();
+    }
+
+    protected abstract void buildVisitor();
+
+    @Override
+    public void addVisit(String kind, BiFunction<JmmNode, D, R> method) {
+        addVisit(kind, (node, data, result) -> result.accept(method.apply(node, data)));
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no {@link NodeKind} with the given name, as the visit method would
+     *                                  never be used
+     */
+    public void addVisit(String kind, Visit<D, R> method) {
+        if (NodeKind.of(kind) == null)
+            throw new IllegalArgumentException("Cannot add a visit method for unknown node kind '" + kind + "'");
+
+        visitMap.put(kind, method);
+        visitsByKind = null;
+    }
+
+    @Override
+    public void setDefaultVisit(BiFunction<JmmNode, D, R> method) {
+        setDefaultVisit((node, data, result) -> result.accept(method.apply(node, data)));
+    }
+
+    public void setDefaultVisit(Visit<D, R> method) {
+        defaultVisit = method;
+        visitsByKind = null;
+    }
+
+    /**
+     * Visits the node and everything its visit schedules, on a stack of its own.
+     */
+    @Override
+    public R visit(JmmNode node, D data) {
+        var outerStack = stack;
+        var outerScheduled = scheduled;
+        stack = new ArrayDeque<>();
+        scheduled = new ArrayList<>();
+
+        var result = new ArrayList<R>(1);
+        try {
+            visit(node, data, result::add);
+            pushScheduled();
+
+            while (!stack.isEmpty()) {
+                stack.pop().run();
+                pushScheduled();
+            }
+        } finally {
+            stack = outerStack;
+            scheduled = outerScheduled;
+        }
+
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * Schedules a visit to the node, whose result is then handed to the given consumer.
+     */
+    protected void visit(JmmNode node, D data, Consumer<R> then) {
+        SpecsCheck.checkNotNull(node, () -> "Node should not be null");
+
+        scheduled.add(() -> {
+            visitedNodes++;
+            visitNode(node, data, result -> scheduled.add(() -> then.accept(result)));
+        });
+    }
+
+    /**
+     * @return how many nodes this visitor has visited, counting a node again every time it is visited
+     */
+    public long getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    /**
+     * Schedules a visit to the node, whose result is not needed.
+     */
+    protected void schedule(JmmNode node, D data) {
+        visit(node, data, result -> {
+        });
+    }
+
+    /**
+     * Schedules a visit to each node, and then hands their results, in the same order, to the given consumer.
+     */
+    protected void visitAll(List<JmmNode> nodes, D data, Consumer<List<R>> then) {
+        var results = new ArrayList<R>(nodes.size());
+
+        for (var node : nodes)
+            visit(node, data, results::add);
+
+        then(() -> then.accept(results));
+    }
+
+    /**
+     * Schedules a step to run after everything scheduled before it.
+     */
+    protected void then(Runnable step) {
+        scheduled.add(step);
+    }
+
+    /**
+     * Runs the visit method of the node, which can be overridden to do something around every visit.
+     */
+    protected void visitNode(JmmNode node, D data, Consumer<R> result) {
+        getVisit(node).visit(node, data, result);
+    }
+
+    /**
+     * @return the visit method of the first kind in the hierarchy of the node that has one, or the default one
+     */
+    protected Visit<D, R> getVisit(JmmNode node) {
+        var method = node instanceof CompactJmmNode compactNode
+                ? getVisitsByKind()[compactNode.getNodeKind().ordinal()]
+                : findVisit(node.getHierarchy());
+
+        SpecsCheck.checkNotNull(method, () -> "Could not find a suitable visit method for node of kind "
+                + node.getKind() + ", and no default visitor is set");
+
+        return method;
+    }
+
+    private Visit<D, R>[] getVisitsByKind() {
+        if (visitsByKind == null) {
+            var kinds = NodeKind.values();
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Visit<D, R>[] visits = new Visit[kinds.length];
+
+            for (var kind : kinds)
+                visits[kind.ordinal()] = findVisit(kind.getHierarchy());
+
+            visitsByKind = visits;
+        }
+
+        return visitsByKind;
+    }
+
+    private Visit<D, R> findVisit(Collection<String> hierarchy) {
+        for (var kind : hierarchy) {
+            var method = visitMap.get(kind);
+            if (method != null)
+                return method;
+        }
+
+        return defaultVisit;
+    }
+
+    private void pushScheduled() {
+        for (int i = scheduled.size() - 1; i >= 0; i--)
+            stack.push(scheduled.get(i));
+        scheduled.clear();
+    }
+}
@@ -0,0 +1,39 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * An {@link IterativeJmmVisitor} that visits the children of every node before the node itself, like
+ * {@link pt.up.fe.comp.jmm.ast.PostorderJmmVisitor}, and reduces their results in the same way.
+ */
+public abstract class IterativePostorderJmmVisitor<D, R> extends IterativeJmmVisitor<D, R> {
+
+    private BiFunction<R, R, R> reduce;
+
+    public void setReduceSimple(BiFunction<R, R, R> reduce) {
+        this.reduce = reduce;
+    }
+
+    @Override
+    protected void visitNode(JmmNode node, D data, Consumer<R> result) {
+        var visit = getVisit(node);
+
+        visitAll(node.getChildren(), data, childrenResults ->
+                visit.visit(node, data, nodeResult -> result.accept(reduce(nodeResult, childrenResults))));
+    }
+
+    private R reduce(R nodeResult, List<R> childrenResults) {
+        if (reduce == null || childrenResults.isEmpty())
+            return nodeResult;
+
+        var result = childrenResults.get(0);
+        for (int i = 1; i < childrenResults.size(); i++)
+            result = reduce.apply(result, childrenResults.get(i));
+
+        return reduce.apply(result, nodeResult);
+    }
+}
@@ -0,0 +1,133 @@
+package pt.up.fe.comp2023;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Builds the {@link JmmNode} AST while the parser runs, so the parser does not have to build a parse tree first.
+ * <p>
+ * The nodes are the same as the ones {@link pt.up.fe.comp.jmm.ast.antlr.AntlrParser} converts from a parse tree: one
+ * per rule context, with its kind, hierarchy, position, and the text of its labelled tokens, but they are
+ * {@link CompactJmmNode}s.
+ */
+class JmmNodeBuilder implements ParseTreeListener {
+
+    /**
+     * What every node of a rule context class has in common, found once per class.
+     */
+    private record NodeType(NodeKind kind, List<Field> fields) {
+        private static final ClassValue<NodeType> TYPES = new ClassValue<>() {
+            @Override
+            protected NodeType computeValue(Class<?> type) {
+                var className = type.getSimpleName();
+                var kind = NodeKind.valueOf(className.substring(0, className.length() - "Context".length()));
+                var fields = new ArrayList<Field>();
+
+                for (var nodeClass = type; !nodeClass.equals(ParserRuleContext.class); nodeClass = nodeClass.getSuperclass())
+                    for (var field : nodeClass.getDeclaredFields())
+                        if (Modifier.isPublic(field.getModifiers()))
+                            fields.add(field);
+
+                return new NodeType(kind, List.copyOf(fields));
+            }
+        };
+    }
+
+    private record BuiltNode(ParserRuleContext context, CompactJmmNode node) {
+    }
+
+    private final Parser parser;
+    // the children built so far of each rule being parsed, the first one collects the root
+    private final Deque<List<BuiltNode>> children = new ArrayDeque<>();
+
+    JmmNodeBuilder(Parser parser) {
+        this.parser = parser;
+        children.push(new ArrayList<>());
+    }
+
+    /**
+     * @return the node of the outermost rule, once the parser is done
+     */
+    JmmNode getRoot() {
+        var root = children.getLast().get(0);
+        addPosition(root);
+        return root.node();
+    }
+
+    @Override
+    public void enterEveryRule(ParserRuleContext context) {
+        var ruleChildren = new ArrayList<BuiltNode>();
+
+        // A left-recursive rule only knows it has an operand after parsing it, and then adopts it as its first child
+        var siblings = children.peek();
+        if (!siblings.isEmpty() && siblings.get(siblings.size() - 1).context().parent == context)
+            ruleChildren.add(siblings.remove(siblings.size() - 1));
+
+        children.push(ruleChildren);
+    }
+
+    @Override
+    public void exitEveryRule(ParserRuleContext context) {
+        var type = NodeType.TYPES.get(context.getClass());
+        var node = new CompactJmmNode(type.kind());
+
+        try {
+            for (var field : type.fields()) {
+                var value = field.get(context);
+
+                if (value instanceof Token token)
+                    node.put(field.getName(), token.getText());
+                else if (value instanceof List<?> list)
+                    node.putObject(field.getName(), toText(list));
+                else if (value != null || !Token.class.isAssignableFrom(field.getType()))
+                    node.putObject(field.getName(), value);
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Could not access the fields of " + context.getClass().getSimpleName(), e);
+        }
+
+        // The last token of an operand of a left-recursive rule is only set after it exits, so the position of a node
+        // is only added once its parent exits
+        for (var child : children.pop()) {
+            addPosition(child);
+            node.add(child.node());
+        }
+
+        children.peek().add(new BuiltNode(context, node));
+    }
+
+    private static List<Object> toText(List<?> values) {
+        var texts = new ArrayList<>(values.size());
+        for (var value : values)
+            texts.add(value instanceof Token token ? token.getText() : value);
+        return texts;
+    }
+
+    private void addPosition(BuiltNode builtNode) {
+        var interval = builtNode.context().getSourceInterval();
+        var start = parser.getTokenStream().get(interval.a);
+        var end = parser.getTokenStream().get(interval.b);
+
+        builtNode.node().setPosition(start.getLine(), start.getCharPositionInLine(), end.getLine(), end.getCharPositionInLine());
+    }
+
+    @Override
+    public void visitTerminal(TerminalNode node) {
+    }
+
+    @Override
+    public void visitErrorNode(ErrorNode node) {
+    }
+}
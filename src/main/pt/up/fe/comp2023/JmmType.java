@@ -0,0 +1,214 @@
+package pt.up.fe.comp2023;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static pt.up.fe.comp2023.Constants.*;
+import static pt.up.fe.comp2023.Utils.in;
+
+/**
+ * A type, by the name it has in the {@code type} attribute of the AST, such as {@code int}, {@code a.b.C[]} or the
+ * wildcard {@code *} of expressions whose type is unknown.
+ * <p>
+ * Everything about a type is worked out once, when it is created, instead of every time an expression of that type
+ * is seen. The built-in types and their arrays are interned, with a single instance each that can be compared by
+ * identity. Class types are interned by an {@link Interner}, which lives as long as a single compilation, so that a
+ * compile server does not keep every class name it ever compiled. The class types made with {@link #of(String)} are
+ * not interned, so types must be compared with {@link #equals(Object)}.
+ */
+public final class JmmType {
+    private static final List<String> BUILT_IN_NAMES = List.of("*", "void", "boolean", "byte", "char", "double", "float", "int", "long", "short", "String", "Object", "Integer");
+    private static final Map<String, JmmType> BUILT_IN_TYPES = internBuiltInTypes();
+
+    public static final JmmType WILDCARD = of("*");
+    public static final JmmType VOID = of("void");
+    public static final JmmType INT = of("int");
+    public static final JmmType FLOAT = of("float");
+    public static final JmmType BOOLEAN = of("boolean");
+    public static final JmmType STRING = of("String");
+    public static final JmmType OBJECT = of("Object");
+
+    private final int id;
+    private final String name;
+    private final JmmType elementType;
+    private final Interner interner;
+    private volatile JmmType arrayType;
+
+    private final boolean integer;
+    private final boolean floatingPoint;
+    private final boolean primitive;
+
+    private final String ollirType;
+    private final int ollirDimensions;
+    private final String ollirElementType;
+
+    /**
+     * The class types of a compilation, and their arrays, with a single instance for each name.
+     * The built-in types are the same for every compilation.
+     */
+    public static final class Interner {
+        private final Map<String, JmmType> classTypes = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger(BUILT_IN_TYPES.size());
+
+        public JmmType of(String name) {
+            var type = BUILT_IN_TYPES.get(name);
+            if (type == null)
+                type = classTypes.get(name);
+            if (type != null)
+                return type;
+
+            // the element type is interned first, as the map cannot be changed while computing one of its values
+            var elementType = name.endsWith("[]") ? of(name.substring(0, name.length() - 2)) : null;
+
+            return classTypes.computeIfAbsent(name, n -> new JmmType(n, elementType, nextId.getAndIncrement(), this));
+        }
+    }
+
+    private JmmType(String name, JmmType elementType, int id, Interner interner) {
+        this.id = id;
+        this.name = name;
+        this.elementType = elementType;
+        this.interner = interner;
+
+        this.integer = in(INTEGER_TYPES, name);
+        this.floatingPoint = in(FLOAT_TYPES, name);
+        this.primitive = in(PRIMITIVE_TYPES, name);
+
+        // Arrays of arrays are lowered as arrays of their innermost elements
+        var innermost = this;
+        while (innermost.elementType != null)
+            innermost = innermost.elementType;
+
+        this.ollirType = (elementType == null ? "" : "array.") + switch (innermost == this ? name : innermost.name) {
+            case "void" -> "V";
+            case "byte", "short", "int", "long", "float", "double", "Integer" -> "i32";
+            case "boolean" -> "bool";
+            default -> innermost == this ? name : innermost.name;
+        };
+
+        // The names of OLLIR types are kept as they are, and can already be arrays
+        var dimensions = 0;
+        while (ollirType.startsWith("array.", dimensions * "array.".length()))
+            dimensions++;
+
+        this.ollirDimensions = dimensions;
+        this.ollirElementType = ollirType.substring(dimensions * "array.".length());
+    }
+
+    private static Map<String, JmmType> internBuiltInTypes() {
+        var types = new HashMap<String, JmmType>();
+
+        for (var name : BUILT_IN_NAMES) {
+            var type = new JmmType(name, null, types.size(), null);
+            types.put(name, type);
+
+            var arrayType = new JmmType(name + "[]", type, types.size(), null);
+            types.put(arrayType.name, arrayType);
+            type.arrayType = arrayType;
+        }
+
+        return Map.copyOf(types);
+    }
+
+    /**
+     * @return the type with the given name, the interned one if it is a built-in type or an array of one, and a new
+     * one otherwise, so a compilation should use its {@link Interner} instead
+     */
+    public static JmmType of(String name) {
+        var type = BUILT_IN_TYPES.get(name);
+        if (type != null)
+            return type;
+
+        var elementType = name.endsWith("[]") ? of(name.substring(0, name.length() - 2)) : null;
+
+        return new JmmType(name, elementType, -1, null);
+    }
+
+    /**
+     * @return a small number that identifies this type among the built-in types and the types of its compilation, or
+     * -1 if it is not interned
+     */
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isWildcard() {
+        return this == WILDCARD;
+    }
+
+    public boolean isArray() {
+        return elementType != null;
+    }
+
+    /**
+     * @return the type of the elements of this array type, or null if this is not an array type
+     */
+    public JmmType getElementType() {
+        return elementType;
+    }
+
+    /**
+     * @return the type of arrays of this type
+     */
+    public JmmType getArrayType() {
+        var arrayType = this.arrayType;
+        if (arrayType == null)
+            this.arrayType = arrayType = interner == null ? of(name + "[]") : interner.of(name + "[]");
+        return arrayType;
+    }
+
+    public boolean isInteger() {
+        return integer;
+    }
+
+    public boolean isFloatingPoint() {
+        return floatingPoint;
+    }
+
+    public boolean isPrimitive() {
+        return primitive;
+    }
+
+    /**
+     * @return the name of this type in OLLIR
+     */
+    public String getOllirType() {
+        return ollirType;
+    }
+
+    /**
+     * @return how many {@code array.} prefixes the OLLIR name of this type has
+     */
+    public int getOllirDimensions() {
+        return ollirDimensions;
+    }
+
+    /**
+     * @return the OLLIR name of this type without its {@code array.} prefixes
+     */
+    public String getOllirElementType() {
+        return ollirElementType;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj || obj instanceof JmmType type && name.equals(type.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
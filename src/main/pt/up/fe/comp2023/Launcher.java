@@ -1,25 +1,41 @@
 package pt.up.fe.comp2023;
 
+import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp2023.analysis.Analyzer;
 import pt.up.fe.comp2023.backend.Backend;
+import pt.up.fe.comp2023.backend.ClassFileBackend;
+import pt.up.fe.comp2023.backend.ClassFileResult;
 import pt.up.fe.comp2023.backend.JasminOptimizer;
 import pt.up.fe.comp2023.optimization.Optimizer;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsSystem;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class Launcher {
 
+    // The parser named by config.properties, the same one the tests use
+    private static final String PARSER_CLASS = new File("config.properties").isFile()
+            ? TestUtils.loadProperties("config.properties").getProperty("ParserClass", SimpleParser.class.getName()).strip()
+            : SimpleParser.class.getName();
+
     public static void main(String[] args) {
         // Setups console logging and other things
         SpecsSystem.programStandardInit();
@@ -27,6 +43,17 @@ public class Launcher {
         // Parse arguments as a map with predefined options
         var config = parseArgs(args);
 
+        if (!config.containsKey("inputFile") && !config.containsKey("batchFolder")) {
+            System.err.println("Missing input file.");
+            System.exit(1);
+        }
+
+        // Compile every file in a folder
+        if (config.containsKey("batchFolder")) {
+            System.exit(new BatchCompiler(config).compile(new File(config.get("batchFolder"))));
+            return;
+        }
+
         // Get input file
         File inputFile = new File(config.get("inputFile"));
 
@@ -38,45 +65,231 @@ public class Launcher {
         // Read contents of input file
         String code = SpecsIo.read(inputFile);
 
+        var metrics = new Metrics();
+        Runnable run = null;
+        if (emitsClassFile(config)) {
+            ClassFileResult classFileResult = compileClassFile(code, config, System.out, System.err, metrics);
+            if (classFileResult != null)
+                run = runsIsolated(config) ? classFileResult::run : () -> ClassRunner.run(classFileResult.getClassName(), classFileResult.getClassFile(), List.of(), true);
+        } else {
+            JasminResult jasminResult = compile(code, config, System.out, System.err, metrics);
+            if (jasminResult != null)
+                run = runsIsolated(config) ? jasminResult::run : () -> ClassRunner.run(jasminResult, List.of(), true);
+        }
+
+        if (config.containsKey("metricsFile")) {
+            var json = metrics.toJsonObject();
+            json.addProperty("file", inputFile.getPath());
+            SpecsIo.write(new File(config.get("metricsFile")), Metrics.toJson(json));
+        }
+
+        if (run != null)
+            run.run();
+    }
+
+    /**
+     * @return whether the compiled program should run in a new JVM, instead of inside this one
+     */
+    static boolean runsIsolated(Map<String, String> config) {
+        return Boolean.parseBoolean(config.get("isolatedRun"));
+    }
+
+    static boolean emitsClassFile(Map<String, String> config) {
+        return "class".equals(config.get("emit"));
+    }
+
+    /**
+     * Runs every stage of the compiler over the given code, but generates the class file directly from the OLLIR
+     * instead of going through Jasmin. The compilation cache is not used.
+     *
+     * @return the generated class file, or null if any of the stages failed
+     */
+    static ClassFileResult compileClassFile(String code, Map<String, String> config, PrintStream out, PrintStream err, Metrics metrics) {
+        OllirResult ollirResult = compileOllir(code, config, new ArrayList<>(), out, err, metrics);
+        if (ollirResult == null) return null;
+
+        ClassFileBackend backend = new ClassFileBackend();
+        ClassFileResult classFileResult = metrics.measure("classFileGeneration", () -> backend.toClassFile(ollirResult));
+
+        if (reports(config, classFileResult.getReports(), out, err)) return null;
+
+        return classFileResult;
+    }
+
+    static JasminResult compile(String code, Map<String, String> config, PrintStream out, PrintStream err) {
+        return compile(code, config, out, err, new Metrics());
+    }
+
+    /**
+     * Runs every stage of the compiler over the given code, printing the reports of each stage.
+     * If the {@code cacheFolder} option is set, the result is taken from the cache when possible.
+     *
+     * @return the generated jasmin, or null if any of the stages failed
+     */
+    static JasminResult compile(String code, Map<String, String> config, PrintStream out, PrintStream err, Metrics metrics) {
+        var cache = openCache(config);
+        if (cache == null)
+            return compileStages(code, config, new ArrayList<>(), out, err, metrics);
+
+        var key = CompilationCache.key(code, config);
+
+        try {
+            var cached = metrics.measure("cacheLookup", () -> {
+                try {
+                    return cache.get(key, config);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            metrics.count("hit", cached != null ? 1 : 0);
+
+            if (cached != null) {
+                reports(config, cached.reports(), out, err);
+                return cached.jasminResult();
+            }
+
+            var reports = new ArrayList<Report>();
+            var jasminResult = compileStages(code, config, reports, out, err, metrics);
+            cache.put(key, reports, jasminResult, config);
+
+            return jasminResult;
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("Could not access the compilation cache", e);
+        }
+    }
+
+    /**
+     * Runs every stage of the compiler over the given code, writing the generated jasmin to the given file as it is
+     * generated, one method at a time. When the whole jasmin is needed anyway, to be stored in the cache or shown in
+     * debug mode, it is generated in memory and then written.
+     *
+     * @return whether every stage succeeded, the file is deleted otherwise
+     */
+    static boolean compileToFile(String code, Map<String, String> config, PrintStream out, PrintStream err, Metrics metrics, File jasminFile) {
+        try {
+            Files.createDirectories(jasminFile.getAbsoluteFile().getParentFile().toPath());
+
+            if (openCache(config) != null || Boolean.parseBoolean(config.get("debug"))) {
+                var jasminResult = compile(code, config, out, err, metrics);
+                if (jasminResult == null) return false;
+
+                Files.writeString(jasminFile.toPath(), jasminResult.getJasminCode());
+                return true;
+            }
+
+            OllirResult ollirResult = compileOllir(code, config, new ArrayList<>(), out, err, metrics);
+            if (ollirResult == null) return false;
+
+            var optimize = Boolean.parseBoolean(config.get("optimize"));
+            Backend backend = new Backend();
+            JasminOptimizer jasminOptimizer = new JasminOptimizer();
+            var reports = new ArrayList<Report>();
+
+            // the jasmin optimization runs as each method is written, so its time is part of the generation
+            metrics.measure("jasminGeneration", () -> {
+                try (Writer writer = Files.newBufferedWriter(jasminFile.toPath())) {
+                    try (Writer jasminWriter = optimize ? jasminOptimizer.optimizing(writer) : writer) {
+                        backend.writeJasmin(ollirResult, jasminWriter, reports);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+            if (optimize) metrics.count("rounds", jasminOptimizer.getRounds());
+
+            if (reports(config, reports, out, err)) {
+                Files.deleteIfExists(jasminFile.toPath());
+                return false;
+            }
+
+            return true;
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("Could not write '" + jasminFile + "'", e);
+        }
+    }
+
+    /**
+     * @return the compilation cache to use, or null if there is none
+     */
+    private static CompilationCache openCache(Map<String, String> config) {
+        // a cached result never goes through the parser, so there would be nothing to profile
+        return Boolean.parseBoolean(config.get("profileParser")) ? null : CompilationCache.open(config);
+    }
+
+    private static JasminResult compileStages(String code, Map<String, String> config, List<Report> reports, PrintStream out, PrintStream err, Metrics metrics) {
+        OllirResult optimizedOllirResult = compileOllir(code, config, reports, out, err, metrics);
+        if (optimizedOllirResult == null) return null;
+
+        Backend backend = new Backend();
+        JasminResult jasminResult = metrics.measure("jasminGeneration", () -> backend.toJasmin(optimizedOllirResult));
+
+        if (reports(config, jasminResult.getReports(), reports, out, err) || code == null) return null;
+
+        if (config.get("optimize").equals("true")) {
+            JasminOptimizer jasminOptimizer = new JasminOptimizer();
+
+            JasminResult optimizedJasminResult = metrics.measure("jasminOptimization", () -> jasminOptimizer.optimize(jasminResult));
+            metrics.count("rounds", jasminOptimizer.getRounds());
+
+            if (reports(config, optimizedJasminResult.getReports(), reports, out, err)) return null;
+            return optimizedJasminResult;
+        }
+
+        return jasminResult;
+    }
+
+    private static OllirResult compileOllir(String code, Map<String, String> config, List<Report> reports, PrintStream out, PrintStream err, Metrics metrics) {
         // Instantiate JmmParser
-        SimpleParser parser = new SimpleParser();
+        JmmParser parser = newParser(config);
 
         // Parse stage
-        JmmParserResult parserResult = parser.parse(code, config);
+        JmmParserResult parserResult = metrics.measure("parse", () -> parser.parse(code, config));
 
         // Check if there are parsing errors
-        if (reports(config, parserResult.getReports())) return;
+        if (reports(config, parserResult.getReports(), reports, out, err)) return null;
 
         // ... add remaining stages
         Analyzer analyzer = new Analyzer();
-        JmmSemanticsResult semanticsResult = analyzer.semanticAnalysis(parserResult);
+        JmmSemanticsResult semanticsResult = metrics.measure("semanticAnalysis", () -> analyzer.semanticAnalysis(parserResult));
 
-        if (reports(config, semanticsResult.getReports())) return;
+        if (reports(config, semanticsResult.getReports(), reports, out, err)) return null;
 
         Optimizer optimizer = new Optimizer();
 
-        semanticsResult = optimizer.optimize(semanticsResult);
-        OllirResult ollirResult = optimizer.toOllir(semanticsResult);
-        ollirResult = optimizer.optimize(ollirResult);
+        JmmSemanticsResult optimizedSemanticsResult = metrics.measure("astOptimization", () -> optimizer.optimize(semanticsResult));
+        metrics.count("rounds", optimizer.getRounds());
+        metrics.count("nodeVisits", optimizer.getNodeVisits());
+        metrics.count("nodeVisitsSaved", optimizer.getNodeVisitsSaved());
 
-        if (reports(config, ollirResult.getReports())) return;
+        OllirResult ollirResult = metrics.measure("ollirGeneration", () -> optimizer.toOllir(optimizedSemanticsResult));
+        OllirResult optimizedOllirResult = metrics.measure("ollirOptimization", () -> optimizer.optimizeOllir(ollirResult));
+        OllirResult allocatedOllirResult = metrics.measure("registerAllocation", () -> optimizer.allocateRegisters(optimizedOllirResult));
 
-        Backend backend = new Backend();
-        JasminResult jasminResult = backend.toJasmin(ollirResult);
+        if (reports(config, allocatedOllirResult.getReports(), reports, out, err)) return null;
 
-        if (reports(config, jasminResult.getReports()) || code == null) return;
+        return allocatedOllirResult;
+    }
 
-        if (config.get("optimize").equals("true")) {
-            JasminOptimizer jasminOptimizer = new JasminOptimizer();
+    private static JmmParser newParser(Map<String, String> config) {
+        var parserClass = config.getOrDefault("parserClass", PARSER_CLASS);
 
-            jasminResult = jasminOptimizer.optimize(jasminResult);
-            if (reports(config, jasminResult.getReports())) return;
+        try {
+            return (JmmParser) Class.forName(parserClass).getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Could not instantiate JmmParser from class '" + parserClass + "'", e);
         }
+    }
 
-        jasminResult.run();
+    /**
+     * @return the parser named by the config.properties of the working directory, which the compile client sends to
+     * the server, so that it does not depend on the directory the server was started from
+     */
+    static String getParserClass() {
+        return PARSER_CLASS;
     }
 
-    private static Map<String, String> parseArgs(String[] args) {
+    static Map<String, String> parseArgs(String[] args) {
         // Default config
         Map<String, String> config = new HashMap<>();
         config.put("optimize", "false");
@@ -92,25 +305,45 @@ public class Launcher {
                 config.put("debug", "true");
             else if (arg.startsWith("-i=") || arg.startsWith("--input="))
                 config.put("inputFile", arg.split("=")[1]);
+            else if (arg.startsWith("-b=") || arg.startsWith("--batch="))
+                config.put("batchFolder", arg.split("=")[1]);
+            else if (arg.startsWith("--output="))
+                config.put("outputFolder", arg.split("=")[1]);
+            else if (arg.startsWith("-j=") || arg.startsWith("--jobs="))
+                config.put("jobs", arg.split("=")[1]);
+            else if (arg.startsWith("--metrics="))
+                config.put("metricsFile", arg.split("=")[1]);
+            else if (arg.startsWith("--cache="))
+                config.put("cacheFolder", arg.split("=")[1]);
+            else if (arg.startsWith("--cache-size="))
+                config.put("cacheSize", arg.split("=")[1]);
+            else if (arg.startsWith("--emit="))
+                config.put("emit", arg.split("=")[1]);
+            else if (arg.startsWith("--parser="))
+                config.put("parserClass", arg.split("=")[1]);
+            else if (arg.equals("--profile-parser"))
+                config.put("profileParser", "true");
+            else if (arg.equals("--isolate"))
+                config.put("isolatedRun", "true");
             else
                 System.err.println("Unknown argument '" + arg + "'.");
         }
 
-        if (!config.containsKey("inputFile")) {
-            System.err.println("Missing input file.");
-            System.exit(1);
-        }
-
         return config;
     }
 
-    private static boolean reports(Map<String, String> config, Collection<Report> reports) {
+    private static boolean reports(Map<String, String> config, Collection<Report> reports, List<Report> seen, PrintStream stdout, PrintStream stderr) {
+        seen.addAll(reports);
+        return reports(config, reports, stdout, stderr);
+    }
+
+    private static boolean reports(Map<String, String> config, Collection<Report> reports, PrintStream stdout, PrintStream stderr) {
         boolean hasErrors = false;
         boolean debug = Boolean.parseBoolean(config.get("debug"));
 
         for (Report report : reports) {
             hasErrors |= report.getType() == ReportType.ERROR;
-            var out = report.getType() == ReportType.ERROR || report.getType() == ReportType.WARNING ? System.err : System.out;
+            var out = report.getType() == ReportType.ERROR || report.getType() == ReportType.WARNING ? stderr : stdout;
             var type = report.getType().toString().toUpperCase();
             var stage = report.getStage().toString().toUpperCase();
             var line = report.getLine() == -1 ? "" : ":" + report.getLine();
@@ -120,8 +353,8 @@ public class Launcher {
                 out.println(type + "@" + stage + line + column + " " + report.getMessage());
         }
 
-        System.out.flush();
-        System.err.flush();
+        stdout.flush();
+        stderr.flush();
 
         return hasErrors;
     }
@@ -0,0 +1,129 @@
+package pt.up.fe.comp2023;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Records the wall time, CPU time and allocated bytes of each stage of a compilation, along with any counters the
+ * stages expose, such as the number of rounds of a fixpoint loop.
+ * <p>
+ * Measurements are taken on the calling thread, so a single instance must not be shared between compilations running
+ * in parallel. For the same reason, the stages that split their work between threads keep it on the calling thread
+ * while metrics are being collected, see {@link #isEnabled(Map)}.
+ */
+public class Metrics {
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    public static class StageMetrics {
+        private final String name;
+        private final long wallTimeNs;
+        private final long cpuTimeNs;
+        private final long allocatedBytes;
+        private final Map<String, Long> counters = new LinkedHashMap<>();
+
+        private StageMetrics(String name, long wallTimeNs, long cpuTimeNs, long allocatedBytes) {
+            this.name = name;
+            this.wallTimeNs = wallTimeNs;
+            this.cpuTimeNs = cpuTimeNs;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getWallTimeNs() {
+            return wallTimeNs;
+        }
+
+        public long getCpuTimeNs() {
+            return cpuTimeNs;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public Map<String, Long> getCounters() {
+            return counters;
+        }
+    }
+
+    private final List<StageMetrics> stages = new ArrayList<>();
+
+    public <T> T measure(String stage, Supplier<T> action) {
+        var threadId = Thread.currentThread().getId();
+
+        var startCpu = threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : -1;
+        var startAllocated = getAllocatedBytes(threadId);
+        var startWall = System.nanoTime();
+
+        var result = action.get();
+
+        var wall = System.nanoTime() - startWall;
+        var allocated = startAllocated == -1 ? -1 : getAllocatedBytes(threadId) - startAllocated;
+        var cpu = startCpu == -1 ? -1 : threadBean.getCurrentThreadCpuTime() - startCpu;
+
+        stages.add(new StageMetrics(stage, wall, cpu, allocated));
+
+        return result;
+    }
+
+    /**
+     * Adds a counter to the last measured stage.
+     */
+    public void count(String counter, long value) {
+        stages.get(stages.size() - 1).counters.put(counter, value);
+    }
+
+    public List<StageMetrics> getStages() {
+        return stages;
+    }
+
+    public JsonObject toJsonObject() {
+        var json = new JsonObject();
+
+        long wall = 0, cpu = 0, allocated = 0;
+        for (var stage : stages) {
+            wall += stage.wallTimeNs;
+            cpu += stage.cpuTimeNs;
+            allocated += stage.allocatedBytes;
+        }
+
+        json.addProperty("wallTimeNs", wall);
+        json.addProperty("cpuTimeNs", cpu);
+        json.addProperty("allocatedBytes", allocated);
+        json.add("stages", gson.toJsonTree(stages));
+
+        return json;
+    }
+
+    /**
+     * @return whether the compilation with the given options writes its metrics, in which case its stages must run on
+     * the thread that measures them
+     */
+    public static boolean isEnabled(Map<String, String> config) {
+        return config.containsKey("metricsFile");
+    }
+
+    public static String toJson(Object json) {
+        return gson.toJson(json);
+    }
+
+    private static long getAllocatedBytes(long threadId) {
+        if (threadBean instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported())
+            return bean.getThreadAllocatedBytes(threadId);
+
+        return -1;
+    }
+}
@@ -0,0 +1,101 @@
+package pt.up.fe.comp2023;
+
+import java.util.List;
+
+/**
+ * The kinds of node of the AST, one for each rule of the {@code Javamm.g4} grammar and one for each label of its
+ * alternatives, which is a kind of its rule.
+ */
+public enum NodeKind {
+    Program,
+    Package_declaration,
+    PackageDeclaration(Package_declaration),
+    Import_statement,
+    ImportStatement(Import_statement),
+    Class_declaration,
+    ClassDeclaration(Class_declaration),
+    Class_extension,
+    ParentClass(Class_extension),
+    Program_definition,
+    Method_declaration,
+    MethodDeclaration(Method_declaration),
+    Variable_declaration,
+    FieldDeclaration(Variable_declaration),
+    Constructor_declaration,
+    ConstructorDeclaration(Constructor_declaration),
+    Parameter_list,
+    ParameterList(Parameter_list),
+    Argument_list,
+    ArgumentList(Argument_list),
+    Assignment_statement,
+    VariableDeclaration(Assignment_statement),
+    Statement,
+    StatementBlock(Statement),
+    IfStatement(Statement),
+    WhileStatement(Statement),
+    DoStatement(Statement),
+    ForStatement(Statement),
+    ForEachStatement(Statement),
+    SwitchStatement(Statement),
+    ReturnStatement(Statement),
+    BreakStatement(Statement),
+    ContinueStatement(Statement),
+    ExpressionStatement(Statement),
+    AssignmentStatement(Statement),
+    EmptyStatement(Statement),
+    For_init,
+    For_term,
+    For_inc,
+    Case_statement,
+    CaseStatement(Case_statement),
+    DefaultStatement(Case_statement),
+    Type,
+    PrimitiveType(Type),
+    VoidType(Type),
+    ComplexType(Type),
+    ArrayType(Type),
+    Expression,
+    ExplicitPriority(Expression),
+    NewObject(Expression),
+    NewArray(Expression),
+    MethodCall(Expression),
+    PropertyAccess(Expression),
+    ArrayAccess(Expression),
+    UnaryPostOp(Expression),
+    UnaryPreOp(Expression),
+    BinaryOp(Expression),
+    TernaryOp(Expression),
+    AssignmentExpression(Expression),
+    LiteralExpression(Expression),
+    IdentifierExpression(Expression),
+    ThisExpression(Expression);
+
+    private final List<String> hierarchy;
+
+    NodeKind() {
+        this.hierarchy = List.of(name());
+    }
+
+    NodeKind(NodeKind rule) {
+        this.hierarchy = List.of(name(), rule.name());
+    }
+
+    /**
+     * @return the name of this kind followed by the name of its rule, if it is a label, like the hierarchy of the
+     * nodes ANTLR builds
+     */
+    public List<String> getHierarchy() {
+        return hierarchy;
+    }
+
+    /**
+     * @return the kind with the given name, or null if there is none
+     */
+    public static NodeKind of(String name) {
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
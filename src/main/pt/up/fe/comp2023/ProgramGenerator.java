@@ -0,0 +1,286 @@
+package pt.up.fe.comp2023;
+
+import java.util.Random;
+
+/**
+ * Generates random, valid Java-- programs from a seed, for scaling and stress tests of the compiler.
+ * <p>
+ * Every method only calls methods declared before it, and every loop runs a fixed number of times, so the generated
+ * programs always terminate. The main method calls every other method and prints the sum of the results.
+ */
+public class ProgramGenerator {
+    private static final int ARRAY_SIZE = 8;
+    private static final int LOOP_ITERATIONS = 3;
+
+    private final Random random;
+    private String className = "Generated";
+    private int methods = 10;
+    private int statements = 10;
+    private int locals = 4;
+    private int expressionDepth = 3;
+    private int loopNesting = 2;
+    private int switchWidth = 3;
+
+    private StringBuilder sb;
+    private int indentation;
+    private int currentMethod;
+
+    public ProgramGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public ProgramGenerator className(String className) {
+        this.className = className;
+        return this;
+    }
+
+    public ProgramGenerator methods(int methods) {
+        this.methods = methods;
+        return this;
+    }
+
+    public ProgramGenerator statements(int statements) {
+        this.statements = statements;
+        return this;
+    }
+
+    public ProgramGenerator locals(int locals) {
+        this.locals = Math.max(1, locals);
+        return this;
+    }
+
+    public ProgramGenerator expressionDepth(int expressionDepth) {
+        this.expressionDepth = expressionDepth;
+        return this;
+    }
+
+    public ProgramGenerator loopNesting(int loopNesting) {
+        this.loopNesting = loopNesting;
+        return this;
+    }
+
+    public ProgramGenerator switchWidth(int switchWidth) {
+        this.switchWidth = switchWidth;
+        return this;
+    }
+
+    public String generate() {
+        sb = new StringBuilder();
+        indentation = 0;
+
+        line("import io;");
+        line("");
+        line("class " + className + " {");
+        indentation++;
+
+        for (currentMethod = 0; currentMethod < methods; currentMethod++)
+            generateMethod();
+
+        generateMain();
+
+        indentation--;
+        line("}");
+
+        return sb.toString();
+    }
+
+    private void generateMain() {
+        line("public static void main(String[] args) {");
+        indentation++;
+
+        line(className + " instance;");
+        line("int[] values;");
+        line("int result;");
+        line("instance = new " + className + "();");
+        line("values = new int[" + ARRAY_SIZE + "];");
+        line("result = 0;");
+
+        for (int i = 0; i < methods; i++)
+            line("result = result + instance.method" + i + "(" + i + ", " + random.nextInt(100) + ", values);");
+
+        line("io.println(result);");
+
+        indentation--;
+        line("}");
+    }
+
+    private void generateMethod() {
+        line("public int method" + currentMethod + "(int p0, int p1, int[] values) {");
+        indentation++;
+
+        for (int i = 0; i < locals; i++)
+            line("int l" + i + ";");
+        for (int i = 0; i < loopNesting; i++)
+            line("int i" + i + ";");
+        line("boolean b0;");
+
+        for (int i = 0; i < locals; i++)
+            line("l" + i + " = " + random.nextInt(100) + ";");
+        line("b0 = " + random.nextBoolean() + ";");
+
+        // Calls only go to previous methods, and never from inside loops, so the programs always terminate quickly
+        if (currentMethod > 0 && random.nextBoolean())
+            line(local() + " = this.method" + random.nextInt(currentMethod) + "(" + intExpression(1) + ", p1, values);");
+
+        for (int i = 0; i < statements; i++)
+            generateStatement(0);
+
+        line("return " + intExpression(expressionDepth) + ";");
+
+        indentation--;
+        line("}");
+        line("");
+    }
+
+    private void generateStatement(int loopDepth) {
+        var kind = random.nextInt(loopDepth < loopNesting ? 10 : 6);
+
+        switch (kind) {
+            case 0, 1 -> line(local() + " = " + intExpression(expressionDepth) + ";");
+            case 2 -> line(local() + " " + (random.nextBoolean() ? "+=" : "-=") + " " + intExpression(expressionDepth) + ";");
+            case 3 -> line("values[" + random.nextInt(ARRAY_SIZE) + "] = " + intExpression(expressionDepth) + ";");
+            case 4 -> {
+                line("if (" + boolExpression(expressionDepth) + ") {");
+                generateBlock(loopDepth);
+                line("} else {");
+                generateBlock(loopDepth);
+                line("}");
+            }
+            case 5 -> {
+                if (switchWidth == 0) {
+                    line("b0 = " + boolExpression(expressionDepth) + ";");
+                    return;
+                }
+
+                line("switch (" + local() + ") {");
+                indentation++;
+                for (int i = 0; i < switchWidth; i++) {
+                    line("case " + i + ":");
+                    indentation++;
+                    line(local() + " = " + intExpression(expressionDepth) + ";");
+                    line("break;");
+                    indentation--;
+                }
+                line("default:");
+                indentation++;
+                line(local() + " = " + intExpression(expressionDepth) + ";");
+                indentation--;
+                indentation--;
+                line("}");
+            }
+            case 6, 7 -> {
+                var counter = "i" + loopDepth;
+                line("for (" + counter + " = 0; " + counter + " < " + LOOP_ITERATIONS + "; " + counter + "++) {");
+                generateBlock(loopDepth + 1);
+                line("}");
+            }
+            case 8 -> {
+                var counter = "i" + loopDepth;
+                line(counter + " = 0;");
+                line("while (" + counter + " < " + LOOP_ITERATIONS + ") {");
+                generateBlock(loopDepth + 1);
+                indentation++;
+                line(counter + " = " + counter + " + 1;");
+                indentation--;
+                line("}");
+            }
+            default -> {
+                var counter = "i" + loopDepth;
+                line(counter + " = 0;");
+                line("do {");
+                generateBlock(loopDepth + 1);
+                indentation++;
+                line(counter + " = " + counter + " + 1;");
+                indentation--;
+                line("} while (" + counter + " < " + LOOP_ITERATIONS + ");");
+            }
+        }
+    }
+
+    private void generateBlock(int loopDepth) {
+        indentation++;
+
+        var count = 1 + random.nextInt(3);
+        for (int i = 0; i < count; i++)
+            generateStatement(loopDepth);
+
+        indentation--;
+    }
+
+    private String intExpression(int depth) {
+        if (depth <= 0 || random.nextInt(4) == 0) {
+            return switch (random.nextInt(6)) {
+                case 0 -> String.valueOf(random.nextInt(100));
+                case 1 -> random.nextBoolean() ? "p0" : "p1";
+                case 2 -> "values[" + random.nextInt(ARRAY_SIZE) + "]";
+                case 3 -> "values.length";
+                default -> local();
+            };
+        }
+
+        return switch (random.nextInt(8)) {
+            case 0 -> intExpression(depth - 1) + " + " + intExpression(depth - 1);
+            case 1 -> intExpression(depth - 1) + " - " + intExpression(depth - 1);
+            case 2 -> intExpression(depth - 1) + " * " + intExpression(depth - 1);
+            case 3 -> "(" + intExpression(depth - 1) + ") / " + (1 + random.nextInt(9));
+            case 4 -> "(" + intExpression(depth - 1) + " " + (random.nextBoolean() ? "&" : "|") + " " + intExpression(depth - 1) + ")";
+            case 5 -> "-(" + intExpression(depth - 1) + ")";
+            case 6 -> "(" + boolExpression(depth - 1) + " ? " + intExpression(depth - 1) + " : " + intExpression(depth - 1) + ")";
+            default -> "(" + intExpression(depth - 1) + ")";
+        };
+    }
+
+    private String boolExpression(int depth) {
+        if (depth <= 0 || random.nextInt(4) == 0) {
+            return switch (random.nextInt(3)) {
+                case 0 -> String.valueOf(random.nextBoolean());
+                case 1 -> "b0";
+                default -> local() + " < " + random.nextInt(100);
+            };
+        }
+
+        return switch (random.nextInt(5)) {
+            case 0 -> intExpression(depth - 1) + " " + comparison() + " " + intExpression(depth - 1);
+            case 1 -> "(" + boolExpression(depth - 1) + ") && (" + boolExpression(depth - 1) + ")";
+            case 2 -> "(" + boolExpression(depth - 1) + ") || (" + boolExpression(depth - 1) + ")";
+            case 3 -> "!(" + boolExpression(depth - 1) + ")";
+            default -> "(" + boolExpression(depth - 1) + ")";
+        };
+    }
+
+    private String comparison() {
+        return switch (random.nextInt(6)) {
+            case 0 -> "<";
+            case 1 -> ">";
+            case 2 -> "<=";
+            case 3 -> ">=";
+            case 4 -> "==";
+            default -> "!=";
+        };
+    }
+
+    private String local() {
+        return "l" + random.nextInt(locals);
+    }
+
+    private void line(String line) {
+        sb.append("    ".repeat(indentation)).append(line).append('\n');
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: ProgramGenerator <seed> [methods] [statements] [locals] [expressionDepth] [loopNesting] [switchWidth]");
+            System.exit(1);
+        }
+
+        var generator = new ProgramGenerator(Long.parseLong(args[0]));
+        if (args.length > 1) generator.methods(Integer.parseInt(args[1]));
+        if (args.length > 2) generator.statements(Integer.parseInt(args[2]));
+        if (args.length > 3) generator.locals(Integer.parseInt(args[3]));
+        if (args.length > 4) generator.expressionDepth(Integer.parseInt(args[4]));
+        if (args.length > 5) generator.loopNesting(Integer.parseInt(args[5]));
+        if (args.length > 6) generator.switchWidth(Integer.parseInt(args[6]));
+
+        System.out.print(generator.generate());
+    }
+}
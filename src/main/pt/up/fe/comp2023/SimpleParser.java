@@ -1,16 +1,22 @@
 package pt.up.fe.comp2023;
 
-import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
-import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.antlr.ThrowingErrorListener;
 import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Copyright 2022 SPeCS.
@@ -44,20 +50,108 @@ public class SimpleParser implements JmmParser {
             // Wrap lexer around a token stream
             var tokens = new CommonTokenStream(lex);
 
+            // Lex the whole input first, so that both parsing attempts read the same tokens
+            lex.removeErrorListeners();
+            lex.addErrorListener(new ThrowingErrorListener());
+            tokens.fill();
+
             // Transforms tokens into a parse tree
             var parser = new pt.up.fe.comp2023.JavammParser(tokens);
 
-            // Convert ANTLR CST to JmmNode AST
-            return AntlrParser.parse(lex, parser, startingRule)
+            // Profiling replaces the prediction simulator, so it must be enabled before its mode is set
+            var profile = Boolean.parseBoolean(config.get("profileParser"));
+            parser.setProfile(profile);
+
+            // Try the faster SLL prediction first, giving up at the first syntax error instead of recovering
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            parser.removeErrorListeners();
+            parser.setErrorHandler(new BailErrorStrategy());
+
+            // Build the JmmNode AST as the input is parsed, instead of converting a whole ANTLR CST afterwards
+            parser.setBuildParseTree(false);
+
+            Optional<JmmNode> rootNode;
+            try {
+                rootNode = parse(parser, startingRule);
+            } catch (RuntimeException e) {
+                if (!isParseCancellation(e))
+                    throw e;
+
+                // SLL also fails on some valid inputs, so the input is parsed again with full LL, which reports the errors
+                parser.reset();
+                parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+                rootNode = parse(parser, startingRule);
+            }
+
+            var result = rootNode
                     // If there were no errors and a root node was generated, create a JmmParserResult with the node
-                    .map(root -> new JmmParserResult(root, Collections.emptyList(), config))
+                    // The tree is rendered before the analysis annotates it, as long as the reports are read in between
+                    .map(root -> new JmmParserResult(root, new ArrayList<>(List.of(DeferredReport.newDebug(Stage.SYNTATIC, () -> "Generated AST:\n" + root.toTree()))), config))
                     // If there were errors, create an error JmmParserResult without root node
                     .orElseGet(() -> JmmParserResult.newError(new Report(ReportType.ERROR, Stage.SYNTATIC, -1,
                             "There were " + parser.getNumberOfSyntaxErrors() + " syntax errors during parsing, terminating")));
 
+            if (profile)
+                result.getReports().add(new Report(ReportType.LOG, Stage.SYNTATIC, -1, -1, profileReport(parser)));
+
+            return result;
+
         } catch (Exception e) {
             // There was an uncaught exception during parsing, create an error JmmParserResult without root node
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e));
         }
     }
+
+    private static Optional<JmmNode> parse(Parser parser, String startingRule) {
+        var builder = new JmmNodeBuilder(parser);
+        parser.addParseListener(builder);
+
+        try {
+            // Not SpecsSystem.invoke, which caches the methods it finds in a map that is unsafe to share between threads
+            parser.getClass().getMethod(startingRule).invoke(parser);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Could not parse rule '" + startingRule + "'", e);
+        } finally {
+            parser.removeParseListener(builder);
+        }
+
+        if (parser.getNumberOfSyntaxErrors() > 0)
+            return Optional.empty();
+
+        return Optional.of(builder.getRoot());
+    }
+
+    /**
+     * @return a table with the prediction statistics of every decision the parser made, slowest first, covering both
+     * the SLL and the LL attempts
+     */
+    private static String profileReport(Parser parser) {
+        var decisions = new ArrayList<>(List.of(parser.getParseInfo().getDecisionInfo()));
+        decisions.removeIf(decision -> decision.invocations == 0);
+        decisions.sort(Comparator.comparingLong((DecisionInfo decision) -> decision.timeInPrediction).reversed());
+
+        var sb = new StringBuilder("Parser profile:\n");
+        sb.append(String.format("%-8s %-20s %11s %9s %10s %11s %10s %10s %8s%n", "decision", "rule", "invocations",
+                "time (ms)", "SLL look", "LL fallback", "LL look", "ambiguous", "context"));
+
+        for (var decision : decisions) {
+            var rule = parser.getRuleNames()[parser.getATN().getDecisionState(decision.decision).ruleIndex];
+            sb.append(String.format("%-8d %-20s %11d %9.3f %10d %11d %10d %10d %8d%n", decision.decision, rule,
+                    decision.invocations, decision.timeInPrediction / 1e6, decision.SLL_TotalLook, decision.LL_Fallback,
+                    decision.LL_TotalLook, decision.ambiguities.size(), decision.contextSensitivities.size()));
+        }
+
+        return sb.toString();
+    }
+
+    private static boolean isParseCancellation(Throwable e) {
+        for (; e != null; e = e.getCause())
+            if (e instanceof ParseCancellationException)
+                return true;
+
+        return false;
+    }
 }
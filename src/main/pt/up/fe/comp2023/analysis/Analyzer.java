@@ -6,6 +6,8 @@ import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.DeferredReport;
+import pt.up.fe.comp2023.Metrics;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -16,8 +18,6 @@ public class Analyzer implements JmmAnalysis {
         var table = new JmmSymbolTable(jmmParserResult.getRootNode());
         List<Report> reports = new ArrayList<>();
 
-        reports.add(new Report(ReportType.DEBUG, Stage.SEMANTIC, -1, -1, "Generated AST:\n" + jmmParserResult.getRootNode().toTree()));
-
         var main = table.getMethod("main");
         if (main != null) {
             if (!main.getReturnType().print().equals("void"))
@@ -28,10 +28,12 @@ public class Analyzer implements JmmAnalysis {
                 reports.add(new Report(ReportType.ERROR, Stage.SEMANTIC, -1, -1, "The main method must be public and static"));
         }
 
-        new SemanticAnalysisVisitor(table, reports).visit(jmmParserResult.getRootNode());
+        // metrics only count the calling thread, so the members are not checked in parallel while they are collected
+        var parallel = !Metrics.isEnabled(jmmParserResult.getConfig());
+        new SemanticAnalysisVisitor(table, reports, parallel).visit(jmmParserResult.getRootNode());
 
-        reports.add(new Report(ReportType.DEBUG, Stage.SEMANTIC, -1, -1, "Annotated AST:\n" + jmmParserResult.getRootNode().toTree()));
-        reports.add(new Report(ReportType.DEBUG, Stage.SEMANTIC, -1, -1, "Generated symbol table:\n" + table.print()));
+        reports.add(DeferredReport.newDebug(Stage.SEMANTIC, () -> "Annotated AST:\n" + jmmParserResult.getRootNode().toTree()));
+        reports.add(DeferredReport.newDebug(Stage.SEMANTIC, () -> "Generated symbol table:\n" + table.print()));
 
         return new JmmSemanticsResult(
             jmmParserResult.getRootNode(),
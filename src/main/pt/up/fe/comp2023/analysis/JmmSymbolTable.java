@@ -4,10 +4,12 @@ import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.JmmType;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class JmmSymbolTable implements SymbolTable {
@@ -15,6 +17,14 @@ public class JmmSymbolTable implements SymbolTable {
     private final List<Symbol> fields = new ArrayList<>();
     private final List<Method> methods = new ArrayList<>();
 
+    // the first import, field and method with each name, for lookups that do not scan the lists
+    private final Map<String, String> importsBySimpleName = new HashMap<>();
+    private final Map<String, Symbol> fieldsByName = new HashMap<>();
+    private final Map<String, Method> methodsByName = new HashMap<>();
+
+    // the types of this compilation, shared by the analysis and the OLLIR generation
+    private final JmmType.Interner types = new JmmType.Interner();
+
     private String className;
     private String superName;
 
@@ -29,6 +39,20 @@ public class JmmSymbolTable implements SymbolTable {
         return imports;
     }
 
+    /**
+     * @return whether a class with the given simple name is imported
+     */
+    public boolean isImported(String simpleName) {
+        return importsBySimpleName.containsKey(simpleName);
+    }
+
+    /**
+     * @return the type with the given name, with a single instance for each name in this compilation
+     */
+    public JmmType getType(String name) {
+        return types.of(name);
+    }
+
     @Override
     public String getClassName() {
         return className;
@@ -44,7 +68,7 @@ public class JmmSymbolTable implements SymbolTable {
     }
 
     public Method getMethod(String s) {
-        return methods.stream().filter(m -> m.getName().equals(s)).findFirst().orElse(null);
+        return methodsByName.get(s);
     }
 
     @Override
@@ -52,6 +76,13 @@ public class JmmSymbolTable implements SymbolTable {
         return fields;
     }
 
+    /**
+     * @return the field with the given name, or null if there is none
+     */
+    public Symbol getField(String name) {
+        return fieldsByName.get(name);
+    }
+
     @Override
     public List<String> getMethods() {
         return methods.stream().map(Method::getName).collect(Collectors.toList());
@@ -59,29 +90,35 @@ public class JmmSymbolTable implements SymbolTable {
 
     @Override
     public Type getReturnType(String s) {
-        return methods.stream().filter(m -> Objects.equals(m.getName(), s)).findFirst().map(Method::getReturnType).orElse(null);
+        var method = getMethod(s);
+        return method == null ? null : method.getReturnType();
     }
 
     @Override
     public List<Symbol> getParameters(String s) {
-        return methods.stream().filter(m -> Objects.equals(m.getName(), s)).findFirst().map(Method::getParameters).orElse(null);
+        var method = getMethod(s);
+        return method == null ? null : method.getParameters();
     }
 
     @Override
     public List<Symbol> getLocalVariables(String s) {
-        return methods.stream().filter(m -> Objects.equals(m.getName(), s)).findFirst().map(Method::getLocalVariables).orElse(null);
+        var method = getMethod(s);
+        return method == null ? null : method.getLocalVariables();
     }
 
     public void addImport(String fullImport) {
         imports.add(fullImport);
+        importsBySimpleName.putIfAbsent(fullImport.substring(fullImport.lastIndexOf('.') + 1), fullImport);
     }
 
     public void addField(Symbol field) {
         fields.add(field);
+        fieldsByName.putIfAbsent(field.getName(), field);
     }
 
     public void addMethod(Method method) {
         methods.add(method);
+        methodsByName.putIfAbsent(method.getName(), method);
     }
 
     public void setClassName(String className) {
@@ -4,7 +4,9 @@ import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
@@ -16,13 +18,17 @@ public class Method {
 
     private List<Symbol> localVariables;
 
+    // positions of the parameters and the local variables, by name, of the first ones with each name
+    private final Map<String, Integer> parameterPositions = new HashMap<>();
+    private final Map<String, Symbol> localVariablesByName = new HashMap<>();
+
     private Set<String> modifiers;
 
     public Method(String name, Type returnType, List<Symbol> parameters, List<Symbol> localVariables, Set<String> modifiers) {
         this.name = name;
         this.returnType = returnType;
-        this.parameters = parameters;
-        this.localVariables = localVariables;
+        setParameters(parameters);
+        setLocalVariables(localVariables);
     }
 
     public Method(String name, Type returnType, List<Symbol> parameters, List<Symbol> localVariables) {
@@ -62,7 +68,29 @@ public class Method {
     }
 
     public void setParameters(List<Symbol> parameters) {
-        this.parameters = parameters;
+        this.parameters = new ArrayList<>();
+        parameterPositions.clear();
+        parameters.forEach(this::addParameter);
+    }
+
+    public void addParameter(Symbol parameter) {
+        parameterPositions.putIfAbsent(parameter.getName(), parameters.size());
+        parameters.add(parameter);
+    }
+
+    /**
+     * @return the parameter with the given name, or null if there is none
+     */
+    public Symbol getParameter(String name) {
+        var position = parameterPositions.get(name);
+        return position == null ? null : parameters.get(position);
+    }
+
+    /**
+     * @return the position of the parameter with the given name, or -1 if there is none
+     */
+    public int getParameterPosition(String name) {
+        return parameterPositions.getOrDefault(name, -1);
     }
 
     public List<Symbol> getLocalVariables() {
@@ -70,7 +98,21 @@ public class Method {
     }
 
     public void setLocalVariables(List<Symbol> localVariables) {
-        this.localVariables = localVariables;
+        this.localVariables = new ArrayList<>();
+        localVariablesByName.clear();
+        localVariables.forEach(this::addLocalVariable);
+    }
+
+    public void addLocalVariable(Symbol localVariable) {
+        localVariablesByName.putIfAbsent(localVariable.getName(), localVariable);
+        localVariables.add(localVariable);
+    }
+
+    /**
+     * @return the local variable with the given name, or null if there is none
+     */
+    public Symbol getLocalVariable(String name) {
+        return localVariablesByName.get(name);
     }
 
     public Set<String> getModifiers() {
@@ -1,27 +1,39 @@
 package pt.up.fe.comp2023.analysis;
 
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.EnclosingContext;
+import pt.up.fe.comp2023.IterativeJmmVisitor;
+import pt.up.fe.comp2023.JmmType;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 import static pt.up.fe.comp2023.Constants.*;
 import static pt.up.fe.comp2023.Utils.in;
 
-class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
+class SemanticAnalysisVisitor extends IterativeJmmVisitor<String, String> {
+    // classes with fewer members than this are not worth splitting between threads
+    private static final int PARALLEL_MEMBERS_THRESHOLD = 16;
+
     private final List<Report> reports;
     private final JmmSymbolTable table;
+    private final boolean parallel;
+    private EnclosingContext enclosing;
 
-    SemanticAnalysisVisitor(JmmSymbolTable table, List<Report> reports) {
+    /**
+     * @param parallel whether the members of large classes are checked at the same time
+     */
+    SemanticAnalysisVisitor(JmmSymbolTable table, List<Report> reports, boolean parallel) {
         this.table = table;
         this.reports = reports;
+        this.parallel = parallel;
         buildVisitor();
     }
 
@@ -54,7 +66,7 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
         addVisit("WhileStatement", this::checkWhile);
         addVisit("DoStatement", this::checkDo);
         addVisit("ForStatement", this::checkFor);
-        addVisit("ForTerm", this::checkForTerminal);
+        addVisit("For_term", this::checkForTerminal);
         addVisit("ForEachStatement", this::checkForEach);
         addVisit("SwitchStatement", this::checkSwitch);
         addVisit("CaseStatement", this::checkCase);
@@ -62,14 +74,51 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
         addVisit("ComplexType", this::checkComplexType);
     }
 
+    /**
+     * Checks the tree, each member of a large class with its own visitor, which finds what encloses its nodes again.
+     */
     @Override
-    public String visit(JmmNode jmmNode, String data) {
-        data = jmmNode.getOptional("methodName").orElse(jmmNode.getKind().equals("ConstructorDeclaration") ? "<constructor>" : data);
+    public String visit(JmmNode node, String data) {
+        enclosing = new EnclosingContext(node);
+        return super.visit(node, data);
+    }
+
+    /**
+     * Checks every node after its children, as the checks use the types of their children.
+     */
+    @Override
+    protected void visitNode(JmmNode jmmNode, String data, Consumer<String> result) {
+        var context = jmmNode.getOptional("methodName").orElse(jmmNode.getKind().equals("ConstructorDeclaration") ? "<constructor>" : data);
+
+        if (jmmNode.getKind().equals("ClassDeclaration"))
+            visitMembers(jmmNode, context);
+        else
+            for (var child : jmmNode.getChildren())
+                schedule(child, context);
+
+        then(() -> super.visitNode(jmmNode, context, result));
+    }
+
+    /**
+     * Checks the members of a class at the same time, as each one only reads the symbol table and its own subtree.
+     * Every member gets its own reports, which are added in the order the members are declared.
+     */
+    private void visitMembers(JmmNode classNode, String context) {
+        var members = classNode.getChildren();
 
-        for (var child : jmmNode.getChildren())
-            visit(child, data);
+        if (!parallel || members.size() < PARALLEL_MEMBERS_THRESHOLD) {
+            for (var member : members)
+                schedule(member, context);
+            return;
+        }
+
+        var memberReports = members.parallelStream().map(member -> {
+            var reports = new ArrayList<Report>();
+            new SemanticAnalysisVisitor(table, reports, false).visit(member, context);
+            return reports;
+        }).toList();
 
-        return super.visit(jmmNode, data);
+        memberReports.forEach(reports::addAll);
     }
 
     protected String visitDefault(JmmNode node, String context) {
@@ -92,34 +141,26 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
         var method = table.getMethod(context);
         var isStatic = method != null && method.getModifiers().contains("static");
 
-        for (var imp : table.getImports()) {
-            var split = imp.split("\\.");
-            if (split[split.length - 1].equals(id)) {
-                type = id;
-                node.put("origin", "import");
-                break;
-            }
+        if (table.isImported(id)) {
+            type = id;
+            node.put("origin", "import");
         }
         // TODO: static fields
-        if (!isStatic)
-            for (var field : table.getFields())
-                if (field.getName().equals(id)) {
-                    type = field.getType().print();
-                    node.put("origin", "field");
-                    break;
-                }
-        for (var parameter : table.getParametersTry(context).orElse(new ArrayList<>()))
-            if (parameter.getName().equals(id)) {
-                type = parameter.getType().print();
-                node.put("origin", "parameter");
-                break;
-            }
-        for (var local : table.getLocalVariablesTry(context).orElse(new ArrayList<>()))
-            if (local.getName().equals(id)) {
-                type = local.getType().print();
-                node.put("origin", "local");
-                break;
-            }
+        var field = isStatic ? null : table.getField(id);
+        if (field != null) {
+            type = field.getType().print();
+            node.put("origin", "field");
+        }
+        var parameter = method == null ? null : method.getParameter(id);
+        if (parameter != null) {
+            type = parameter.getType().print();
+            node.put("origin", "parameter");
+        }
+        var local = method == null ? null : method.getLocalVariable(id);
+        if (local != null) {
+            type = local.getType().print();
+            node.put("origin", "local");
+        }
 
         if (in(UNIVERSAL_IMPORTS, id)) {
             type = id;
@@ -137,9 +178,9 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
             error(node, "Cannot declare variable of type 'void'");
 
         if (node.getNumChildren() > 1) {
-            var expType = node.getJmmChild(1).get("type");
+            var expType = typeOf(node.getJmmChild(1));
 
-            if (!typesMatch(type, expType))
+            if (!typesMatch(table.getType(type), expType))
                 error(node, "Cannot assign expression of type '" + expType + "' to variable '" + id + "' of type '" + type + "'");
         }
 
@@ -150,54 +191,52 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
 
     protected String checkUnary(JmmNode node, String context) {
         var child = node.getJmmChild(0);
-        var type = child.get("type");
+        var type = typeOf(child);
         var op = node.get("op");
 
-        if (!(typesMatch(type, "int") && in(INTEGER_OPS, op)
-                || typesMatch(type, "float") && in(FLOAT_OPS, op)
-                || typesMatch(type, "boolean") && in(BOOLEAN_OPS, op)
+        if (!(typesMatch(type, JmmType.INT) && in(INTEGER_OPS, op)
+                || typesMatch(type, JmmType.FLOAT) && in(FLOAT_OPS, op)
+                || typesMatch(type, JmmType.BOOLEAN) && in(BOOLEAN_OPS, op)
                 || in(UNIVERSAL_OPS, op)))
             error(node, "Cannot use '" + op + "' on expression of type '" + type + "'");
 
         if ((op.equals("++") || op.equals("--")) && child.getOptional("canAssign").isEmpty())
             error(node, "Cannot use '" + op + "' on this expression");
 
-        node.put("type", type);
+        setType(node, type);
 
         return context;
     }
 
     protected String checkBinary(JmmNode node, String context) {
-        var type1 = node.getJmmChild(0).get("type");
-        var type2 = node.getJmmChild(1).get("type");
+        var type1 = typeOf(node.getJmmChild(0));
+        var type2 = typeOf(node.getJmmChild(1));
         var op = node.get("op");
 
-        if (!(typesMatch(type1, "int") && typesMatch(type2, "int") && in(INTEGER_OPS, op)
-                || typesMatch(type1, "float") && (typesMatch(type2, "float") || typesMatch(type2, "int")) && in(FLOAT_OPS, op)
-                || typesMatch(type1, "boolean") && typesMatch(type2, "boolean") && in(BOOLEAN_OPS, op)
-                || typesMatch(type1, "String") && typesMatch(type2, "String") && op.equals("+")
+        if (!(typesMatch(type1, JmmType.INT) && typesMatch(type2, JmmType.INT) && in(INTEGER_OPS, op)
+                || typesMatch(type1, JmmType.FLOAT) && (typesMatch(type2, JmmType.FLOAT) || typesMatch(type2, JmmType.INT)) && in(FLOAT_OPS, op)
+                || typesMatch(type1, JmmType.BOOLEAN) && typesMatch(type2, JmmType.BOOLEAN) && in(BOOLEAN_OPS, op)
+                || typesMatch(type1, JmmType.STRING) && typesMatch(type2, JmmType.STRING) && op.equals("+")
                 || (typesMatch(type1, type2) || typesMatch(type2, type1)) && in(UNIVERSAL_OPS, op)))
             error(node, "Cannot use '" + op + "' on expressions of type '" + type1 + "' and '" + type2 + "'");
 
-        node.put("type", type2.equals("*") ? type2 : type1);
-        if (in(COMPARISON_OPS, op))
-            node.put("type", "boolean");
+        setType(node, in(COMPARISON_OPS, op) ? JmmType.BOOLEAN : type2.isWildcard() ? type2 : type1);
 
         return context;
     }
 
     protected String checkTernary(JmmNode node, String context) {
-        var type1 = node.getJmmChild(0).get("type");
-        var type2 = node.getJmmChild(1).get("type");
-        var type3 = node.getJmmChild(2).get("type");
+        var type1 = typeOf(node.getJmmChild(0));
+        var type2 = typeOf(node.getJmmChild(1));
+        var type3 = typeOf(node.getJmmChild(2));
 
-        if (!typesMatch(type1, "boolean"))
+        if (!typesMatch(type1, JmmType.BOOLEAN))
             error(node, "Cannot use expression of type '" + type1 + "' as ternary expression");
 
         if (!(typesMatch(type2, type3) || typesMatch(type3, type2)))
             error(node, "Cannot use expressions of type '" + type2 + "' and '" + type3 + "' as ternary arms");
 
-        node.put("type", type2);
+        setType(node, type2);
 
         return context;
     }
@@ -222,16 +261,16 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
     }
 
     protected String checkArrayAccess(JmmNode node, String context) {
-        var type1 = node.getJmmChild(0).get("type");
-        var type2 = node.getJmmChild(1).get("type");
+        var type1 = typeOf(node.getJmmChild(0));
+        var type2 = typeOf(node.getJmmChild(1));
 
-        if (!type1.endsWith("[]") && !type1.equals("*"))
+        if (!type1.isArray() && !type1.isWildcard())
             error(node, "Cannot index expression of type '" + type1 + "'");
 
-        if (!typesMatch(type2, "int"))
+        if (!typesMatch(type2, JmmType.INT))
             error(node, "Cannot use expression of type '" + type2 + "' as index");
 
-        node.put("type", type1.endsWith("[]") ? type1.substring(0, type1.length() - 2) : "*");
+        setType(node, type1.isArray() ? type1.getElementType() : JmmType.WILDCARD);
         node.put("canAssign", "true");
 
         return context;
@@ -240,11 +279,11 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
     protected String checkPropertyAccess(JmmNode node, String context) {
         node.put("canAssign", "true");
 
-        var type = node.getJmmChild(0).get("type");
+        var type = typeOf(node.getJmmChild(0));
         var prop = node.get("member");
 
-        if (typesMatch(type, table.getClassName())) {
-            var field = table.getFields().stream().filter(s -> s.getName().equals(prop)).findFirst();
+        if (typesMatch(type, table.getType(table.getClassName()))) {
+            var field = Optional.ofNullable(table.getField(prop));
 
             if (field.isEmpty() && table.getSuper().isEmpty()) {
                 error(node, "Cannot access property '" + prop + "' on object of type '" + type + "'");
@@ -254,7 +293,7 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
             } else {
                 node.put("type", "*");
             }
-        } else if (type.endsWith("[]")) {
+        } else if (type.isArray()) {
             if (prop.equals("length")) {
                 node.put("type", "int");
             } else {
@@ -276,44 +315,44 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
     }
 
     protected String checkAssignment(JmmNode node, String context) {
-        var type1 = node.getJmmChild(0).get("type");
-        var type2 = node.getJmmChild(1).get("type");
+        var type1 = typeOf(node.getJmmChild(0));
+        var type2 = typeOf(node.getJmmChild(1));
         var op = node.get("op");
 
-        if (!(typesMatch(type1, "int") && typesMatch(type2, "int") && in(INTEGER_OPS, op)
-                || typesMatch(type1, "float") && (typesMatch(type2, "float") || typesMatch(type2, "int")) && in(FLOAT_OPS, op)
-                || typesMatch(type1, type2) && (in(UNIVERSAL_OPS, op) || type1.equals("String") && op.equals("+="))))
+        if (!(typesMatch(type1, JmmType.INT) && typesMatch(type2, JmmType.INT) && in(INTEGER_OPS, op)
+                || typesMatch(type1, JmmType.FLOAT) && (typesMatch(type2, JmmType.FLOAT) || typesMatch(type2, JmmType.INT)) && in(FLOAT_OPS, op)
+                || typesMatch(type1, type2) && (in(UNIVERSAL_OPS, op) || type1 == JmmType.STRING && op.equals("+="))))
             error(node, "Cannot assign expression of type '" + type2 + "' to expression of type '" + type1 + "' with operation '" + op + "'");
 
         if (node.getJmmChild(0).getOptional("canAssign").isEmpty())
             error(node, "Cannot assign to that expression");
 
-        node.put("type", type1);
+        setType(node, type1);
 
         return context;
     }
 
     protected String checkMethodCall(JmmNode node, String context) {
-        String type = table.getClassName();
+        var type = table.getType(table.getClassName());
         var method = node.get("member");
-        List<String> actual = new ArrayList<>();
+        List<JmmType> actual = new ArrayList<>();
 
         for (var child : node.getChildren()) {
             if (child.getKind().equals("ArgumentList")) {
-                actual = child.getChildren().stream().map(n -> n.get("type")).toList();
+                actual = child.getChildren().stream().map(this::typeOf).toList();
             } else {
-                type = child.get("type");
+                type = typeOf(child);
             }
         }
 
-        node.put("type", "*");
+        setType(node, JmmType.WILDCARD);
 
-        if (in(PRIMITIVE_TYPES, type))
+        if (type.isPrimitive())
             error(node, "Cannot call method '" + method + "' on expression of type '" + type + "'");
 
-        if (table.getClassName().equals(type)) {
-            if (table.getMethods().contains(method)) {
-                var expected = table.getParameters(method).stream().map(s -> s.getType().print()).toList();
+        if (table.getClassName().equals(type.getName())) {
+            if (table.getMethod(method) != null) {
+                var expected = table.getParameters(method).stream().map(s -> table.getType(s.getType().print())).toList();
 
                 node.put("type", table.getReturnType(method).print());
 
@@ -339,12 +378,12 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
     }
 
     protected String checkNewArray(JmmNode node, String context) {
-        var type = node.getJmmChild(0).get("type");
-        var index = node.getJmmChild(1).get("type");
+        var type = typeOf(node.getJmmChild(0));
+        var index = typeOf(node.getJmmChild(1));
 
-        node.put("type", type + "[]");
+        setType(node, type.getArrayType());
 
-        if (!typesMatch(index, "int"))
+        if (!typesMatch(index, JmmType.INT))
             error(node, "Cannot create new array with expression of type '" + index + "' as length");
 
         return context;
@@ -386,11 +425,11 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
     }
 
     protected String checkReturn(JmmNode node, String context) {
-        var returnType = table.getReturnType(context).print();
-        var type = "void";
+        var returnType = table.getType(table.getReturnType(context).print());
+        var type = JmmType.VOID;
 
         if (node.getNumChildren() > 0)
-            type = node.getJmmChild(0).get("type");
+            type = typeOf(node.getJmmChild(0));
 
         if (!typesMatch(returnType, type))
             error(node, "Cannot return expression of type '" + type + "' in method with return type '" + returnType + "'");
@@ -399,45 +438,38 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
     }
 
     protected String checkBreak(JmmNode node, String context) {
-        if (node.getAncestor("ForStatement")
-                .or(() -> node.getAncestor("ForEachStatement"))
-                .or(() -> node.getAncestor("WhileStatement"))
-                .or(() -> node.getAncestor("DoStatement"))
-                .or(() -> node.getAncestor("SwitchStatement")).isEmpty())
+        if (enclosing.getBreakTarget(node) == null)
             error(node, "Cannot have a break statement outside a loop or switch statement");
 
         return context;
     }
 
     protected String checkContinue(JmmNode node, String context) {
-        if (node.getAncestor("ForStatement")
-                .or(() -> node.getAncestor("ForEachStatement"))
-                .or(() -> node.getAncestor("WhileStatement"))
-                .or(() -> node.getAncestor("DoStatement")).isEmpty())
+        if (enclosing.getLoop(node) == null)
             error(node, "Cannot have a continue statement outside a loop");
 
         return context;
     }
 
     protected String checkIf(JmmNode node, String context) {
-        var type = node.getJmmChild(0).get("type");
-        if (!typesMatch(type, "boolean"))
+        var type = typeOf(node.getJmmChild(0));
+        if (!typesMatch(type, JmmType.BOOLEAN))
             error(node, "Cannot use expression of type '" + type + "' inside if statement");
 
         return context;
     }
 
     protected String checkWhile(JmmNode node, String context) {
-        var type = node.getJmmChild(0).get("type");
-        if (!typesMatch(type, "boolean"))
+        var type = typeOf(node.getJmmChild(0));
+        if (!typesMatch(type, JmmType.BOOLEAN))
             error(node, "Cannot use expression of type '" + type + "' inside while statement");
 
         return context;
     }
 
     protected String checkDo(JmmNode node, String context) {
-        var type = node.getJmmChild(1).get("type");
-        if (!typesMatch(type, "boolean"))
+        var type = typeOf(node.getJmmChild(1));
+        if (!typesMatch(type, JmmType.BOOLEAN))
             error(node, "Cannot use expression of type '" + type + "' inside do statement");
 
         return context;
@@ -448,26 +480,30 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
     }
 
     protected String checkForTerminal(JmmNode node, String context) {
-        var type = node.getJmmChild(0).get("type");
-        if (!typesMatch(type, "boolean"))
+        // A for statement without a terminal loops until it is broken out of
+        if (node.getNumChildren() == 0)
+            return context;
+
+        var type = typeOf(node.getJmmChild(0));
+        if (!typesMatch(type, JmmType.BOOLEAN))
             error(node, "Cannot use expression of type '" + type + "' as for statement terminal");
 
         return context;
     }
 
     protected String checkForEach(JmmNode node, String context) {
-        var type = node.getJmmChild(0).get("type");
-        var expressionType = node.getJmmChild(1).get("type");
+        var type = typeOf(node.getJmmChild(0));
+        var expressionType = typeOf(node.getJmmChild(1));
 
-        if (!typesMatch(expressionType, type + "[]"))
+        if (!typesMatch(expressionType, type.getArrayType()))
             error(node, "Cannot use expression of type '" + expressionType + "' as array of '" + type + "' in for each statement");
 
         return context;
     }
 
     protected String checkSwitch(JmmNode node, String context) {
-        var type = node.getJmmChild(0).get("type");
-        if (!in(PRIMITIVE_TYPES, type) && !type.equals("String"))
+        var type = typeOf(node.getJmmChild(0));
+        if (!type.isPrimitive() && type != JmmType.STRING)
             error(node, "Cannot use expression of type '" + type + "' inside switch statement");
 
         return context;
@@ -476,7 +512,7 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
     protected String checkCase(JmmNode node, String context) {
         var switchNode = node.getJmmParent();
         var switchExpression = switchNode.getJmmChild(0);
-        var switchType = switchExpression.get("type");
+        var switchType = typeOf(switchExpression);
 
         var casesOpt = switchNode.getOptionalObject("cases");
         if (casesOpt.isEmpty()) {
@@ -492,13 +528,13 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
         cases.add(value);
 
         checkLiteral(node, context);
-        var type = node.get("type");
+        var type = typeOf(node);
 
         if (!typesMatch(type, switchType))
             error(node, "Cannot use expression of type '" + type + "' in case inside switch statement with expression of type '" + switchType + "'");
 
-        if (switchType.equals("*"))
-            switchExpression.put("type", type);
+        if (switchType.isWildcard())
+            setType(switchExpression, type);
 
         return context;
     }
@@ -518,34 +554,36 @@ class SemanticAnalysisVisitor extends AJmmVisitor<String, String> {
         var type = node.get("id");
         node.put("type", type);
 
-        if (!type.equals(table.getClassName()) && !in(UNIVERSAL_IMPORTS, type) && table.getImports().stream().map(i -> {
-            var split = i.split("\\.");
-            return split[split.length - 1];
-        }).noneMatch(i -> i.equals(type)))
+        if (!type.equals(table.getClassName()) && !in(UNIVERSAL_IMPORTS, type) && !table.isImported(type))
             error(node, "Cannot use '" + type + "' as a type without importing it");
 
         return context;
     }
 
+    private JmmType typeOf(JmmNode node) {
+        return table.getType(node.get("type"));
+    }
+
+    private static void setType(JmmNode node, JmmType type) {
+        node.put("type", type.getName());
+    }
+
     /**
      * @return `true` if `type1` matches `type2`
      */
-    private boolean typesMatch(String type1, String type2) {
+    private boolean typesMatch(JmmType type1, JmmType type2) {
         // Either is wildcard
-        return type1.equals("*") || type2.equals("*")
+        return type1.isWildcard() || type2.isWildcard()
             // Both ints
-            || in(INTEGER_TYPES, type1) && in(INTEGER_TYPES, type2)
+            || type1.isInteger() && type2.isInteger()
             // Both floats
-            || in(FLOAT_TYPES, type1) && in(FLOAT_TYPES, type2)
+            || type1.isFloatingPoint() && type2.isFloatingPoint()
             // First is Object and second is not primitive
-            || type1.equals("Object") && !in(PRIMITIVE_TYPES, type2)
+            || type1 == JmmType.OBJECT && !type2.isPrimitive()
             // Both are imported
-            || table.getImports().stream().map(i -> {
-                var split = i.split("\\.");
-                return split[split.length - 1];
-            }).collect(Collectors.toSet()).containsAll(List.of(type1, type2))
+            || table.isImported(type1.getName()) && table.isImported(type2.getName())
             // First is superclass of second
-            || table.getSuper() != null && table.getSuper().equals(type1) && table.getClassName().equals(type2)
+            || table.getSuper() != null && table.getSuper().equals(type1.getName()) && table.getClassName().equals(type2.getName())
             // Both equal
             || type1.equals(type2);
     }
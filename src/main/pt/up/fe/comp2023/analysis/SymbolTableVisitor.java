@@ -2,14 +2,15 @@ package pt.up.fe.comp2023.analysis;
 
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.IterativeJmmVisitor;
 
 import java.util.List;
 import java.util.TreeSet;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-class SymbolTableVisitor extends AJmmVisitor<Object, Object> {
+class SymbolTableVisitor extends IterativeJmmVisitor<Object, Object> {
     private final JmmSymbolTable table;
 
     public SymbolTableVisitor(JmmSymbolTable table) {
@@ -34,20 +35,20 @@ class SymbolTableVisitor extends AJmmVisitor<Object, Object> {
         addVisit("ForEachStatement", this::visitForEach);
     }
 
-    private Object visitOther(JmmNode node, Object context) {
+    private void visitOther(JmmNode node, Object context, Consumer<Object> result) {
         for (var child : node.getChildren())
-            visit(child, context);
+            schedule(child, context);
 
-        return context;
+        result.accept(context);
     }
 
-    private Object visitClass(JmmNode node, Object context) {
+    private void visitClass(JmmNode node, Object context, Consumer<Object> result) {
         table.setClassName(node.get("className"));
 
         for (var child : node.getChildren())
-            visit(child, context);
+            schedule(child, context);
 
-        return context;
+        result.accept(context);
     }
 
     private Object visitParentClass(JmmNode node, Object context) {
@@ -77,7 +78,7 @@ class SymbolTableVisitor extends AJmmVisitor<Object, Object> {
         return context;
     }
 
-    private Method visitMethod(JmmNode node, Object context) {
+    private void visitMethod(JmmNode node, Object context, Consumer<Object> result) {
         var method = new Method(
                 node.getKind().equals("ConstructorDeclaration") ? "<constructor>" : node.get("methodName"),
                 new Type("void", false));
@@ -87,9 +88,9 @@ class SymbolTableVisitor extends AJmmVisitor<Object, Object> {
         method.setModifiers(new TreeSet<>(node.getObjectAsList("modifiers", String.class)));
 
         for (var child : node.getChildren())
-            visit(child, method);
+            schedule(child, method);
 
-        return method;
+        result.accept(method);
     }
 
     private Type visitType(JmmNode node, Object context) {
@@ -135,7 +136,7 @@ class SymbolTableVisitor extends AJmmVisitor<Object, Object> {
 
             Symbol parameter = new Symbol(type, params.get(i).toString());
 
-            method.getParameters().add(parameter);
+            method.addParameter(parameter);
         }
 
         return method.getParameters();
@@ -144,24 +145,24 @@ class SymbolTableVisitor extends AJmmVisitor<Object, Object> {
     private Symbol visitVariable(JmmNode node, Object context) {
         var symbol = new Symbol((Type) visit(node.getJmmChild(0)), node.get("id"));
 
-        if (context instanceof Method) ((Method) context).getLocalVariables().add(symbol);
+        if (context instanceof Method) ((Method) context).addLocalVariable(symbol);
         else table.addField(symbol);
 
         return symbol;
     }
 
-    private Object visitForEach(JmmNode node, Object context) {
+    private void visitForEach(JmmNode node, Object context, Consumer<Object> result) {
         assert context instanceof Method;
 
         var type = (Type) visit(node.getJmmChild(0), context);
         var id = node.get("id");
 
         var symbol = new Symbol(type, id);
-        ((Method) context).getLocalVariables().add(symbol);
+        ((Method) context).addLocalVariable(symbol);
 
         for (var child : node.getChildren())
-            visit(child, context);
+            schedule(child, context);
 
-        return context;
+        result.accept(context);
     }
 }
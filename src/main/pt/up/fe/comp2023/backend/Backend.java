@@ -5,24 +5,69 @@ import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.DeferredReport;
+import pt.up.fe.comp2023.Metrics;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Generates Jasmin code from an OLLIR class.
+ * <p>
+ * The code is written to a {@link Writer} as it is generated. Only the method being generated is kept in memory,
+ * because its stack limit has to be written before its body.
+ * Classes with many methods are the exception: their methods are generated in parallel, and then written in order,
+ * unless the metrics of the compilation are collected, as they only count the calling thread.
+ */
 public class Backend implements JasminBackend {
 
     private static final int DEFAULT_METHOD_STACK_SIZE = 0; // TODO: this is a hack, this value should be 0, it is making an unrelated test fail
-    private String superClassName;
-    private boolean debugMode;
-    private boolean optimize;
 
-    private int currentMethodStackSize = Backend.DEFAULT_METHOD_STACK_SIZE;
-    private int currentMethodStackSizeLimit = Backend.DEFAULT_METHOD_STACK_SIZE;
-    private int currentConditional = 0;
-    private boolean conditionalOptimized = false;
-    private int assignmentRegister = -1;
+    // classes with fewer methods than this are not worth splitting between threads
+    private static final int PARALLEL_METHODS_THRESHOLD = 16;
+
+    private record GeneratedMethod(StringBuilder code, List<Report> reports) {
+    }
+
+    /**
+     * Mutable state used while generating a single method.
+     * Keeping it out of the backend itself allows the same instance to be used from multiple threads.
+     */
+    private static class MethodContext {
+        private final HashMap<String, Descriptor> varTable;
+        private final List<Report> reports;
+        private final String superClassName;
+
+        private int currentMethodStackSize = Backend.DEFAULT_METHOD_STACK_SIZE;
+        private int currentMethodStackSizeLimit = Backend.DEFAULT_METHOD_STACK_SIZE;
+        private int currentConditional = 0;
+        private boolean conditionalOptimized = false;
+        private int assignmentRegister = -1;
+
+        private MethodContext(Method method, List<Report> reports, String superClassName) {
+            this.varTable = method.getVarTable();
+            this.reports = reports;
+            this.superClassName = superClassName;
+        }
+
+        /**
+         * Every OLLIR instruction leaves the stack empty, so counting starts again at each of them and a miscounted
+         * instruction cannot lower the limit of the ones after it.
+         */
+        private void resetStackSize() {
+            this.currentMethodStackSize = 0;
+        }
+
+        private void changeStackSize(int variation) {
+            this.currentMethodStackSize += variation;
+            this.currentMethodStackSizeLimit = Math.max(this.currentMethodStackSizeLimit, this.currentMethodStackSize);
+        }
+    }
 
     @Override
     public JasminResult toJasmin(OllirResult ollirResult) {
@@ -30,69 +75,111 @@ public class Backend implements JasminBackend {
         var config = ollirResult.getConfig();
         var reports = new ArrayList<Report>();
 
-        this.debugMode = Boolean.parseBoolean(config.get("debug"));
-        this.optimize = Boolean.parseBoolean(config.get("optimize"));
+        var writer = new StringWriter();
+        this.writeJasmin(ollirResult, writer, reports);
 
-        var ollirClass = ollirResult.getOllirClass();
+        var jasminCode = writer.toString();
 
-        var jasminCode = this.buildJasminCode(ollirClass, reports, config.get("inputFile"));
+        reports.add(DeferredReport.newDebug(Stage.GENERATION, () -> "Generated Jasmin:\n" + jasminCode));
 
-        reports.add(new Report(ReportType.DEBUG, Stage.GENERATION, -1, -1, "Generated Jasmin:\n" + jasminCode));
-
-        return new JasminResult(ollirClass.getClassName(), jasminCode, reports, config);
+        return new JasminResult(ollirResult.getOllirClass().getClassName(), jasminCode, reports, config);
     }
 
-    private String buildJasminCode(ClassUnit ollirClass, List<Report> reports, String fileName) {
-        var jasminCode = this.buildJasminClass(ollirClass, reports, fileName);
+    /**
+     * Writes the Jasmin code of the class to the given writer as it is generated, so it can go straight to a file.
+     *
+     * @param reports where the reports of the generation are added
+     */
+    public void writeJasmin(OllirResult ollirResult, Writer out, List<Report> reports) {
+
+        var config = ollirResult.getConfig();
+
+        var debugMode = Boolean.parseBoolean(config.get("debug"));
+
+        // the OLLIR of each method is shown as it is generated, so it must be done in order
+        var parallel = !debugMode && !Metrics.isEnabled(config);
 
-        return "; class " + ollirClass.getClassName() + ", transpiled to jasmin\n" + jasminCode;
+        var ollirClass = ollirResult.getOllirClass();
+
+        try {
+            this.buildJasminCode(ollirClass, reports, config.get("inputFile"), debugMode, parallel, out);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
-    private String buildJasminClass(ClassUnit ollirClass, List<Report> reports, String fileName) {
+    private void buildJasminCode(ClassUnit ollirClass, List<Report> reports, String fileName, boolean debugMode, boolean parallel, Writer out) throws IOException {
+        out.append("; class ").append(ollirClass.getClassName()).append(", transpiled to jasmin\n");
 
-        StringBuilder sb = new StringBuilder();
+        this.buildJasminClass(ollirClass, reports, fileName, debugMode, parallel, out);
+    }
+
+    private void buildJasminClass(ClassUnit ollirClass, List<Report> reports, String fileName, boolean debugMode, boolean parallel, Writer out) throws IOException {
 
         var className = ollirClass.getClassName();
 
-        if (className == null) return "";
+        if (className == null) return;
 
         if (fileName != null) {
-            if (!fileName.equals(className.concat(".jmm")) && this.debugMode) {
+            if (!fileName.equals(className.concat(".jmm")) && debugMode) {
                 reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Top level classes should have the same name as the file they are defined in: expected '" + fileName + "', got '" + className + ".jmm'", new Exception("Top level classes should have the same name as the file they are defined in")));
             }
 
-            sb.append(".source ").append(fileName).append('\n');
+            out.append(".source ").append(fileName).append('\n');
         }
 
-        sb.append(".class ");
+        out.append(".class ");
 
         var classAccessModifier = ollirClass.getClassAccessModifier();
         String modifier = classAccessModifier.name().toLowerCase();
         if (classAccessModifier == AccessModifiers.DEFAULT)
             modifier = "public"; // HACK: this is made so the tests pass, it should not be like this
-        sb.append(modifier);
-        sb.append(' ').append(className).append('\n');
+        out.append(modifier);
+        out.append(' ').append(className).append('\n');
 
         var superName = Optional.ofNullable(ollirClass.getSuperClass()).orElse("java.lang.Object").replaceAll("\\.", "/");
-        sb.append(".super ").append(superName).append("\n");
-        this.superClassName = superName;
+        out.append(".super ").append(superName).append("\n");
 
-        sb.append('\n');
+        out.append('\n');
 
-        for (Field field : ollirClass.getFields())
-            sb.append(this.buildJasminClassField(field, reports)).append('\n');
+        var sb = new StringBuilder();
 
-        sb.append('\n');
+        for (Field field : ollirClass.getFields()) {
+            this.buildJasminClassField(field, reports, sb);
+            out.append(sb).append('\n');
+            sb.setLength(0);
+        }
 
-        for (Method method : ollirClass.getMethods())
-            sb.append(this.buildJasminMethod(method, reports)).append('\n');
+        out.append('\n');
 
-        return sb.toString();
-    }
+        var methods = ollirClass.getMethods();
+
+        if (!parallel || methods.size() < PARALLEL_METHODS_THRESHOLD) {
+            for (Method method : methods) {
+                this.buildJasminMethod(method, reports, superName, debugMode, sb);
+                out.append(sb).append('\n');
+                // the buffer is reused, so it only ever grows as large as the largest method
+                sb.setLength(0);
+            }
+            return;
+        }
 
-    private String buildJasminClassField(Field field, List<Report> reports) {
+        // methods do not share any state, so they can be generated at the same time and written in declaration order
+        var generatedMethods = methods.parallelStream().map(method -> {
+            var methodReports = new ArrayList<Report>();
+            var methodCode = new StringBuilder();
+            this.buildJasminMethod(method, methodReports, superName, false, methodCode);
+            return new GeneratedMethod(methodCode, methodReports);
+        }).toList();
+
+        for (var generatedMethod : generatedMethods) {
+            out.append(generatedMethod.code()).append('\n');
+            reports.addAll(generatedMethod.reports());
+        }
+    }
 
-        StringBuilder sb = new StringBuilder();
+    private void buildJasminClassField(Field field, List<Report> reports, StringBuilder sb) {
 
         sb.append(".field ");
 
@@ -105,7 +192,7 @@ public class Backend implements JasminBackend {
 
         sb.append(field.getFieldName()).append(' ');
 
-        sb.append(this.buildJasminTypeDescriptor(field.getFieldType(), reports));
+        this.buildJasminTypeDescriptor(field.getFieldType(), reports, sb);
 
         if (field.isInitialized()) {
 
@@ -113,32 +200,33 @@ public class Backend implements JasminBackend {
 
             sb.append(" = ").append(field.getInitialValue());
         }
-
-        return sb.toString();
     }
 
-    private String buildJasminMethod(Method method, List<Report> reports) {
+    private void buildJasminMethod(Method method, List<Report> reports, String superClassName, boolean debugMode, StringBuilder sb) {
 
         // FIXME: should this be placed in a different function ?
         if (method.isConstructMethod()) {
             if (method.isStaticMethod()) { // constructor cannot be static
                 reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot generate static constructor(" + method.getMethodName() + ")", new Exception("Cannot generate static constructor")));
-                return "";
+                return;
             } else if (method.isFinalMethod()) {
                 reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot generate final constructor(" + method.getMethodName() + ")", new Exception("Cannot generate final constructor")));
-                return "";
+                return;
             }
         }
 
-        if (this.debugMode) method.show();
+        if (debugMode) method.show();
 
-        StringBuilder sb = new StringBuilder();
+        var ctx = new MethodContext(method, reports, superClassName);
 
         sb.append(".method ");
 
-        sb.append(this.buildJasminMethodHeader(method, reports));
+        this.buildJasminMethodHeader(method, reports, sb);
 
-        var bodyCode = this.buildJasminMethodBody(method, reports);
+        // the limits go before the body, but the stack limit is only known after it is generated
+        var limitsStart = sb.length();
+
+        this.buildJasminMethodBody(method, ctx, sb, limitsStart);
 
         if (!method.isConstructMethod()) {
 
@@ -154,22 +242,13 @@ public class Backend implements JasminBackend {
             if (!method.isStaticMethod() && !method.getVarTable().containsKey("this")) numLocals++;
 
             // TODO: change when optimizing
-            sb.append("\t.limit locals ").append(numLocals).append('\n');
-            sb.append("\t.limit stack ").append(this.currentMethodStackSizeLimit).append('\n');
-
-            this.currentMethodStackSizeLimit = Backend.DEFAULT_METHOD_STACK_SIZE;
-            this.currentMethodStackSize = Backend.DEFAULT_METHOD_STACK_SIZE;
+            sb.insert(limitsStart, "\t.limit locals " + numLocals + '\n' + "\t.limit stack " + ctx.currentMethodStackSizeLimit + '\n');
         }
 
-        sb.append(bodyCode);
-
         sb.append(".end method\n");
-
-        return sb.toString();
     }
 
-    private String buildJasminMethodHeader(Method method, List<Report> reports) {
-        var sb = new StringBuilder();
+    private void buildJasminMethodHeader(Method method, List<Report> reports, StringBuilder sb) {
 
         var accessModifier = method.getMethodAccessModifier();
         sb.append(accessModifier == AccessModifiers.DEFAULT ? "" : accessModifier.name().toLowerCase().concat(" "));
@@ -184,7 +263,7 @@ public class Backend implements JasminBackend {
         sb.append('(');
 
         for (var param : method.getParams())
-            sb.append(this.buildJasminTypeDescriptor(param.getType(), reports));
+            this.buildJasminTypeDescriptor(param.getType(), reports, sb);
 
         sb.append(")");
 
@@ -193,18 +272,13 @@ public class Backend implements JasminBackend {
 
         // even though constructors return void, short-circuit the check
         if (method.isConstructMethod() || isVoid) sb.append('V');
-        else sb.append(this.buildJasminTypeDescriptor(methodReturnType, reports));
+        else this.buildJasminTypeDescriptor(methodReturnType, reports, sb);
         sb.append('\n');
-
-        return sb.toString();
     }
 
-    private String buildJasminMethodBody(Method method, List<Report> reports) {
-
-        var sb = new StringBuilder();
+    private void buildJasminMethodBody(Method method, MethodContext ctx, StringBuilder sb, int bodyStart) {
 
         boolean hasReturn = false;
-        var varTable = method.getVarTable();
 
         for (Instruction instruction : method.getInstructions()) {
 
@@ -213,106 +287,100 @@ public class Backend implements JasminBackend {
             var labels = method.getLabels(instruction);
             labels.forEach(label -> sb.append(label).append(":\n"));
 
-            sb.append(this.buildJasminInstruction(instruction, varTable, reports)).append('\n');
+            ctx.resetStackSize();
+            this.buildJasminInstruction(instruction, ctx, sb);
+            sb.append('\n');
 
             if (instruction.getInstType() == InstructionType.CALL && ((CallInstruction) instruction).getReturnType().getTypeOfElement() != ElementType.VOID) {
                 sb.append("\tpop\n");
-                this.changeCurrentMethodStackSizeLimit(-1);
+                ctx.changeStackSize(-1);
             }
         }
         if (!hasReturn) { // default to have a return
             if (!(method.isConstructMethod() || method.getReturnType().getTypeOfElement() == ElementType.VOID)) {
-                reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Non-void function must have a return type", new Exception("Non-void function must have a return type")));
-                return "";
+                ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Non-void function must have a return type", new Exception("Non-void function must have a return type")));
+                sb.setLength(bodyStart);
+                return;
             }
 
             var instruction = new ReturnInstruction();
             instruction.setReturnType(new Type(ElementType.VOID));
 
-            sb.append(this.buildJasminInstruction(instruction, varTable, reports)).append('\n');
+            this.buildJasminInstruction(instruction, ctx, sb);
+            sb.append('\n');
         }
-
-        return sb.toString();
     }
 
-    private String buildJasminInstruction(Instruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports) {
-
-        var sb = new StringBuilder();
-
-        var instructionCode = switch (instruction.getInstType()) {
-            case ASSIGN -> this.buildJasminAssignInstruction((AssignInstruction) instruction, varTable, reports);
-            case CALL -> this.buildJasminCallInstruction((CallInstruction) instruction, varTable, reports);
-            case GOTO -> this.buildJasminGotoInstruction((GotoInstruction) instruction, varTable, reports);
-            case BRANCH -> this.buildJasminBranchInstruction((CondBranchInstruction) instruction, varTable, reports);
-            case RETURN -> this.buildJasminReturnInstruction((ReturnInstruction) instruction, varTable, reports);
-            case PUTFIELD -> this.buildJasminPutfieldOperation((PutFieldInstruction) instruction, varTable, reports);
-            case GETFIELD -> this.buildJasminGetfieldOperation((GetFieldInstruction) instruction, varTable, reports);
+    private void buildJasminInstruction(Instruction instruction, MethodContext ctx, StringBuilder sb) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> this.buildJasminAssignInstruction((AssignInstruction) instruction, ctx, sb);
+            case CALL -> this.buildJasminCallInstruction((CallInstruction) instruction, ctx, sb);
+            case GOTO -> this.buildJasminGotoInstruction((GotoInstruction) instruction, ctx, sb);
+            case BRANCH -> this.buildJasminBranchInstruction((CondBranchInstruction) instruction, ctx, sb);
+            case RETURN -> this.buildJasminReturnInstruction((ReturnInstruction) instruction, ctx, sb);
+            case PUTFIELD -> this.buildJasminPutfieldOperation((PutFieldInstruction) instruction, ctx, sb);
+            case GETFIELD -> this.buildJasminGetfieldOperation((GetFieldInstruction) instruction, ctx, sb);
             case UNARYOPER ->
-                    this.buildJasminUnaryOperatorInstruction((UnaryOpInstruction) instruction, varTable, reports);
+                    this.buildJasminUnaryOperatorInstruction((UnaryOpInstruction) instruction, ctx, sb);
             case BINARYOPER ->
-                    this.buildJasminBinaryOperatorInstruction((BinaryOpInstruction) instruction, varTable, reports);
-            case NOPER -> this.buildJasminSingleOpInstruction((SingleOpInstruction) instruction, varTable, reports);
-        };
-
-        sb.append(instructionCode);
-
-        return sb.toString();
+                    this.buildJasminBinaryOperatorInstruction((BinaryOpInstruction) instruction, ctx, sb);
+            case NOPER -> this.buildJasminSingleOpInstruction((SingleOpInstruction) instruction, ctx, sb);
+        }
     }
 
-    private String buildJasminAssignInstruction(AssignInstruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports) {
-
-        var sb = new StringBuilder();
+    private void buildJasminAssignInstruction(AssignInstruction instruction, MethodContext ctx, StringBuilder sb) {
 
         Operand op = (Operand) instruction.getDest();
 
-        var descriptor = varTable.get(op.getName());
+        var descriptor = ctx.varTable.get(op.getName());
         int regNum = descriptor.getVirtualReg();
 
-        this.assignmentRegister = regNum;
+        ctx.assignmentRegister = regNum;
 
         if (op instanceof ArrayOperand arr) {
 
             sb.append("\taload").append(regNum < 4 ? '_' : ' ').append(regNum).append('\n');
-            this.changeCurrentMethodStackSizeLimit(1);
+            ctx.changeStackSize(1);
 
             for (var elem : arr.getIndexOperands()) {
-                sb.append('\t').append(this.buildJasminLoadElementInstruction(elem, varTable, reports)).append("\n");
+                sb.append('\t');
+                this.buildJasminLoadElementInstruction(elem, ctx, sb);
+                sb.append("\n");
             }
 
             // we need to load the rhs here because of the stack limits
-            sb.append(this.buildJasminInstruction(instruction.getRhs(), varTable, reports)).append('\n');
+            this.buildJasminInstruction(instruction.getRhs(), ctx, sb);
+            sb.append('\n');
 
             sb.append('\t');
             switch (arr.getType().getTypeOfElement()) {
                 case INT32, BOOLEAN -> sb.append('i');
                 case ARRAYREF, OBJECTREF, STRING, THIS, CLASS -> sb.append('a');
                 case VOID ->
-                        reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot load void variable", new Exception("Cannot load void variable")));
+                        ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot load void variable", new Exception("Cannot load void variable")));
             }
             sb.append("astore");
-            this.changeCurrentMethodStackSizeLimit(-1);
+            ctx.changeStackSize(-1);
         } else {
-            sb.append(this.buildJasminInstruction(instruction.getRhs(), varTable, reports)).append('\n');
+            this.buildJasminInstruction(instruction.getRhs(), ctx, sb);
+            sb.append('\n');
 
             sb.append('\t');
             switch (instruction.getTypeOfAssign().getTypeOfElement()) {
                 case INT32, BOOLEAN -> sb.append('i');
                 case ARRAYREF, OBJECTREF, STRING, CLASS, THIS -> sb.append('a');
                 case VOID ->
-                        reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot assign to void variable", new Exception("Cannot assign to void variable")));
+                        ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot assign to void variable", new Exception("Cannot assign to void variable")));
             }
             sb.append("store");
 
             sb.append(regNum < 4 ? '_' : ' ').append(regNum);
 
-            this.changeCurrentMethodStackSizeLimit(-1);
+            ctx.changeStackSize(-1);
         }
-
-        return sb.toString();
     }
 
-    private String buildJasminIntegerPushInstruction(int value) {
-        var sb = new StringBuilder();
+    private void buildJasminIntegerPushInstruction(int value, StringBuilder sb) {
         if (value < -1) {
             sb.append("ldc ").append(value);
         } else if (value == -1) {
@@ -326,47 +394,43 @@ public class Backend implements JasminBackend {
         } else {
             sb.append("ldc ").append(value);
         }
-        return sb.toString();
     }
 
-    private String buildJasminLoadLiteralInstruction(LiteralElement literal, HashMap<String, Descriptor> varTable, List<Report> reports) {
-        var sb = new StringBuilder();
-
+    private void buildJasminLoadLiteralInstruction(LiteralElement literal, MethodContext ctx, StringBuilder sb) {
         switch (literal.getType().getTypeOfElement()) {
             case INT32, BOOLEAN -> {
                 var value = literal.getLiteral();
 
-                sb.append(this.buildJasminIntegerPushInstruction(Integer.parseInt(value)));
+                this.buildJasminIntegerPushInstruction(Integer.parseInt(value), sb);
             }
             case STRING -> sb.append("ldc ").append(literal.getLiteral());
             case ARRAYREF, OBJECTREF, THIS, CLASS, VOID ->
-                    reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot load void variable", new Exception("Cannot load void variable")));
+                    ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot load void variable", new Exception("Cannot load void variable")));
         }
 
-        this.changeCurrentMethodStackSizeLimit(1);
-
-        return sb.toString();
+        ctx.changeStackSize(1);
     }
 
-    private String buildJasminLoadOperandInstruction(Operand op, HashMap<String, Descriptor> varTable, List<Report> reports) {
-        var sb = new StringBuilder();
-
+    private void buildJasminLoadOperandInstruction(Operand op, MethodContext ctx, StringBuilder sb) {
         if (op.getName().equals("false") || op.getName().equals("true")) {
             // "true" and "false" get parsed as operands when they really should be literals, this is a hacky way of fixing that
-            return this.buildJasminLoadLiteralInstruction(new LiteralElement(op.getName().equals("true") ? "1" : "0", new Type(ElementType.BOOLEAN)), varTable, reports);
+            this.buildJasminLoadLiteralInstruction(new LiteralElement(op.getName().equals("true") ? "1" : "0", new Type(ElementType.BOOLEAN)), ctx, sb);
+            return;
         }
 
-        var argDescriptor = varTable.get(op.getName());
+        var argDescriptor = ctx.varTable.get(op.getName());
         int argRegNum = argDescriptor.getVirtualReg();
 
         // TODO: can be better (?)
         if (op instanceof ArrayOperand arr) {
 
             sb.append("aload").append(argRegNum < 4 ? '_' : ' ').append(argRegNum).append('\n');
-            this.changeCurrentMethodStackSizeLimit(1);
+            ctx.changeStackSize(1);
 
             for (var elem : arr.getIndexOperands()) {
-                sb.append('\t').append(this.buildJasminLoadElementInstruction(elem, varTable, reports)).append("\n");
+                sb.append('\t');
+                this.buildJasminLoadElementInstruction(elem, ctx, sb);
+                sb.append("\n");
             }
 
             sb.append('\t');
@@ -375,43 +439,36 @@ public class Backend implements JasminBackend {
                 case INT32, BOOLEAN -> sb.append('i');
                 case ARRAYREF, OBJECTREF, STRING, THIS, CLASS -> sb.append('a');
                 case VOID ->
-                        reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot load void variable", new Exception("Cannot load void variable")));
+                        ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot load void variable", new Exception("Cannot load void variable")));
             }
             sb.append("aload");
 
-            this.changeCurrentMethodStackSizeLimit(1);
+            ctx.changeStackSize(-1);
         } else {
             switch (op.getType().getTypeOfElement()) {
                 case INT32, BOOLEAN -> sb.append('i');
                 case ARRAYREF, OBJECTREF, STRING, THIS, CLASS -> sb.append('a');
                 case VOID ->
-                        reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot load void variable", new Exception("Cannot load void variable")));
+                        ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot load void variable", new Exception("Cannot load void variable")));
             }
 
             sb.append("load");
 
             sb.append(argRegNum < 4 ? '_' : ' ').append(argRegNum);
 
-            this.changeCurrentMethodStackSizeLimit(1);
+            ctx.changeStackSize(1);
         }
-
-        return sb.toString();
     }
 
-    private String buildJasminLoadElementInstruction(Element elem, HashMap<String, Descriptor> varTable, List<Report> reports) {
-        var sb = new StringBuilder();
-
+    private void buildJasminLoadElementInstruction(Element elem, MethodContext ctx, StringBuilder sb) {
         if (elem.isLiteral()) {
-            sb.append(this.buildJasminLoadLiteralInstruction((LiteralElement) elem, varTable, reports));
+            this.buildJasminLoadLiteralInstruction((LiteralElement) elem, ctx, sb);
         } else {
-            sb.append(this.buildJasminLoadOperandInstruction((Operand) elem, varTable, reports));
+            this.buildJasminLoadOperandInstruction((Operand) elem, ctx, sb);
         }
-
-        return sb.toString();
     }
 
-    private String buildJasminCallInstruction(CallInstruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports) {
-        var sb = new StringBuilder();
+    private void buildJasminCallInstruction(CallInstruction instruction, MethodContext ctx, StringBuilder sb) {
 
         // taken from https://github.com/PedroJSilva2001/feup-comp-jmm-compiler/blob/master/src/pt/up/fe/comp/jmm/jasmin/JasminBackender.java#L447
         AtomicInteger stackSizeVariation = new AtomicInteger(-1);
@@ -422,23 +479,25 @@ public class Backend implements JasminBackend {
                 LiteralElement methodName = (LiteralElement) instruction.getSecondArg();
 
                 // load the object reference onto the stack
-                sb.append('\t').append(this.buildJasminLoadOperandInstruction(calledObject, varTable, reports)).append('\n');
+                sb.append('\t');
+                this.buildJasminLoadOperandInstruction(calledObject, ctx, sb);
+                sb.append('\n');
                 stackSizeVariation.getAndIncrement();
 
                 // load args
                 instruction.getListOfOperands().forEach((arg) -> {
-                    sb.append('\t').append(this.buildJasminLoadElementInstruction(arg, varTable, reports)).append('\n');
+                    sb.append('\t');
+                    this.buildJasminLoadElementInstruction(arg, ctx, sb);
+                    sb.append('\n');
                     stackSizeVariation.incrementAndGet();
                 });
 
                 sb.append('\t').append("invokevirtual ").append(((ClassType) calledObject.getType()).getName()).append('/').append(methodName.getLiteral().replaceAll("\"", "")).append('(');
 
-                instruction.getListOfOperands().forEach((op) -> {
-                    var opType = this.buildJasminTypeDescriptor(op.getType(), reports);
-                    sb.append(opType);
-                });
+                instruction.getListOfOperands().forEach((op) -> this.buildJasminTypeDescriptor(op.getType(), ctx.reports, sb));
 
-                sb.append(')').append(this.buildJasminTypeDescriptor(instruction.getReturnType(), reports));
+                sb.append(')');
+                this.buildJasminTypeDescriptor(instruction.getReturnType(), ctx.reports, sb);
 
                 if (instruction.getReturnType().getTypeOfElement() == ElementType.VOID) {
                     stackSizeVariation.getAndDecrement();
@@ -450,12 +509,16 @@ public class Backend implements JasminBackend {
                 Operand calledObject = (Operand) instruction.getFirstArg();
                 LiteralElement methodName = (LiteralElement) instruction.getSecondArg();
 
-                sb.append('\t').append(this.buildJasminLoadOperandInstruction(calledObject, varTable, reports)).append('\n');
+                sb.append('\t');
+                this.buildJasminLoadOperandInstruction(calledObject, ctx, sb);
+                sb.append('\n');
                 stackSizeVariation.getAndIncrement();
 
                 // load args
                 instruction.getListOfOperands().forEach((arg) -> {
-                    sb.append('\t').append(this.buildJasminLoadElementInstruction(arg, varTable, reports)).append('\n');
+                    sb.append('\t');
+                    this.buildJasminLoadElementInstruction(arg, ctx, sb);
+                    sb.append('\n');
                     stackSizeVariation.incrementAndGet();
                 });
 
@@ -464,17 +527,15 @@ public class Backend implements JasminBackend {
                 // TODO: perhaps RTE
                 String objectName = ((ClassType) calledObject.getType()).getName();
                 if (Objects.equals(calledObject.getName(), ElementType.THIS.toString().toLowerCase())) {
-                    objectName = this.superClassName;
+                    objectName = ctx.superClassName;
                 }
 
                 sb.append(objectName).append('/').append(methodName.getLiteral().replaceAll("\"", "")).append('(');
 
-                instruction.getListOfOperands().forEach((op) -> {
-                    var opType = this.buildJasminTypeDescriptor(op.getType(), reports);
-                    sb.append(opType);
-                });
+                instruction.getListOfOperands().forEach((op) -> this.buildJasminTypeDescriptor(op.getType(), ctx.reports, sb));
 
-                sb.append(')').append(this.buildJasminTypeDescriptor(instruction.getReturnType(), reports));
+                sb.append(')');
+                this.buildJasminTypeDescriptor(instruction.getReturnType(), ctx.reports, sb);
 
                 if (instruction.getReturnType().getTypeOfElement() == ElementType.VOID) {
                     stackSizeVariation.getAndDecrement();
@@ -486,7 +547,9 @@ public class Backend implements JasminBackend {
 
                 // load args
                 instruction.getListOfOperands().forEach((arg) -> {
-                    sb.append('\t').append(this.buildJasminLoadElementInstruction(arg, varTable, reports)).append('\n');
+                    sb.append('\t');
+                    this.buildJasminLoadElementInstruction(arg, ctx, sb);
+                    sb.append('\n');
                     stackSizeVariation.getAndIncrement();
                 });
 
@@ -497,12 +560,10 @@ public class Backend implements JasminBackend {
 
                 sb.append('\t').append("invokestatic ").append(className).append('/').append(methodName.getLiteral().replaceAll("\"", "")).append('(');
 
-                instruction.getListOfOperands().forEach((op) -> {
-                    var opType = this.buildJasminTypeDescriptor(op.getType(), reports);
-                    sb.append(opType);
-                });
+                instruction.getListOfOperands().forEach((op) -> this.buildJasminTypeDescriptor(op.getType(), ctx.reports, sb));
 
-                sb.append(')').append(this.buildJasminTypeDescriptor(instruction.getReturnType(), reports));
+                sb.append(')');
+                this.buildJasminTypeDescriptor(instruction.getReturnType(), ctx.reports, sb);
 
                 if (instruction.getReturnType().getTypeOfElement() == ElementType.VOID) {
                     stackSizeVariation.getAndDecrement();
@@ -513,38 +574,39 @@ public class Backend implements JasminBackend {
 
                 var className = objectClass.getName();
 
-                sb.append('\t');
                 if ("array".equals(className)) {
 
+                    var elementType = ((ArrayType) instruction.getReturnType()).getElementType().getTypeOfElement();
+
+                    if (elementType != ElementType.INT32) {
+                        ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Only int arrays are supported", new Exception("Only int arrays are supported")));
+                        return;
+                    }
+
                     // there should only be one other operand, the array size. Load it and assume this is ok
                     var sizeOperand = instruction.getListOfOperands().get(0);
-                    sb.append(this.buildJasminLoadElementInstruction(sizeOperand, varTable, reports)).append('\n');
+                    sb.append('\t');
+                    this.buildJasminLoadElementInstruction(sizeOperand, ctx, sb);
+                    sb.append('\n');
 
                     sb.append("\tnewarray").append(' ');
-                    var elementType = ((ArrayType) instruction.getReturnType()).getElementType().getTypeOfElement();
-
-                    if (elementType == ElementType.INT32) {
-                        sb.append("int");
-                    } else {
-                        reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Only int arrays are supported", new Exception("Only int arrays are supported")));
-                        return "";
-                    }
+                    sb.append("int");
                 } else {
+                    sb.append('\t');
                     sb.append("new ").append(className);
-                    this.changeCurrentMethodStackSizeLimit(1);
+                    ctx.changeStackSize(1);
                 }
 
-                sb.append('\n');
-                sb.append("\tdup");
-
-                this.changeCurrentMethodStackSizeLimit(1);
-
+                // the reference is always assigned, and the constructor is called on the variable it is assigned to,
+                // so it is not duplicated, which would leave a copy on the stack after every new
             }
             case arraylength -> {
                 Operand op = (Operand) instruction.getFirstArg();
 
                 // load the object reference onto the stack
-                sb.append('\t').append(this.buildJasminLoadOperandInstruction(op, varTable, reports)).append('\n');
+                sb.append('\t');
+                this.buildJasminLoadOperandInstruction(op, ctx, sb);
+                sb.append('\n');
 
                 sb.append("\tarraylength");
 
@@ -552,55 +614,50 @@ public class Backend implements JasminBackend {
             case ldc -> {
                 var literal = (LiteralElement) instruction.getFirstArg();
 
-                sb.append('\t').append(this.buildJasminLoadLiteralInstruction(literal, varTable, reports));
+                sb.append('\t');
+                this.buildJasminLoadLiteralInstruction(literal, ctx, sb);
             }
         }
 
-        this.changeCurrentMethodStackSizeLimit(-stackSizeVariation.get());
-
-        return sb.toString();
+        ctx.changeStackSize(-stackSizeVariation.get());
     }
 
-    private String buildJasminGotoInstruction(GotoInstruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports) {
-        return "\tgoto " + instruction.getLabel();
+    private void buildJasminGotoInstruction(GotoInstruction instruction, MethodContext ctx, StringBuilder sb) {
+        sb.append("\tgoto ").append(instruction.getLabel());
     }
 
-    private String buildJasminBranchInstruction(CondBranchInstruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports) {
-
-        var sb = new StringBuilder();
+    private void buildJasminBranchInstruction(CondBranchInstruction instruction, MethodContext ctx, StringBuilder sb) {
 
         var cond = instruction.getCondition();
 
-        var inst = switch (cond.getInstType()) {
-            case UNARYOPER ->
-                    this.buildJasminUnaryOperatorInstruction((UnaryOpInstruction) cond, varTable, reports) + " "; // negated boolean
-            case BINARYOPER ->
-                    this.buildJasminBinaryOperatorInstruction((BinaryOpInstruction) cond, varTable, reports) + " "; // conditional expression
+        switch (cond.getInstType()) {
+            case UNARYOPER -> { // negated boolean
+                this.buildJasminUnaryOperatorInstruction((UnaryOpInstruction) cond, ctx, sb);
+                sb.append(' ');
+            }
+            case BINARYOPER -> { // conditional expression
+                this.buildJasminBinaryOperatorInstruction((BinaryOpInstruction) cond, ctx, sb);
+                sb.append(' ');
+            }
             case NOPER ->
-                    this.buildJasminSingleOpInstruction((SingleOpInstruction) cond, varTable, reports); // direct boolean
-            default -> "nop ; this should have been an expression instruction\n\t";
-        };
-
-        sb.append(inst);
+                    this.buildJasminSingleOpInstruction((SingleOpInstruction) cond, ctx, sb); // direct boolean
+            default -> sb.append("nop ; this should have been an expression instruction\n\t");
+        }
 
-        if (!this.conditionalOptimized) {
+        if (!ctx.conditionalOptimized) {
             sb.append("\n\t").append("ifne");
         } else {
-            this.conditionalOptimized = false;
+            ctx.conditionalOptimized = false;
         }
 
         sb.append(' ').append(instruction.getLabel());
-
-        return sb.toString();
     }
 
-    private String buildJasminReturnInstruction(ReturnInstruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports) {
-
-        var sb = new StringBuilder();
+    private void buildJasminReturnInstruction(ReturnInstruction instruction, MethodContext ctx, StringBuilder sb) {
 
         if (instruction.hasReturnValue()) {
             sb.append('\t');
-            sb.append(this.buildJasminLoadElementInstruction(instruction.getOperand(), varTable, reports));
+            this.buildJasminLoadElementInstruction(instruction.getOperand(), ctx, sb);
             sb.append('\n');
         }
 
@@ -622,22 +679,20 @@ public class Backend implements JasminBackend {
                 break;
         }
         sb.append("return");
-        this.changeCurrentMethodStackSizeLimit(-1);
-
-        return sb.toString();
+        ctx.changeStackSize(-1);
     }
 
-    private String buildJasminPutfieldOperation(PutFieldInstruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports) {
-
-        var sb = new StringBuilder();
+    private void buildJasminPutfieldOperation(PutFieldInstruction instruction, MethodContext ctx, StringBuilder sb) {
 
         var firstOperand = (Operand) instruction.getFirstOperand();
         var secondOperand = (Operand) instruction.getSecondOperand();
 
-        sb.append('\t').append(this.buildJasminLoadOperandInstruction(firstOperand, varTable, reports)).append('\n');
+        sb.append('\t');
+        this.buildJasminLoadOperandInstruction(firstOperand, ctx, sb);
+        sb.append('\n');
 
         sb.append('\t');
-        sb.append(this.buildJasminLoadElementInstruction(instruction.getThirdOperand(), varTable, reports));
+        this.buildJasminLoadElementInstruction(instruction.getThirdOperand(), ctx, sb);
         sb.append('\n');
 
         sb.append("\tputfield ");
@@ -648,20 +703,20 @@ public class Backend implements JasminBackend {
         sb.append('/');
 
         sb.append(secondOperand.getName());
-        sb.append(' ').append(this.buildJasminTypeDescriptor(secondOperand.getType(), reports));
+        sb.append(' ');
+        this.buildJasminTypeDescriptor(secondOperand.getType(), ctx.reports, sb);
 
-        this.changeCurrentMethodStackSizeLimit(-2); // this is correct if we do not invoke this with array operands
-
-        return sb.toString();
+        ctx.changeStackSize(-2); // this is correct if we do not invoke this with array operands
     }
 
-    private String buildJasminGetfieldOperation(GetFieldInstruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports) {
-        var sb = new StringBuilder();
+    private void buildJasminGetfieldOperation(GetFieldInstruction instruction, MethodContext ctx, StringBuilder sb) {
 
         var firstOperand = (Operand) instruction.getFirstOperand();
         var secondOperand = (Operand) instruction.getSecondOperand();
 
-        sb.append('\t').append(this.buildJasminLoadOperandInstruction(firstOperand, varTable, reports)).append('\n');
+        sb.append('\t');
+        this.buildJasminLoadOperandInstruction(firstOperand, ctx, sb);
+        sb.append('\n');
 
         sb.append("\tgetfield ");
 
@@ -671,30 +726,23 @@ public class Backend implements JasminBackend {
         sb.append('/');
 
         sb.append(secondOperand.getName());
-        sb.append(' ').append(this.buildJasminTypeDescriptor(instruction.getFieldType(), reports));
+        sb.append(' ');
+        this.buildJasminTypeDescriptor(instruction.getFieldType(), ctx.reports, sb);
 
-        this.changeCurrentMethodStackSizeLimit(1);
-
-        return sb.toString();
+        ctx.changeStackSize(1);
     }
 
-    private String buildJasminUnaryOperatorInstruction(UnaryOpInstruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports) {
-        var sb = new StringBuilder();
+    private void buildJasminUnaryOperatorInstruction(UnaryOpInstruction instruction, MethodContext ctx, StringBuilder sb) {
 
         Operation operation = instruction.getOperation();
 
-        var dType = switch (operation.getTypeInfo().getTypeOfElement()) {
-            case INT32, BOOLEAN -> "i";
-            case ARRAYREF, OBJECTREF, STRING, CLASS, THIS -> "a";
-            case VOID -> {
-                reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot perform binary operation on void type", new Exception("Cannot perform binary operation on void type")));
-                yield "marker";
-            }
-        };
-        if ("marker".equals(dType)) return "";
+        if (operation.getTypeInfo().getTypeOfElement() == ElementType.VOID) {
+            ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot perform binary operation on void type", new Exception("Cannot perform binary operation on void type")));
+            return;
+        }
 
         sb.append('\t');
-        sb.append(this.buildJasminLoadElementInstruction(instruction.getOperand(), varTable, reports));
+        this.buildJasminLoadElementInstruction(instruction.getOperand(), ctx, sb);
         sb.append('\n');
 
         sb.append('\t');
@@ -709,57 +757,63 @@ public class Backend implements JasminBackend {
             case GTE -> sb.append("ifge");
             case NOT -> sb.append("not");
             case NOTB -> {
-                sb.append(this.buildJasminIntegerPushInstruction(1)).append('\n');
+                this.buildJasminIntegerPushInstruction(1, sb);
+                ctx.changeStackSize(1);
+                sb.append('\n');
                 sb.append("\tixor");
+                ctx.changeStackSize(-1);
             }
         }
-
-        return sb.toString();
     }
 
-    private boolean optimizeJasminBinaryOpInstruction(BinaryOpInstruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports, StringBuilder sb) {
+    private boolean optimizeJasminBinaryOpInstruction(BinaryOpInstruction instruction, MethodContext ctx, StringBuilder sb) {
 
         // if (!this.optimize) return false;
 
         if ((instruction.getOperation().getOpType() == OperationType.ADD || instruction.getOperation().getOpType() == OperationType.SUB) && instruction.getLeftOperand() instanceof Operand op && instruction.getRightOperand() instanceof LiteralElement literal && literal.getType().getTypeOfElement() == ElementType.INT32 && (instruction.getOperation().getOpType() == OperationType.SUB ? -1 : 1) * Integer.parseInt(literal.getLiteral()) <= Byte.MAX_VALUE && (instruction.getOperation().getOpType() == OperationType.SUB ? -1 : 1) * Integer.parseInt(literal.getLiteral()) >= Byte.MIN_VALUE) { // a (+|-) 1
-            var reg = varTable.get(op.getName()).getVirtualReg();
+            var reg = ctx.varTable.get(op.getName()).getVirtualReg();
 
-            if (reg != this.assignmentRegister)
+            if (reg != ctx.assignmentRegister)
                 return false; // we can only use iinc if we are performing a "a++" kind of operation
 
-            sb.append("\tiinc ").append(reg).append(instruction.getOperation().getOpType() == OperationType.SUB ? " -" : " ").append(literal.getLiteral()).append('\n');
-            sb.append(this.buildJasminLoadOperandInstruction(op, varTable, reports));
+            var value = (instruction.getOperation().getOpType() == OperationType.SUB ? -1 : 1) * Integer.parseInt(literal.getLiteral());
+            sb.append("\tiinc ").append(reg).append(' ').append(value).append('\n');
+            this.buildJasminLoadOperandInstruction(op, ctx, sb);
 
-            this.assignmentRegister = -1;
+            ctx.assignmentRegister = -1;
 
             return true;
         } else if (instruction.getOperation().getOpType() == OperationType.ADD && instruction.getRightOperand() instanceof Operand op && instruction.getLeftOperand() instanceof LiteralElement literal && literal.getType().getTypeOfElement() == ElementType.INT32 && Integer.parseInt(literal.getLiteral()) <= Byte.MAX_VALUE && Integer.parseInt(literal.getLiteral()) >= Byte.MIN_VALUE) { // 1 + a
-            var reg = varTable.get(op.getName()).getVirtualReg();
+            var reg = ctx.varTable.get(op.getName()).getVirtualReg();
 
-            if (reg != this.assignmentRegister)
+            if (reg != ctx.assignmentRegister)
                 return false; // we can only use iinc if we are performing a "++a" kind of operation
 
             sb.append("\tiinc ").append(reg).append(' ').append(literal.getLiteral()).append('\n');
-            sb.append(this.buildJasminLoadOperandInstruction(op, varTable, reports));
+            this.buildJasminLoadOperandInstruction(op, ctx, sb);
 
-            this.assignmentRegister = -1;
+            ctx.assignmentRegister = -1;
 
             return true;
         } else if (instruction.getOperation().getOpType() == OperationType.GTE && instruction.getLeftOperand() instanceof Operand op && op.getType().getTypeOfElement() == ElementType.INT32 && instruction.getRightOperand() instanceof LiteralElement literal && literal.getType().getTypeOfElement() == ElementType.INT32 && Integer.parseInt(literal.getLiteral()) == 0) { // a >= 0
-            sb.append('\t').append(this.buildJasminLoadOperandInstruction(op, varTable, new ArrayList<>())).append('\n');
+            sb.append('\t');
+            this.buildJasminLoadOperandInstruction(op, ctx, sb);
+            sb.append('\n');
             sb.append("\tifge");
 
-            this.conditionalOptimized = true;
+            ctx.conditionalOptimized = true;
 
             return true;
         } else if (instruction.getOperation().getOpType() == OperationType.LTH && instruction.getLeftOperand() instanceof Operand op && op.getType().getTypeOfElement() == ElementType.INT32 && instruction.getRightOperand() instanceof LiteralElement literal && literal.getType().getTypeOfElement() == ElementType.INT32 && Integer.parseInt(literal.getLiteral()) == 0) { // a < 0
 
-            String bodyLabel = "__comparison_if_body_iflt__" + this.currentConditional, afterLabel = "__comparison_after_iflt__" + this.currentConditional++;
+            String bodyLabel = "__comparison_if_body_iflt__" + ctx.currentConditional, afterLabel = "__comparison_after_iflt__" + ctx.currentConditional++;
 
-            sb.append('\t').append(this.buildJasminLoadOperandInstruction(op, varTable, new ArrayList<>())).append('\n');
+            sb.append('\t');
+            this.buildJasminLoadOperandInstruction(op, ctx, sb);
+            sb.append('\n');
             sb.append("\tiflt ").append(bodyLabel).append('\n');
 
-            sb.append(this.buildJasminBooleanResult(bodyLabel, afterLabel));
+            this.buildJasminBooleanResult(bodyLabel, afterLabel, ctx, sb);
 
             return true;
         }
@@ -767,9 +821,7 @@ public class Backend implements JasminBackend {
         return false;
     }
 
-    private String buildJasminBinaryArithmeticExpression(BinaryOpInstruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports) {
-
-        var sb = new StringBuilder();
+    private void buildJasminBinaryArithmeticExpression(BinaryOpInstruction instruction, MethodContext ctx, StringBuilder sb) {
 
         var operation = instruction.getOperation();
 
@@ -778,11 +830,11 @@ public class Backend implements JasminBackend {
             case INT32, BOOLEAN -> "i";
             case ARRAYREF, OBJECTREF, STRING, CLASS, THIS -> "a";
             case VOID -> {
-                reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot perform binary operation on void type", new Exception("Cannot perform binary operation on void type")));
+                ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot perform binary operation on void type", new Exception("Cannot perform binary operation on void type")));
                 yield "marker";
             }
         };
-        if ("marker".equals(dType)) return "";
+        if ("marker".equals(dType)) return;
 
         switch (opType) {
 
@@ -791,111 +843,103 @@ public class Backend implements JasminBackend {
             case MUL -> sb.append(dType).append("mul");
             case DIV -> sb.append(dType).append("div");
             case SHR, SHL, SHRR -> {
-                reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Unsupported arithmetic operation", new Exception("Unsupported arithmetic operation")));
-                return "";
+                ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Unsupported arithmetic operation", new Exception("Unsupported arithmetic operation")));
+                return;
             }
             case XOR -> sb.append(dType).append("xor");
             case AND, ANDB -> sb.append(dType).append("and");
             case OR, ORB -> sb.append(dType).append("or");
             default -> {
-                reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Invalid arithmetic operation", new Exception("Invalid arithmetic operation")));
-                return "";
+                ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Invalid arithmetic operation", new Exception("Invalid arithmetic operation")));
+                return;
             }
         }
-        this.changeCurrentMethodStackSizeLimit(-1);
-
-        return sb.toString();
+        ctx.changeStackSize(-1);
     }
 
-    private String buildJasminBinaryConditionalExpression(BinaryOpInstruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports) {
-
-        var sb = new StringBuilder();
+    private void buildJasminBinaryConditionalExpression(BinaryOpInstruction instruction, MethodContext ctx, StringBuilder sb) {
 
         var opType = instruction.getOperation().getOpType();
 
-        String bodyLabel = "__comparison_if_body__" + this.currentConditional, afterLabel = "__comparison_after__" + this.currentConditional++;
-        switch (opType) {
-            case LTH -> sb.append("if_icmplt ");
-            case GTH -> sb.append("if_icmpgt ");
-            case EQ -> sb.append("if_icmpeq ");
-            case NEQ -> sb.append("if_icmpne ");
-            case LTE -> sb.append("if_icmple ");
-            case GTE -> sb.append("if_icmpge ");
-            case NOTB -> sb.append("ifle"); // bruh
-            case NOT -> sb.append("not"); // bruh
+        String bodyLabel = "__comparison_if_body__" + ctx.currentConditional, afterLabel = "__comparison_after__" + ctx.currentConditional++;
+        var instructionName = switch (opType) {
+            case LTH -> "if_icmplt ";
+            case GTH -> "if_icmpgt ";
+            case EQ -> "if_icmpeq ";
+            case NEQ -> "if_icmpne ";
+            case LTE -> "if_icmple ";
+            case GTE -> "if_icmpge ";
+            case NOTB -> "ifle"; // bruh
+            case NOT -> "not"; // bruh
             default -> {
-                reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Unknown conditional operator: " + opType.name(), new Exception("Unknown conditional operator: " + opType.name())));
-                return "";
+                ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Unknown conditional operator: " + opType.name(), new Exception("Unknown conditional operator: " + opType.name())));
+                yield null;
             }
-        }
-        this.changeCurrentMethodStackSizeLimit(-2);
-        sb.append(bodyLabel).append('\n');
+        };
+        if (instructionName == null) return;
 
-        sb.append(this.buildJasminBooleanResult(bodyLabel, afterLabel));
+        sb.append(instructionName);
+        ctx.changeStackSize(-2);
+        sb.append(bodyLabel).append('\n');
 
-        return sb.toString();
+        this.buildJasminBooleanResult(bodyLabel, afterLabel, ctx, sb);
     }
 
-    private String buildJasminBooleanResult(String bodyLabel, String afterLabel) {
-        this.changeCurrentMethodStackSizeLimit(1);
-        return '\t' + this.buildJasminIntegerPushInstruction(0) + '\n' + '\t' + "goto " + afterLabel + '\n' + bodyLabel + ":\n" + '\t' + this.buildJasminIntegerPushInstruction(1) + '\n' + afterLabel + ':';
+    private void buildJasminBooleanResult(String bodyLabel, String afterLabel, MethodContext ctx, StringBuilder sb) {
+        ctx.changeStackSize(1);
+        sb.append('\t');
+        this.buildJasminIntegerPushInstruction(0, sb);
+        sb.append('\n').append('\t').append("goto ").append(afterLabel).append('\n').append(bodyLabel).append(":\n").append('\t');
+        this.buildJasminIntegerPushInstruction(1, sb);
+        sb.append('\n').append(afterLabel).append(':');
     }
 
-    private String buildJasminBinaryOperatorInstruction(BinaryOpInstruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports) {
-
-        var sb = new StringBuilder();
+    private void buildJasminBinaryOperatorInstruction(BinaryOpInstruction instruction, MethodContext ctx, StringBuilder sb) {
 
         var operation = instruction.getOperation();
 
-        if (!this.optimizeJasminBinaryOpInstruction(instruction, varTable, reports, sb)) {
+        if (!this.optimizeJasminBinaryOpInstruction(instruction, ctx, sb)) {
             sb.append('\t');
-            sb.append(this.buildJasminLoadElementInstruction(instruction.getLeftOperand(), varTable, reports));
+            this.buildJasminLoadElementInstruction(instruction.getLeftOperand(), ctx, sb);
             sb.append('\n');
 
             sb.append('\t');
-            sb.append(this.buildJasminLoadElementInstruction(instruction.getRightOperand(), varTable, reports));
+            this.buildJasminLoadElementInstruction(instruction.getRightOperand(), ctx, sb);
             sb.append('\n');
 
             sb.append('\t');
 
             switch (operation.getOpType()) {
                 case ADD, SUB, MUL, DIV, SHR, SHL, SHRR, XOR, AND, ANDB, OR, ORB ->
-                        sb.append(this.buildJasminBinaryArithmeticExpression(instruction, varTable, reports));
+                        this.buildJasminBinaryArithmeticExpression(instruction, ctx, sb);
                 case LTH, GTH, EQ, NEQ, LTE, GTE, NOTB, NOT ->
-                        sb.append(this.buildJasminBinaryConditionalExpression(instruction, varTable, reports));
+                        this.buildJasminBinaryConditionalExpression(instruction, ctx, sb);
             }
-
-            this.changeCurrentMethodStackSizeLimit(-1);
         }
-
-        return sb.toString();
     }
 
-    private String buildJasminSingleOpInstruction(SingleOpInstruction instruction, HashMap<String, Descriptor> varTable, List<Report> reports) {
-        return '\t' + this.buildJasminLoadElementInstruction(instruction.getSingleOperand(), varTable, reports);
-    }
-
-    private String buildJasminTypeDescriptor(Type type, List<Report> reports) {
-        return switch (type.getTypeOfElement()) {
-            case ARRAYREF -> this.buildJasminArrayTypeDescriptor((ArrayType) type, reports);
-            case OBJECTREF, CLASS, THIS -> this.buildJasminClassTypeDescriptor((ClassType) type, reports);
-            case INT32 -> "I";
-            case BOOLEAN -> "Z";
-            case STRING -> "Ljava/lang/String;";
-            case VOID -> "V";
-        };
+    private void buildJasminSingleOpInstruction(SingleOpInstruction instruction, MethodContext ctx, StringBuilder sb) {
+        sb.append('\t');
+        this.buildJasminLoadElementInstruction(instruction.getSingleOperand(), ctx, sb);
     }
 
-    private String buildJasminArrayTypeDescriptor(ArrayType type, List<Report> reports) {
-        return "[".repeat(Math.max(0, type.getNumDimensions())) + this.buildJasminTypeDescriptor(type.getElementType(), reports);
+    private void buildJasminTypeDescriptor(Type type, List<Report> reports, StringBuilder sb) {
+        switch (type.getTypeOfElement()) {
+            case ARRAYREF -> this.buildJasminArrayTypeDescriptor((ArrayType) type, reports, sb);
+            case OBJECTREF, CLASS, THIS -> this.buildJasminClassTypeDescriptor((ClassType) type, reports, sb);
+            case INT32 -> sb.append("I");
+            case BOOLEAN -> sb.append("Z");
+            case STRING -> sb.append("Ljava/lang/String;");
+            case VOID -> sb.append("V");
+        }
     }
 
-    private String buildJasminClassTypeDescriptor(ClassType type, List<Report> reports) {
-        return "L" + type.getName() + ";";
+    private void buildJasminArrayTypeDescriptor(ArrayType type, List<Report> reports, StringBuilder sb) {
+        sb.append("[".repeat(Math.max(0, type.getNumDimensions())));
+        this.buildJasminTypeDescriptor(type.getElementType(), reports, sb);
     }
 
-    private void changeCurrentMethodStackSizeLimit(int variation) {
-        this.currentMethodStackSize += variation;
-        this.currentMethodStackSizeLimit = Math.max(this.currentMethodStackSizeLimit, this.currentMethodStackSize);
+    private void buildJasminClassTypeDescriptor(ClassType type, List<Report> reports, StringBuilder sb) {
+        sb.append("L").append(type.getName()).append(";");
     }
 }
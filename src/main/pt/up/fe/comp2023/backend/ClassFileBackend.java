@@ -0,0 +1,534 @@
+package pt.up.fe.comp2023.backend;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+
+import static pt.up.fe.comp2023.backend.CodeBuilder.*;
+import static pt.up.fe.comp2023.backend.ClassFileWriter.*;
+
+/**
+ * Alternative to the {@link Backend} that writes the class file directly from the OLLIR class, instead of going
+ * through Jasmin.
+ * <p>
+ * The generated code follows the same instruction selection as the Jasmin backend, but the stack and local limits
+ * are exact and no values are left on the stack.
+ */
+public class ClassFileBackend {
+
+    /**
+     * Mutable state used while generating a single method.
+     */
+    private static class MethodContext {
+        private final HashMap<String, Descriptor> varTable;
+        private final List<Report> reports;
+        private final String superClassName;
+        private final ConstantPool pool;
+        private final CodeBuilder code = new CodeBuilder();
+
+        private MethodContext(Method method, List<Report> reports, String superClassName, ConstantPool pool) {
+            this.varTable = method.getVarTable();
+            this.reports = reports;
+            this.superClassName = superClassName;
+            this.pool = pool;
+        }
+    }
+
+    public ClassFileResult toClassFile(OllirResult ollirResult) {
+        var config = ollirResult.getConfig();
+        var reports = new ArrayList<Report>();
+
+        var ollirClass = ollirResult.getOllirClass();
+
+        byte[] classFile;
+        try {
+            classFile = this.buildClass(ollirClass, reports, config.get("inputFile"));
+        } catch (IllegalStateException | UncheckedIOException e) {
+            reports.add(Report.newError(Stage.GENERATION, -1, -1, "Could not generate the class file: " + e.getMessage(), e));
+            classFile = new byte[0];
+        }
+
+        return new ClassFileResult(ollirClass.getClassName(), classFile, reports, config);
+    }
+
+    private byte[] buildClass(ClassUnit ollirClass, List<Report> reports, String inputFile) {
+        var className = ollirClass.getClassName();
+
+        // HACK: default access is made public, the same as the Jasmin backend
+        var classAccess = ollirClass.getClassAccessModifier() == AccessModifiers.DEFAULT ? ACC_PUBLIC : this.accessFlags(ollirClass.getClassAccessModifier());
+
+        var superName = this.internalName(Optional.ofNullable(ollirClass.getSuperClass()).orElse("java.lang.Object"));
+
+        var writer = new ClassFileWriter(classAccess | ACC_SUPER, this.internalName(className), superName);
+
+        if (inputFile != null)
+            writer.setSourceFile(new File(inputFile).getName());
+
+        for (var field : ollirClass.getFields()) {
+            var access = this.accessFlags(field.getFieldAccessModifier());
+            if (field.isStaticField()) access |= ACC_STATIC;
+            if (field.isFinalField()) access |= ACC_FINAL;
+
+            writer.addField(access, field.getFieldName(), this.typeDescriptor(field.getFieldType()), field.isInitialized() ? field.getInitialValue() : null);
+        }
+
+        for (var method : ollirClass.getMethods())
+            this.buildMethod(writer, method, reports, superName);
+
+        return writer.toByteArray();
+    }
+
+    private void buildMethod(ClassFileWriter writer, Method method, List<Report> reports, String superName) {
+        if (method.isConstructMethod() && (method.isStaticMethod() || method.isFinalMethod())) {
+            reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot generate static or final constructor(" + method.getMethodName() + ")", new Exception("Cannot generate static or final constructor")));
+            return;
+        }
+
+        var ctx = new MethodContext(method, reports, superName, writer.getConstantPool());
+
+        var hasReturn = false;
+        for (var instruction : method.getInstructions()) {
+            if (instruction.getInstType() == InstructionType.RETURN) hasReturn = true;
+
+            for (var label : method.getLabels(instruction))
+                ctx.code.bind(ctx.code.label(label));
+
+            this.buildInstruction(instruction, ctx);
+
+            if (instruction.getInstType() == InstructionType.CALL && ((CallInstruction) instruction).getReturnType().getTypeOfElement() != ElementType.VOID)
+                ctx.code.op(POP, -1);
+        }
+
+        if (!hasReturn) {
+            if (!method.isConstructMethod() && method.getReturnType().getTypeOfElement() != ElementType.VOID) {
+                reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Non-void function must have a return type", new Exception("Non-void function must have a return type")));
+                return;
+            }
+
+            ctx.code.op(RETURN, 0);
+        }
+
+        var access = this.accessFlags(method.getMethodAccessModifier());
+        if (method.isStaticMethod()) access |= ACC_STATIC;
+        if (method.isFinalMethod()) access |= ACC_FINAL;
+
+        var name = method.isConstructMethod() ? "<init>" : method.getMethodName();
+
+        writer.addMethod(access, name, this.methodDescriptor(method), ctx.code, this.maxLocals(method));
+    }
+
+    private int maxLocals(Method method) {
+        var locals = (method.isStaticMethod() ? 0 : 1) + method.getParams().size();
+
+        for (var descriptor : method.getVarTable().values())
+            locals = Math.max(locals, descriptor.getVirtualReg() + 1);
+
+        return locals;
+    }
+
+    private void buildInstruction(Instruction instruction, MethodContext ctx) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> this.buildAssign((AssignInstruction) instruction, ctx);
+            case CALL -> this.buildCall((CallInstruction) instruction, ctx);
+            case GOTO -> ctx.code.jump(GOTO, ctx.code.label(((GotoInstruction) instruction).getLabel()), 0);
+            case BRANCH -> this.buildBranch((CondBranchInstruction) instruction, ctx);
+            case RETURN -> this.buildReturn((ReturnInstruction) instruction, ctx);
+            case PUTFIELD -> this.buildPutField((PutFieldInstruction) instruction, ctx);
+            case GETFIELD -> this.buildGetField((GetFieldInstruction) instruction, ctx);
+            case UNARYOPER -> this.buildUnaryOperation((UnaryOpInstruction) instruction, ctx);
+            case BINARYOPER -> this.buildBinaryOperation((BinaryOpInstruction) instruction, ctx);
+            case NOPER -> this.loadElement(((SingleOpInstruction) instruction).getSingleOperand(), ctx);
+        }
+    }
+
+    private void buildAssign(AssignInstruction instruction, MethodContext ctx) {
+        var dest = (Operand) instruction.getDest();
+        var register = this.register(dest, ctx);
+
+        if (dest instanceof ArrayOperand array) {
+            ctx.code.local(ALOAD, register, 1);
+            for (var index : array.getIndexOperands())
+                this.loadElement(index, ctx);
+
+            this.buildInstruction(instruction.getRhs(), ctx);
+
+            ctx.code.op(this.isReference(array.getType()) ? AASTORE : IASTORE, -3);
+        } else if (!this.buildIncrement(register, instruction.getRhs(), ctx)) {
+            this.buildInstruction(instruction.getRhs(), ctx);
+
+            ctx.code.local(this.isReference(instruction.getTypeOfAssign()) ? ASTORE : ISTORE, register, -1);
+        }
+    }
+
+    /**
+     * Uses iinc for assignments of the form {@code a = a + c}, {@code a = c + a} and {@code a = a - c}.
+     *
+     * @return whether the assignment was generated
+     */
+    private boolean buildIncrement(int register, Instruction rhs, MethodContext ctx) {
+        if (!(rhs instanceof BinaryOpInstruction binary)) return false;
+
+        var opType = binary.getOperation().getOpType();
+        if (opType != OperationType.ADD && opType != OperationType.SUB) return false;
+
+        Element operand, literal;
+        if (binary.getRightOperand().isLiteral()) {
+            operand = binary.getLeftOperand();
+            literal = binary.getRightOperand();
+        } else if (opType == OperationType.ADD && binary.getLeftOperand().isLiteral()) {
+            operand = binary.getRightOperand();
+            literal = binary.getLeftOperand();
+        } else {
+            return false;
+        }
+
+        if (!(operand instanceof Operand op) || operand instanceof ArrayOperand || this.isBooleanOperand(op)) return false;
+        if (literal.getType().getTypeOfElement() != ElementType.INT32 || this.register(op, ctx) != register) return false;
+
+        var value = Integer.parseInt(((LiteralElement) literal).getLiteral());
+        if (opType == OperationType.SUB) value = -value;
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) return false;
+
+        ctx.code.iinc(register, value);
+
+        return true;
+    }
+
+    private void buildCall(CallInstruction instruction, MethodContext ctx) {
+        var returnsValue = instruction.getReturnType().getTypeOfElement() != ElementType.VOID ? 1 : 0;
+        var arguments = instruction.getListOfOperands();
+
+        switch (instruction.getInvocationType()) {
+            case invokevirtual, invokespecial -> {
+                var calledObject = (Operand) instruction.getFirstArg();
+
+                this.loadOperand(calledObject, ctx);
+                for (var argument : arguments)
+                    this.loadElement(argument, ctx);
+
+                var owner = ((ClassType) calledObject.getType()).getName();
+                if (instruction.getInvocationType() == CallType.invokespecial && calledObject.getName().equals("this"))
+                    owner = ctx.superClassName;
+
+                var method = ctx.pool.methodRef(this.internalName(owner), this.methodName(instruction), this.callDescriptor(instruction));
+                var opcode = instruction.getInvocationType() == CallType.invokevirtual ? INVOKEVIRTUAL : INVOKESPECIAL;
+
+                ctx.code.opShort(opcode, method, returnsValue - 1 - arguments.size());
+            }
+            case invokestatic -> {
+                var calledObject = (Operand) instruction.getFirstArg();
+
+                for (var argument : arguments)
+                    this.loadElement(argument, ctx);
+
+                var owner = calledObject.getName();
+                if (owner.equals("this"))
+                    owner = ((ClassType) calledObject.getType()).getName();
+
+                var method = ctx.pool.methodRef(this.internalName(owner), this.methodName(instruction), this.callDescriptor(instruction));
+
+                ctx.code.opShort(INVOKESTATIC, method, returnsValue - arguments.size());
+            }
+            case NEW -> {
+                var className = ((Operand) instruction.getFirstArg()).getName();
+
+                if (!className.equals("array")) {
+                    ctx.code.opShort(NEW, ctx.pool.classRef(this.internalName(className)), 1);
+                    return;
+                }
+
+                // there should only be one other operand, the array size
+                this.loadElement(arguments.get(0), ctx);
+
+                var elementType = ((ArrayType) instruction.getReturnType()).getElementType();
+                switch (elementType.getTypeOfElement()) {
+                    case INT32, BOOLEAN -> ctx.code.opByte(NEWARRAY, T_INT, 0);
+                    case STRING, OBJECTREF, CLASS ->
+                            ctx.code.opShort(ANEWARRAY, ctx.pool.classRef(this.elementClass(elementType)), 0);
+                    default ->
+                            ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Unsupported array type", new Exception("Unsupported array type")));
+                }
+            }
+            case arraylength -> {
+                this.loadOperand((Operand) instruction.getFirstArg(), ctx);
+                ctx.code.op(ARRAYLENGTH, 0);
+            }
+            case ldc -> this.loadLiteral((LiteralElement) instruction.getFirstArg(), ctx);
+            case invokeinterface ->
+                    ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Interface calls are not supported", new Exception("Interface calls are not supported")));
+        }
+    }
+
+    private void buildBranch(CondBranchInstruction instruction, MethodContext ctx) {
+        var label = ctx.code.label(instruction.getLabel());
+        var condition = instruction.getCondition();
+
+        if (condition instanceof BinaryOpInstruction binary && this.isComparison(binary.getOperation().getOpType())) {
+            this.buildComparisonJump(binary, label, ctx);
+        } else if (condition instanceof UnaryOpInstruction unary && unary.getOperation().getOpType() == OperationType.NOTB) {
+            this.loadElement(unary.getOperand(), ctx);
+            ctx.code.jump(IFEQ, label, -1);
+        } else {
+            this.buildInstruction(condition, ctx);
+            ctx.code.jump(IFNE, label, -1);
+        }
+    }
+
+    private void buildComparisonJump(BinaryOpInstruction instruction, CodeBuilder.Label label, MethodContext ctx) {
+        var opType = instruction.getOperation().getOpType();
+        var left = instruction.getLeftOperand();
+        var right = instruction.getRightOperand();
+
+        this.loadElement(left, ctx);
+
+        // comparisons against zero do not need to load it
+        if (right.isLiteral() && right.getType().getTypeOfElement() == ElementType.INT32 && ((LiteralElement) right).getLiteral().equals("0")) {
+            var opcode = switch (opType) {
+                case LTH -> IFLT;
+                case GTH -> IFGT;
+                case LTE -> IFLE;
+                case GTE -> IFGE;
+                case EQ -> IFEQ;
+                default -> IFNE;
+            };
+
+            ctx.code.jump(opcode, label, -1);
+            return;
+        }
+
+        this.loadElement(right, ctx);
+
+        var opcode = switch (opType) {
+            case LTH -> IF_ICMPLT;
+            case GTH -> IF_ICMPGT;
+            case LTE -> IF_ICMPLE;
+            case GTE -> IF_ICMPGE;
+            case EQ -> this.isReference(left.getType()) ? IF_ACMPEQ : IF_ICMPEQ;
+            default -> this.isReference(left.getType()) ? IF_ACMPNE : IF_ICMPNE;
+        };
+
+        ctx.code.jump(opcode, label, -2);
+    }
+
+    private void buildReturn(ReturnInstruction instruction, MethodContext ctx) {
+        if (!instruction.hasReturnValue()) {
+            ctx.code.op(RETURN, 0);
+            return;
+        }
+
+        this.loadElement(instruction.getOperand(), ctx);
+        ctx.code.op(this.isReference(instruction.getReturnType()) ? ARETURN : IRETURN, -1);
+    }
+
+    private void buildPutField(PutFieldInstruction instruction, MethodContext ctx) {
+        var object = (Operand) instruction.getFirstOperand();
+        var field = (Operand) instruction.getSecondOperand();
+
+        this.loadOperand(object, ctx);
+        this.loadElement(instruction.getThirdOperand(), ctx);
+
+        var fieldRef = ctx.pool.fieldRef(this.internalName(((ClassType) object.getType()).getName()), field.getName(), this.typeDescriptor(field.getType()));
+        ctx.code.opShort(PUTFIELD, fieldRef, -2);
+    }
+
+    private void buildGetField(GetFieldInstruction instruction, MethodContext ctx) {
+        var object = (Operand) instruction.getFirstOperand();
+        var field = (Operand) instruction.getSecondOperand();
+
+        this.loadOperand(object, ctx);
+
+        var fieldRef = ctx.pool.fieldRef(this.internalName(((ClassType) object.getType()).getName()), field.getName(), this.typeDescriptor(instruction.getFieldType()));
+        ctx.code.opShort(GETFIELD, fieldRef, 0);
+    }
+
+    private void buildUnaryOperation(UnaryOpInstruction instruction, MethodContext ctx) {
+        this.loadElement(instruction.getOperand(), ctx);
+
+        switch (instruction.getOperation().getOpType()) {
+            case NOTB -> {
+                ctx.code.pushInt(1, ctx.pool);
+                ctx.code.op(IXOR, -1);
+            }
+            case NOT -> {
+                ctx.code.pushInt(-1, ctx.pool);
+                ctx.code.op(IXOR, -1);
+            }
+            default ->
+                    ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Unsupported unary operation", new Exception("Unsupported unary operation")));
+        }
+    }
+
+    private void buildBinaryOperation(BinaryOpInstruction instruction, MethodContext ctx) {
+        var opType = instruction.getOperation().getOpType();
+
+        if (this.isComparison(opType)) {
+            // the result of a comparison is pushed by jumping over one of the two constants
+            var trueLabel = ctx.code.newLabel();
+            var afterLabel = ctx.code.newLabel();
+
+            this.buildComparisonJump(instruction, trueLabel, ctx);
+            ctx.code.pushInt(0, ctx.pool);
+            ctx.code.jump(GOTO, afterLabel, 0);
+            ctx.code.bind(trueLabel);
+            ctx.code.pushInt(1, ctx.pool);
+            ctx.code.bind(afterLabel);
+            return;
+        }
+
+        this.loadElement(instruction.getLeftOperand(), ctx);
+        this.loadElement(instruction.getRightOperand(), ctx);
+
+        var opcode = switch (opType) {
+            case ADD -> IADD;
+            case SUB -> ISUB;
+            case MUL -> IMUL;
+            case DIV -> IDIV;
+            case SHL -> ISHL;
+            case SHR -> ISHR;
+            case SHRR -> IUSHR;
+            case XOR -> IXOR;
+            case AND, ANDB -> IAND;
+            case OR, ORB -> IOR;
+            default -> {
+                ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Invalid binary operation: " + opType.name(), new Exception("Invalid binary operation: " + opType.name())));
+                yield -1;
+            }
+        };
+
+        if (opcode != -1)
+            ctx.code.op(opcode, -1);
+    }
+
+    private boolean isComparison(OperationType opType) {
+        return switch (opType) {
+            case LTH, GTH, LTE, GTE, EQ, NEQ -> true;
+            default -> false;
+        };
+    }
+
+    private void loadElement(Element element, MethodContext ctx) {
+        if (element.isLiteral())
+            this.loadLiteral((LiteralElement) element, ctx);
+        else
+            this.loadOperand((Operand) element, ctx);
+    }
+
+    private void loadLiteral(LiteralElement literal, MethodContext ctx) {
+        switch (literal.getType().getTypeOfElement()) {
+            case INT32, BOOLEAN -> ctx.code.pushInt(Integer.parseInt(literal.getLiteral()), ctx.pool);
+            case STRING -> ctx.code.ldc(ctx.pool.string(literal.getLiteral().replaceAll("\"", "")));
+            default ->
+                    ctx.reports.add(Report.newWarn(Stage.GENERATION, -1, -1, "Cannot load literal of type " + literal.getType(), new Exception("Cannot load literal")));
+        }
+    }
+
+    private void loadOperand(Operand operand, MethodContext ctx) {
+        if (this.isBooleanOperand(operand)) {
+            // "true" and "false" get parsed as operands when they really should be literals
+            ctx.code.pushInt(operand.getName().equals("true") ? 1 : 0, ctx.pool);
+            return;
+        }
+
+        var register = this.register(operand, ctx);
+
+        if (operand instanceof ArrayOperand array) {
+            ctx.code.local(ALOAD, register, 1);
+            for (var index : array.getIndexOperands())
+                this.loadElement(index, ctx);
+
+            ctx.code.op(this.isReference(array.getType()) ? AALOAD : IALOAD, -1);
+        } else {
+            ctx.code.local(this.isReference(operand.getType()) ? ALOAD : ILOAD, register, 1);
+        }
+    }
+
+    private boolean isBooleanOperand(Operand operand) {
+        return operand.getName().equals("true") || operand.getName().equals("false");
+    }
+
+    private int register(Operand operand, MethodContext ctx) {
+        var descriptor = ctx.varTable.get(operand.getName());
+
+        if (descriptor != null)
+            return descriptor.getVirtualReg();
+
+        // if the "this" reference is not used in the method, it will not be loaded into the varTable
+        if (operand.getName().equals("this"))
+            return 0;
+
+        throw new IllegalStateException("Unknown variable '" + operand.getName() + "'");
+    }
+
+    private boolean isReference(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case ARRAYREF, OBJECTREF, STRING, THIS, CLASS -> true;
+            default -> false;
+        };
+    }
+
+    private int accessFlags(AccessModifiers modifier) {
+        return switch (modifier) {
+            case PUBLIC -> ACC_PUBLIC;
+            case PRIVATE -> ACC_PRIVATE;
+            case PROTECTED -> ACC_PROTECTED;
+            case DEFAULT -> 0;
+        };
+    }
+
+    private String methodName(CallInstruction instruction) {
+        return ((LiteralElement) instruction.getSecondArg()).getLiteral().replaceAll("\"", "");
+    }
+
+    private String methodDescriptor(Method method) {
+        var sb = new StringBuilder("(");
+
+        for (var param : method.getParams())
+            sb.append(this.typeDescriptor(param.getType()));
+
+        sb.append(')');
+
+        if (method.isConstructMethod()) sb.append('V');
+        else sb.append(this.typeDescriptor(method.getReturnType()));
+
+        return sb.toString();
+    }
+
+    private String callDescriptor(CallInstruction instruction) {
+        var sb = new StringBuilder("(");
+
+        for (var argument : instruction.getListOfOperands())
+            sb.append(this.typeDescriptor(argument.getType()));
+
+        return sb.append(')').append(this.typeDescriptor(instruction.getReturnType())).toString();
+    }
+
+    private String typeDescriptor(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case ARRAYREF -> "[".repeat(Math.max(0, ((ArrayType) type).getNumDimensions())) + this.typeDescriptor(((ArrayType) type).getElementType());
+            case OBJECTREF, CLASS, THIS -> "L" + this.internalName(((ClassType) type).getName()) + ";";
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case STRING -> "Ljava/lang/String;";
+            case VOID -> "V";
+        };
+    }
+
+    /**
+     * @return the name used for the elements of an array in anewarray
+     */
+    private String elementClass(Type type) {
+        return type.getTypeOfElement() == ElementType.STRING ? "java/lang/String" : this.internalName(((ClassType) type).getName());
+    }
+
+    private String internalName(String className) {
+        return className.replace('.', '/');
+    }
+}
@@ -0,0 +1,90 @@
+package pt.up.fe.comp2023.backend;
+
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.StageResult;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class file generated by the {@link ClassFileBackend}.
+ */
+public class ClassFileResult implements StageResult {
+    private final String className;
+    private final byte[] classFile;
+    private final List<Report> reports;
+    private final Map<String, String> config;
+
+    public ClassFileResult(String className, byte[] classFile, List<Report> reports, Map<String, String> config) {
+        this.className = className;
+        this.classFile = classFile;
+        this.reports = reports;
+        this.config = config;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public byte[] getClassFile() {
+        return classFile;
+    }
+
+    @Override
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    @Override
+    public Map<String, String> getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the written class file, inside the given folder
+     */
+    public File write(File outputDir) {
+        var file = new File(outputDir, className + ".class");
+
+        try {
+            Files.createDirectories(outputDir.toPath());
+            Files.write(file.toPath(), classFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return file;
+    }
+
+    /**
+     * Runs the class in a new JVM, with the jmm libraries in the classpath.
+     *
+     * @return the output that is printed by the program
+     */
+    public String run(List<String> args) {
+        var outputDir = SpecsIo.getTempFolder("classfile");
+        SpecsIo.deleteFolderContents(outputDir);
+        write(outputDir);
+
+        var command = new ArrayList<String>();
+        command.add("java");
+        command.add("-cp");
+        command.add(outputDir.getAbsolutePath() + File.pathSeparator + TestUtils.getLibsClasspath());
+        command.add(className);
+        command.addAll(args);
+
+        return SpecsSystem.runProcess(command, true, true).getOutput();
+    }
+
+    public String run() {
+        return run(List.of());
+    }
+}
@@ -0,0 +1,144 @@
+package pt.up.fe.comp2023.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes the binary class file format, for the subset of it the backend needs: fields, methods with code, constant
+ * values and the source file name.
+ * <p>
+ * The classes are written as version 49 (Java 5), the last version that is verified by type inference, so no stack
+ * map frames are needed.
+ */
+class ClassFileWriter {
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_PROTECTED = 0x0004;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 49;
+    private static final int MAX_CODE_LENGTH = 0xFFFF;
+
+    private final ConstantPool pool = new ConstantPool();
+    private final int access;
+    private final int thisClass;
+    private final int superClass;
+    private int sourceFile = -1;
+
+    private final ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+    private final DataOutputStream fields = new DataOutputStream(fieldBytes);
+    private int fieldCount = 0;
+
+    private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+    private final DataOutputStream methods = new DataOutputStream(methodBytes);
+    private int methodCount = 0;
+
+    ClassFileWriter(int access, String name, String superName) {
+        this.access = access;
+        this.thisClass = pool.classRef(name);
+        this.superClass = pool.classRef(superName);
+    }
+
+    ConstantPool getConstantPool() {
+        return pool;
+    }
+
+    void setSourceFile(String fileName) {
+        sourceFile = pool.utf8(fileName);
+    }
+
+    /**
+     * @param constantValue the initial value of the field, or null if it has none
+     */
+    void addField(int access, String name, String descriptor, Integer constantValue) {
+        try {
+            fields.writeShort(access);
+            fields.writeShort(pool.utf8(name));
+            fields.writeShort(pool.utf8(descriptor));
+
+            if (constantValue == null) {
+                fields.writeShort(0);
+            } else {
+                fields.writeShort(1);
+                fields.writeShort(pool.utf8("ConstantValue"));
+                fields.writeInt(2);
+                fields.writeShort(pool.integer(constantValue));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        fieldCount++;
+    }
+
+    void addMethod(int access, String name, String descriptor, CodeBuilder code, int maxLocals) {
+        var bytecode = code.toByteArray();
+        if (bytecode.length > MAX_CODE_LENGTH)
+            throw new IllegalStateException("Method " + name + " is too large, its code has " + bytecode.length + " bytes");
+
+        try {
+            methods.writeShort(access);
+            methods.writeShort(pool.utf8(name));
+            methods.writeShort(pool.utf8(descriptor));
+
+            methods.writeShort(1);
+            methods.writeShort(pool.utf8("Code"));
+            // max_stack, max_locals, code_length, the code, exception_table_length and attributes_count
+            methods.writeInt(2 + 2 + 4 + bytecode.length + 2 + 2);
+            methods.writeShort(code.getMaxStack());
+            methods.writeShort(maxLocals);
+            methods.writeInt(bytecode.length);
+            methods.write(bytecode);
+            methods.writeShort(0);
+            methods.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        methodCount++;
+    }
+
+    byte[] toByteArray() {
+        // The attribute name has to be in the pool before it is written
+        var sourceFileAttribute = sourceFile < 0 ? -1 : pool.utf8("SourceFile");
+
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+            pool.writeTo(out);
+
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+
+            out.writeShort(fieldCount);
+            fieldBytes.writeTo(out);
+
+            out.writeShort(methodCount);
+            methodBytes.writeTo(out);
+
+            if (sourceFile < 0) {
+                out.writeShort(0);
+            } else {
+                out.writeShort(1);
+                out.writeShort(sourceFileAttribute);
+                out.writeInt(2);
+                out.writeShort(sourceFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,228 @@
+package pt.up.fe.comp2023.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The bytecode of a single method, with labels that are resolved when the method is finished.
+ * <p>
+ * Every instruction is given the change it makes to the operand stack, so the exact stack size needed is known once
+ * all instructions are emitted. The stack size at a label is taken from the jumps to it, which is enough for the
+ * structured code the backend generates.
+ */
+class CodeBuilder {
+    static final int ICONST_M1 = 0x02;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int ILOAD = 0x15;
+    static final int ALOAD = 0x19;
+    static final int IALOAD = 0x2e;
+    static final int AALOAD = 0x32;
+    static final int ISTORE = 0x36;
+    static final int ASTORE = 0x3a;
+    static final int IASTORE = 0x4f;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int IADD = 0x60;
+    static final int ISUB = 0x64;
+    static final int IMUL = 0x68;
+    static final int IDIV = 0x6c;
+    static final int ISHL = 0x78;
+    static final int ISHR = 0x7a;
+    static final int IUSHR = 0x7c;
+    static final int IAND = 0x7e;
+    static final int IOR = 0x80;
+    static final int IXOR = 0x82;
+    static final int IINC = 0x84;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int IF_ICMPEQ = 0x9f;
+    static final int IF_ICMPNE = 0xa0;
+    static final int IF_ICMPLT = 0xa1;
+    static final int IF_ICMPGE = 0xa2;
+    static final int IF_ICMPGT = 0xa3;
+    static final int IF_ICMPLE = 0xa4;
+    static final int IF_ACMPEQ = 0xa5;
+    static final int IF_ACMPNE = 0xa6;
+    static final int GOTO = 0xa7;
+    static final int IRETURN = 0xac;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int NEW = 0xbb;
+    static final int NEWARRAY = 0xbc;
+    static final int ANEWARRAY = 0xbd;
+    static final int ARRAYLENGTH = 0xbe;
+    static final int WIDE = 0xc4;
+
+    static final int T_INT = 10;
+
+    static class Label {
+        private int offset = -1;
+        private int stack = -1;
+        private final List<int[]> jumps = new ArrayList<>();
+    }
+
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final Map<String, Label> labels = new HashMap<>();
+    private final List<Label> allLabels = new ArrayList<>();
+    private int stack = 0;
+    private int maxStack = 0;
+    private boolean reachable = true;
+
+    Label label(String name) {
+        return labels.computeIfAbsent(name, key -> newLabel());
+    }
+
+    Label newLabel() {
+        var label = new Label();
+        allLabels.add(label);
+        return label;
+    }
+
+    int getMaxStack() {
+        return maxStack;
+    }
+
+    void bind(Label label) {
+        label.offset = code.size();
+
+        if (!reachable && label.stack >= 0)
+            stack = label.stack;
+        else if (!reachable)
+            stack = 0;
+
+        label.stack = stack;
+        reachable = true;
+    }
+
+    void op(int opcode, int stackChange) {
+        code.write(opcode);
+        changeStack(stackChange);
+
+        if (opcode == RETURN || opcode == IRETURN || opcode == ARETURN)
+            reachable = false;
+    }
+
+    void opByte(int opcode, int operand, int stackChange) {
+        code.write(opcode);
+        code.write(operand);
+        changeStack(stackChange);
+    }
+
+    void opShort(int opcode, int operand, int stackChange) {
+        code.write(opcode);
+        writeShort(operand);
+        changeStack(stackChange);
+    }
+
+    void local(int opcode, int register, int stackChange) {
+        if (register < 4) {
+            // The short forms of each load and store come in groups of four, in the same order as the long forms
+            var base = opcode < ISTORE ? 0x1a + (opcode - ILOAD) * 4 : 0x3b + (opcode - ISTORE) * 4;
+            code.write(base + register);
+        } else if (register < 256) {
+            code.write(opcode);
+            code.write(register);
+        } else {
+            code.write(WIDE);
+            code.write(opcode);
+            writeShort(register);
+        }
+
+        changeStack(stackChange);
+    }
+
+    void iinc(int register, int value) {
+        if (register < 256 && value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.write(IINC);
+            code.write(register);
+            code.write(value);
+        } else {
+            code.write(WIDE);
+            code.write(IINC);
+            writeShort(register);
+            writeShort(value);
+        }
+    }
+
+    void pushInt(int value, ConstantPool pool) {
+        if (value >= -1 && value <= 5)
+            op(ICONST_M1 + value + 1, 1);
+        else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+            opByte(BIPUSH, value, 1);
+        else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+            opShort(SIPUSH, value, 1);
+        else
+            ldc(pool.integer(value));
+    }
+
+    void ldc(int index) {
+        if (index < 256)
+            opByte(LDC, index, 1);
+        else
+            opShort(LDC_W, index, 1);
+    }
+
+    void jump(int opcode, Label label, int stackChange) {
+        label.jumps.add(new int[]{code.size(), code.size() + 1});
+        code.write(opcode);
+        writeShort(0);
+        changeStack(stackChange);
+
+        if (label.stack < 0)
+            label.stack = stack;
+
+        if (opcode == GOTO)
+            reachable = false;
+    }
+
+    /**
+     * @return the bytecode, with every jump pointing to its label
+     */
+    byte[] toByteArray() {
+        var bytes = code.toByteArray();
+
+        for (var label : allLabels)
+            resolve(label, bytes);
+
+        return bytes;
+    }
+
+    private void resolve(Label label, byte[] bytes) {
+        if (!label.jumps.isEmpty() && label.offset < 0)
+            throw new IllegalStateException("Jump to a label that is never defined");
+
+        for (var jump : label.jumps) {
+            var offset = label.offset - jump[0];
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+                throw new IllegalStateException("Method is too large, a jump does not fit in 16 bits");
+
+            bytes[jump[1]] = (byte) (offset >> 8);
+            bytes[jump[1] + 1] = (byte) offset;
+        }
+    }
+
+    private void changeStack(int stackChange) {
+        stack += stackChange;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void writeShort(int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+}
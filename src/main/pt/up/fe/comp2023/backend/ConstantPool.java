@@ -0,0 +1,111 @@
+package pt.up.fe.comp2023.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The constant pool of a class file being written. Every entry is only added once, and its index is returned.
+ */
+class ConstantPool {
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int count = 1;
+
+    int utf8(String value) {
+        return entry(UTF8 + ":" + value, () -> {
+            out.writeByte(UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    int integer(int value) {
+        return entry(INTEGER + ":" + value, () -> {
+            out.writeByte(INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    int string(String value) {
+        var utf8 = utf8(value);
+        return entry(STRING + ":" + value, () -> {
+            out.writeByte(STRING);
+            out.writeShort(utf8);
+        });
+    }
+
+    int classRef(String internalName) {
+        var name = utf8(internalName);
+        return entry(CLASS + ":" + internalName, () -> {
+            out.writeByte(CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(FIELD_REF, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(METHOD_REF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        var ownerIndex = classRef(owner);
+        var nameAndType = nameAndType(name, descriptor);
+        return entry(tag + ":" + owner + "." + name + ":" + descriptor, () -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        var nameIndex = utf8(name);
+        var descriptorIndex = utf8(descriptor);
+        return entry(NAME_AND_TYPE + ":" + name + ":" + descriptor, () -> {
+            out.writeByte(NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    void writeTo(DataOutputStream output) throws IOException {
+        output.writeShort(count);
+        bytes.writeTo(output);
+    }
+
+    private interface EntryWriter {
+        void write() throws IOException;
+    }
+
+    private int entry(String key, EntryWriter writer) {
+        var index = entries.get(key);
+        if (index != null)
+            return index;
+
+        if (count >= 0xFFFF)
+            throw new IllegalStateException("Too many constants in the class");
+
+        try {
+            writer.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        entries.put(key, count);
+        return count++;
+    }
+}
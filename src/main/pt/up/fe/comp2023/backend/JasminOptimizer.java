@@ -2,33 +2,87 @@ package pt.up.fe.comp2023.backend;
 
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.DeferredReport;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.regex.Pattern;
 
 public class JasminOptimizer {
 
+    private static final String METHOD_END = ".end method";
+
     private final Pattern gotoPattern = Pattern.compile("\\s*goto\\s+(\\w+)(\\n(\\w+:\\n)+\\1:)");
     private final Pattern loadStorePattern = Pattern.compile("\\s*([ia])load[\\s_](\\d+)\\n\\s*\\1store[\\s_]\\2\\n");
+    private int rounds = 0;
 
-    public JasminResult optimize(JasminResult jasminResult) {
+    /**
+     * @return the number of rounds the last optimization took to reach a fixpoint
+     */
+    public int getRounds() {
+        return rounds;
+    }
 
-        String jasminCode = jasminResult.getJasminCode();
+    public JasminResult optimize(JasminResult jasminResult) {
 
-        jasminCode = this.performOptimization(jasminCode);
+        rounds = 0;
+        String jasminCode = this.performOptimization(jasminResult.getJasminCode());
 
         var reports = new ArrayList<Report>();
-        reports.add(new Report(ReportType.DEBUG, Stage.GENERATION, -1, -1, "Optimized Jasmin:\n" + jasminCode));
+        reports.add(DeferredReport.newDebug(Stage.GENERATION, () -> "Optimized Jasmin:\n" + jasminCode));
 
         return new JasminResult(jasminResult.getClassName(), jasminCode, reports, jasminResult.getConfig());
     }
 
+    /**
+     * Wraps the given writer so the Jasmin code written to it is optimized one method at a time, as soon as each
+     * method is complete. None of the patterns crosses the end of a method, so the result is the same as optimizing
+     * the whole class at once, and {@link #getRounds()} is the largest number of rounds any method took.
+     * <p>
+     * The code after the last method is only written when the returned writer is closed.
+     */
+    public Writer optimizing(Writer out) {
+        rounds = 0;
+
+        return new Writer() {
+            private final StringBuilder pending = new StringBuilder();
+
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                pending.append(cbuf, off, len);
+
+                var end = pending.lastIndexOf(METHOD_END);
+                if (end == -1)
+                    return;
+
+                end += METHOD_END.length();
+                out.write(performOptimization(pending.substring(0, end)));
+                pending.delete(0, end);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.write(pending.toString());
+                pending.setLength(0);
+                out.close();
+            }
+        };
+    }
+
     private String performOptimization(String jasminCode) {
 
+        int round = 0;
+
         boolean codeChanged;
         do {
+            round++;
             int initialLength = jasminCode.length();
 
             jasminCode = this.stripRedundantStackOps(jasminCode);
@@ -39,6 +93,8 @@ public class JasminOptimizer {
             codeChanged = finalLength != initialLength;
         } while (codeChanged);
 
+        rounds = Math.max(rounds, round);
+
         return jasminCode;
     }
 
@@ -1,9 +1,9 @@
 package pt.up.fe.comp2023.optimization;
 
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PostorderJmmVisitor;
+import pt.up.fe.comp2023.IterativePostorderJmmVisitor;
 
-public class ASTSimplificationVisitor extends PostorderJmmVisitor<Void, Boolean> {
+public class ASTSimplificationVisitor extends IterativePostorderJmmVisitor<Void, Boolean> {
     public ASTSimplificationVisitor() {
         super();
         buildVisitor();
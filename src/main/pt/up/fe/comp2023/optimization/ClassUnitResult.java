@@ -0,0 +1,59 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.specs.util.SpecsCollections;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link OllirResult} whose class was built directly by the {@link OllirBuilder}, instead of parsed from OLLIR code.
+ * The OLLIR code is only printed when asked for.
+ */
+public class ClassUnitResult extends OllirResult {
+    // Every public constructor of OllirResult parses its code, so it is given the smallest class possible
+    private static final String EMPTY_CLASS = "Empty {}";
+
+    private final ClassUnit ollirClass;
+    private final SymbolTable symbolTable;
+    private final List<Report> reports;
+    private final Map<String, String> config;
+
+    public ClassUnitResult(JmmSemanticsResult semanticsResult, ClassUnit ollirClass, List<Report> reports) {
+        super(EMPTY_CLASS, semanticsResult.getConfig());
+
+        this.ollirClass = ollirClass;
+        this.symbolTable = semanticsResult.getSymbolTable();
+        this.reports = SpecsCollections.concat(semanticsResult.getReports(), reports);
+        this.config = semanticsResult.getConfig();
+    }
+
+    @Override
+    public String getOllirCode() {
+        return OllirPrinter.print(ollirClass);
+    }
+
+    @Override
+    public ClassUnit getOllirClass() {
+        return ollirClass;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    @Override
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    @Override
+    public Map<String, String> getConfig() {
+        return config;
+    }
+}
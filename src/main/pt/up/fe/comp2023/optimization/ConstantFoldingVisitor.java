@@ -1,9 +1,9 @@
 package pt.up.fe.comp2023.optimization;
 
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PostorderJmmVisitor;
+import pt.up.fe.comp2023.IterativePostorderJmmVisitor;
 
-public class ConstantFoldingVisitor extends PostorderJmmVisitor<Void, Boolean> {
+public class ConstantFoldingVisitor extends IterativePostorderJmmVisitor<Void, Boolean> {
     public ConstantFoldingVisitor() {
         super();
         buildVisitor();
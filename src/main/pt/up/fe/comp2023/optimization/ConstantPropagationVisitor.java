@@ -1,25 +1,32 @@
 package pt.up.fe.comp2023.optimization;
 
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.EnclosingContext;
+import pt.up.fe.comp2023.IterativeJmmVisitor;
 
 import java.util.*;
+import java.util.function.Consumer;
 
-public class ConstantPropagationVisitor extends AJmmVisitor<Void, Boolean> {
+public class ConstantPropagationVisitor extends IterativeJmmVisitor<Void, Boolean> {
     private final Map<String, Variable> variables = new TreeMap<>();
+    private EnclosingContext enclosing;
 
     public ConstantPropagationVisitor() {
         super();
         buildVisitor();
     }
 
+    /**
+     * Visits the tree, after finding what encloses its nodes again, as the other optimizations may have changed it.
+     */
+    @Override
+    public Boolean visit(JmmNode node, Void data) {
+        enclosing = new EnclosingContext(node);
+        return super.visit(node, data);
+    }
+
     private boolean isInControlFlow(JmmNode node) {
-        return node.getAncestor("IfStatement").isPresent()
-            || node.getAncestor("WhileStatement").isPresent()
-            || node.getAncestor("DoStatement").isPresent()
-            || node.getAncestor("ForStatement").isPresent()
-            || node.getAncestor("ForEachStatement").isPresent()
-            || node.getAncestor("SwitchStatement").isPresent();
+        return enclosing.getControlFlowDepth(node) > 0;
     }
 
     @Override
@@ -43,37 +50,41 @@ public class ConstantPropagationVisitor extends AJmmVisitor<Void, Boolean> {
         setDefaultVisit(this::visitChildren);
     }
 
-    private Boolean visitChildren(JmmNode node, Void context) {
-        boolean r = false;
-
-        for (var child : node.getChildren())
-            r |= visit(child, context);
-
-        return r;
+    private void visitChildren(JmmNode node, Void context, Consumer<Boolean> result) {
+        visitAll(node.getChildren(), context, results -> result.accept(results.contains(true)));
     }
 
-    private Boolean visitMethod(JmmNode node, Void context) {
-        var r = visitChildren(node, context);
+    private void visitMethod(JmmNode node, Void context, Consumer<Boolean> result) {
+        visitChildren(node, context, r -> {
+            for (var var : variables.values())
+                if (var.usages == 0 && var.node != null)
+                    var.node.delete();
 
-        for (var var : variables.values())
-            if (var.usages == 0 && var.node != null)
-                var.node.delete();
-
-        variables.clear();
+            variables.clear();
 
-        return r;
+            result.accept(r);
+        });
     }
 
-    private Boolean visitAssignment(JmmNode node, Void context) {
+    private void visitAssignment(JmmNode node, Void context, Consumer<Boolean> result) {
         var left = node.getJmmChild(0);
         var right = node.getJmmChild(1);
 
-        boolean r = visit(right, context);
+        visit(right, context, r -> {
+            propagateAssignment(node, left, right);
+            result.accept(r);
+        });
+    }
 
+    /**
+     * Records the value assigned to a local variable, once the assigned expression has been visited.
+     * The expression is the node it was before the visit, even if the visit replaced it.
+     */
+    private void propagateAssignment(JmmNode node, JmmNode left, JmmNode right) {
         var op = node.get("op");
 
         if (!left.getKind().equals("IdentifierExpression"))
-            return r;
+            return;
 
         var id = left.get("id");
         var origin = left.get("origin");
@@ -87,7 +98,7 @@ public class ConstantPropagationVisitor extends AJmmVisitor<Void, Boolean> {
         }
 
         if (!right.getKind().equals("LiteralExpression"))
-            return r;
+            return;
 
         var value = right.get("value");
 
@@ -101,20 +112,15 @@ public class ConstantPropagationVisitor extends AJmmVisitor<Void, Boolean> {
         }
 
         if (!origin.equals("local") || isInControlFlow(node))
-            return r;
+            return;
 
         variables.put(id, new Variable(node.getJmmParent().getKind().equals("ExpressionStatement") ? node.getJmmParent() : null, value));
-
-        return r;
     }
 
-    private Boolean visitVariableDeclaration(JmmNode node, Void context) {
+    private void visitVariableDeclaration(JmmNode node, Void context, Consumer<Boolean> result) {
         var id = node.get("id");
         var var = variables.get(id);
-        var origin = node.get("origin");
         var type = node.get("type");
-        var value = ConstantUtils.defaultValue(type);
-        var r = false;
 
         if (var != null) {
             if (var.usages == 0 && var.node != null)
@@ -123,36 +129,49 @@ public class ConstantPropagationVisitor extends AJmmVisitor<Void, Boolean> {
             variables.remove(id);
         }
 
-        if (node.getNumChildren() == 2) {
-            var right = node.getJmmChild(1);
+        if (node.getNumChildren() < 2) {
+            declare(node, ConstantUtils.defaultValue(type));
+            result.accept(false);
+            return;
+        }
 
-            r = visit(right, context);
+        var right = node.getJmmChild(1);
 
-            if (!right.getKind().equals("LiteralExpression"))
-                return false;
+        visit(right, context, r -> {
+            if (!right.getKind().equals("LiteralExpression")) {
+                result.accept(false);
+                return;
+            }
 
-            value = right.get("value");
-        }
+            result.accept(declare(node, right.get("value")) && r);
+        });
+    }
 
-        if (!origin.equals("local") || isInControlFlow(node))
+    /**
+     * @return whether the value of the declared variable is now known
+     */
+    private boolean declare(JmmNode node, String value) {
+        if (!node.get("origin").equals("local") || isInControlFlow(node))
             return false;
 
-        variables.put(id, new Variable(node.getJmmParent().getJmmParent(), value));
+        variables.put(node.get("id"), new Variable(node.getJmmParent().getJmmParent(), value));
 
-        return r;
+        return true;
     }
 
-    private Boolean visitUnaryOp(JmmNode node, Void context) {
+    private void visitUnaryOp(JmmNode node, Void context, Consumer<Boolean> result) {
         var child = node.getJmmChild(0);
         var op = node.get("op");
 
-        if (!op.equals("++") && !op.equals("--"))
-            return visit(child);
+        if (!op.equals("++") && !op.equals("--")) {
+            visit(child, context, result);
+            return;
+        }
 
         var id = child.get("id");
         variables.remove(id);
 
-        return false;
+        result.accept(false);
     }
 
     protected Boolean visitIdentifier(JmmNode node, Void context) {
@@ -167,21 +186,37 @@ public class ConstantPropagationVisitor extends AJmmVisitor<Void, Boolean> {
         return true;
     }
 
-    protected Boolean visitConditional(JmmNode node, Void context) {
+    protected void visitConditional(JmmNode node, Void context, Consumer<Boolean> result) {
         var condition = node.getJmmChild(0);
-        var r = visit(condition, context);
 
-        var tempVars = new TreeMap<>(variables);
-        var newVars = new HashSet<TreeMap<String, Variable>>();
+        visit(condition, context, conditionChanged -> {
+            var tempVars = new TreeMap<>(variables);
+            var newVars = new HashSet<TreeMap<String, Variable>>();
+            var changed = new ArrayList<>(List.of(conditionChanged));
+
+            // Every branch starts from the variables known before it
+            for (var child : node.getChildren().subList(1, node.getNumChildren())) {
+                then(() -> {
+                    variables.clear();
+                    variables.putAll(tempVars);
+                });
+                visit(child, context, r -> {
+                    changed.add(r);
+                    newVars.add(new TreeMap<>(variables));
+                });
+            }
 
-        for (int i = 1; i < node.getNumChildren(); i++) {
-            var child = node.getJmmChild(i);
-            variables.clear();
-            variables.putAll(tempVars);
-            r |= visit(child, context);
-            newVars.add(new TreeMap<>(variables));
-        }
+            then(() -> {
+                mergeBranches(newVars);
+                result.accept(changed.contains(true));
+            });
+        });
+    }
 
+    /**
+     * Keeps only the variables that have the same value at the end of every branch.
+     */
+    private void mergeBranches(Set<TreeMap<String, Variable>> newVars) {
         variables.clear();
 
         Set<String> keys = null;
@@ -206,15 +241,13 @@ public class ConstantPropagationVisitor extends AJmmVisitor<Void, Boolean> {
                 if (var != null)
                     variables.put(key, var);
             }
-
-        return r;
     }
 
-    protected Boolean visitLoop(JmmNode node, Void context) {
+    protected void visitLoop(JmmNode node, Void context, Consumer<Boolean> result) {
         var modifiedVariables = modifiedVariables(node);
         modifiedVariables.forEach(variables::remove);
 
-        return visitChildren(node, context);
+        visitChildren(node, context, result);
     }
 
     private Set<String> modifiedVariables(JmmNode node) {
@@ -1,13 +1,13 @@
 package pt.up.fe.comp2023.optimization;
 
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
-import pt.up.fe.comp2023.Constants;
-import pt.up.fe.comp2023.Utils;
+import pt.up.fe.comp2023.CompactJmmNode;
+import pt.up.fe.comp2023.JmmType;
+import pt.up.fe.comp2023.NodeKind;
 
 public final class ConstantUtils {
     public static String calculate(String left, String right, String op, String type) {
-        if (Utils.in(Constants.INTEGER_TYPES, type)) {
+        if (JmmType.of(type).isInteger()) {
             var leftInt = Integer.parseInt(left);
             var rightInt = Integer.parseInt(right);
 
@@ -58,7 +58,7 @@ public final class ConstantUtils {
     }
 
     public static String calculate(String value, String op, String type) {
-        if (Utils.in(Constants.INTEGER_TYPES, type)) {
+        if (JmmType.of(type).isInteger()) {
             var intVal = Integer.parseInt(value);
 
             return String.valueOf(switch (op) {
@@ -82,7 +82,7 @@ public final class ConstantUtils {
     }
 
     public static String defaultValue(String type) {
-        if (Utils.in(Constants.INTEGER_TYPES, type))
+        if (JmmType.of(type).isInteger())
             return "0";
         else if (type.equals("boolean"))
             return "false";
@@ -93,7 +93,7 @@ public final class ConstantUtils {
     }
 
     public static JmmNode literal(String value, String type) {
-        var literalNode = new JmmNodeImpl("LiteralExpression");
+        var literalNode = new CompactJmmNode(NodeKind.LiteralExpression);
         literalNode.put("value", value);
         literalNode.put("type", type);
         return literalNode;
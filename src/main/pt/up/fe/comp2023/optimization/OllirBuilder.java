@@ -0,0 +1,1103 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2023.EnclosingContext;
+import pt.up.fe.comp2023.IterativeJmmVisitor;
+import pt.up.fe.comp2023.analysis.JmmSymbolTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Lowers the annotated AST directly into an OLLIR {@link ClassUnit}, producing the same class the OLLIR parser would.
+ * <p>
+ * Every visit hands on the instruction that computes the value of the node. Unless the node is marked as
+ * {@code topLevel}, that instruction is always a {@link SingleOpInstruction}, holding a variable or a literal.
+ * <p>
+ * Statements and expressions are visited iteratively, so instructions are emitted in the continuations of the visits
+ * of the nodes they use, in the same order as a recursive traversal would emit them.
+ */
+public class OllirBuilder extends IterativeJmmVisitor<Void, Instruction> {
+
+    private final ClassUnit ollirClass = new ClassUnit();
+
+    private final List<Report> reports = new ArrayList<>();
+
+    private final JmmSymbolTable table;
+
+    private Method method;
+
+    private EnclosingContext enclosing;
+
+    private final List<String> labels = new ArrayList<>();
+
+    private boolean visitedConstructor = false;
+
+    // Temporaries and labels are numbered from 0 in each class, so its code does not depend on what was compiled before
+    private int temporaryVarCounter;
+    private int ifLabelCounter;
+    private int whileLabelCounter;
+    private int doWhileLabelCounter;
+    private int forLabelCounter;
+    private int forEachLabelCounter;
+    private int switchLabelCounter;
+
+    public OllirBuilder(JmmSymbolTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public Instruction visit(JmmNode node, Void unused) {
+        enclosing = new EnclosingContext(node);
+        return super.visit(node, unused);
+    }
+
+    private void emit(Instruction instruction) {
+        for (var label : labels)
+            method.addLabel(label, instruction);
+        labels.clear();
+
+        method.addInstr(instruction);
+    }
+
+    private void emitLabel(String label) {
+        labels.add(label);
+    }
+
+    private void emitAssign(Element dest, Type type, Instruction rhs) {
+        emit(new AssignInstruction(copy(dest), type, rhs));
+    }
+
+    private void emitGoto(String label) {
+        emit(new GotoInstruction(label));
+    }
+
+    private void emitBranch(CondBranchInstruction branch, String label) {
+        branch.setLabel(label);
+        emit(branch);
+    }
+
+    private void emitBranchIfNot(Element condition, String label) {
+        var negation = new UnaryOpInstruction(new Operation(OperationType.NOTB, new Type(ElementType.BOOLEAN)), copy(condition));
+        emitBranch(new OpCondInstruction(negation), label);
+    }
+
+    private void emitInvokeSpecialInit(Element target) {
+        var init = new LiteralElement("\"<init>\"", new Type(ElementType.STRING));
+        emit(new CallInstruction(CallType.invokespecial, firstArg(target), init, new ArrayList<>(), new Type(ElementType.VOID)));
+    }
+
+    /**
+     * Stores the given value in a new temporary variable, unless the node is at the top level.
+     */
+    private Instruction temp(JmmNode node, Type type, Instruction value) {
+        if (node.getOptional("topLevel").isPresent())
+            return value;
+
+        var temp = new Operand(getNextTemp(), type);
+        emitAssign(temp, type, value);
+
+        return new SingleOpInstruction(copy(temp));
+    }
+
+    private String getNextTemp() {
+        return "__temp__" + temporaryVarCounter++;
+    }
+
+    private String[] getNextIfLabels() {
+        var n = ifLabelCounter++;
+        return new String[] { "__else__" + n, "__endif__" + n };
+    }
+
+    private String[] getNextWhileLabels() {
+        var n = whileLabelCounter++;
+        return new String[] { "__while__" + n, "__endwhile__" + n };
+    }
+
+    private String[] getNextDoWhileLabels() {
+        var n = doWhileLabelCounter++;
+        return new String[] { "__dowhile__" + n, "__enddowhile__" + n };
+    }
+
+    private String[] getNextForLabels() {
+        var n = forLabelCounter++;
+        return new String[] { "__for__" + n, "__endfor__" + n };
+    }
+
+    private String[] getNextForEachLabels() {
+        var n = forEachLabelCounter++;
+        return new String[] {
+            "__foreach__" + n,
+            "__endforeach__" + n,
+            "__foreacharray__" + n,
+            "__foreachlength__" + n,
+            "__foreachindex__" + n
+        };
+    }
+
+    private String[] getNextSwitchLabels() {
+        var n = switchLabelCounter++;
+        return new String[] { "__switch__" + n + "_", "__endswitch__" + n };
+    }
+
+    private String commonType(String type1, String type2) {
+        if (type1.equals("*"))
+            if (type2.equals("*"))
+                return "int";
+            else
+                return type2;
+        else return type1;
+    }
+
+    /**
+     * @return the variable or literal computed by the given instruction
+     */
+    private static Element value(Instruction instruction) {
+        if (instruction instanceof SingleOpInstruction singleOp)
+            return copy(singleOp.getSingleOperand());
+
+        throw new IllegalStateException("Expected a single operand, got " + instruction.getInstType());
+    }
+
+    private static Element copy(Element element) {
+        if (element instanceof LiteralElement literal)
+            return new LiteralElement(literal.getLiteral(), literal.getType());
+
+        var operand = (Operand) element;
+        var copy = operand instanceof ArrayOperand arrayOperand
+                ? new ArrayOperand(operand.getName(), operand.getType(), arrayOperand.getIndexOperands().stream().map(OllirBuilder::copy).toList())
+                : new Operand(operand.getName(), operand.getType());
+
+        if (operand.isParameter())
+            copy.setParamId(operand.getParamId());
+
+        return copy;
+    }
+
+    /**
+     * @return the OLLIR type of the given JMM or OLLIR type name, made from the interned type of this compilation
+     */
+    private Type toType(String type) {
+        return OllirUtils.toType(table.getType(type));
+    }
+
+    private String toOllirType(String type) {
+        return table.getType(type).getOllirType();
+    }
+
+    /**
+     * @return the given element as the first argument of a call or field access, where {@code this} has its own type
+     */
+    private Element firstArg(Element element) {
+        var copy = copy(element);
+
+        if (copy instanceof Operand operand && operand.getName().equals("this"))
+            return new Operand("this", new ClassType(ElementType.THIS, table.getClassName()));
+
+        return copy;
+    }
+
+    private static boolean isClass(Element element) {
+        return element.getType().getTypeOfElement() == ElementType.CLASS;
+    }
+
+    private boolean isOfThisClass(Element element) {
+        return element.getType() instanceof ClassType classType
+                && classType.getTypeOfElement() != ElementType.CLASS
+                && classType.getName().equals(table.getClassName());
+    }
+
+    private static boolean isNewObject(Instruction instruction) {
+        return instruction instanceof CallInstruction call
+                && call.getInvocationType() == CallType.NEW
+                && !(call.getReturnType() instanceof ArrayType);
+    }
+
+    private static Instruction putField(GetFieldInstruction getField, Element value) {
+        return new PutFieldInstruction(copy(getField.getFirstOperand()), copy(getField.getSecondOperand()), copy(value),
+                new Type(ElementType.VOID));
+    }
+
+    private static OperationType toOperationType(String op) {
+        return switch (op) {
+            case "*" -> OperationType.MUL;
+            case "/" -> OperationType.DIV;
+            case "+" -> OperationType.ADD;
+            case "-" -> OperationType.SUB;
+            case "&&" -> OperationType.ANDB;
+            case "||" -> OperationType.ORB;
+            case "&" -> OperationType.AND;
+            case "|" -> OperationType.OR;
+            case "^" -> OperationType.XOR;
+            case "<" -> OperationType.LTH;
+            case ">" -> OperationType.GTH;
+            case "<=" -> OperationType.LTE;
+            case ">=" -> OperationType.GTE;
+            case "==" -> OperationType.EQ;
+            case "!=" -> OperationType.NEQ;
+            case "!" -> OperationType.NOTB;
+            case "~" -> OperationType.NOT;
+            default -> throw new IllegalStateException("Operator " + op + " is not supported by OLLIR");
+        };
+    }
+
+    private static void setModifiers(Method method, Set<String> modifiers) {
+        for (var modifier : modifiers)
+            switch (modifier) {
+                case "public" -> method.setMethodAccessModifier(AccessModifiers.PUBLIC);
+                case "private" -> method.setMethodAccessModifier(AccessModifiers.PRIVATE);
+                case "protected" -> method.setMethodAccessModifier(AccessModifiers.PROTECTED);
+                case "static" -> method.setStaticMethod();
+                case "final" -> method.setFinalMethod();
+            }
+    }
+
+    private void addParameters(pt.up.fe.comp2023.analysis.Method methodSymbol) {
+        var paramId = method.isStaticMethod() ? 0 : 1;
+
+        for (var parameter : methodSymbol.getParameters()) {
+            var param = new Operand(parameter.getName(), toType(parameter.getType().print()));
+            param.setParamId(paramId++);
+            method.addParam(param);
+        }
+    }
+
+    public ClassUnit getOllirClass() {
+        return ollirClass;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    @Override
+    protected void buildVisitor() {
+        setDefaultVisit(this::visitChildren);
+
+        addVisit("ImportStatement", this::visitImportStatement);
+
+        addVisit("ClassDeclaration", this::visitClassDeclaration);
+
+        addVisit("MethodDeclaration", this::visitMethodDeclaration);
+        addVisit("FieldDeclaration", this::visitFieldDeclaration);
+        addVisit("ConstructorDeclaration", this::visitConstructorDeclaration);
+
+        addVisit("VariableDeclaration", this::visitVariableDeclaration);
+
+        // Statement
+        addVisit("IfStatement", this::visitIfStatement);
+        addVisit("WhileStatement", this::visitWhileStatement);
+        addVisit("DoStatement", this::visitDoWhileStatement);
+        addVisit("ForStatement", this::visitForStatement);
+        addVisit("ForEachStatement", this::visitForEachStatement);
+        addVisit("SwitchStatement", this::visitSwitchStatement);
+        addVisit("ReturnStatement", this::visitReturnStatement);
+        addVisit("BreakStatement", this::visitBreakOrContinueStatement);
+        addVisit("ContinueStatement", this::visitBreakOrContinueStatement);
+        addVisit("ExpressionStatement", this::visitExpressionStatement);
+
+        // Expression
+        addVisit("ExplicitPriority", this::visitExplicitPriority);
+        addVisit("NewObject", this::visitNewObject);
+        addVisit("NewArray", this::visitNewArray);
+        addVisit("MethodCall", this::visitMethodCall);
+        addVisit("PropertyAccess", this::visitPropertyAccess);
+        addVisit("ArrayAccess", this::visitArrayAccess);
+        addVisit("UnaryPostOp", this::visitUnaryPostOp);
+        addVisit("UnaryPreOp", this::visitUnaryPreOp);
+        addVisit("BinaryOp", this::visitBinaryOp);
+        addVisit("TernaryOp", this::visitTernaryOp);
+        addVisit("AssignmentExpression", this::visitAssignment);
+        addVisit("LiteralExpression", this::visitLiteral);
+        addVisit("IdentifierExpression", this::visitIdentifier);
+        addVisit("ThisExpression", this::visitThis);
+    }
+
+    protected void visitChildren(JmmNode node, Void unused, Consumer<Instruction> result) {
+        for (var child : node.getChildren())
+            schedule(child, unused);
+
+        then(() -> result.accept(null));
+    }
+
+    /**
+     * Visits the node and hands the variable or literal it computes to the given consumer.
+     */
+    private void visitValue(JmmNode node, Consumer<Element> result) {
+        visit(node, null, instruction -> result.accept(value(instruction)));
+    }
+
+    private void visitArgumentList(JmmNode node, Consumer<ArrayList<Element>> result) {
+        var arguments = new ArrayList<Element>();
+
+        for (var child : node.getChildren()) {
+            then(() -> {
+                if (child.get("type").equals("*"))
+                    child.put("type", "int");
+            });
+            visitValue(child, arguments::add);
+        }
+
+        then(() -> result.accept(arguments));
+    }
+
+    protected Instruction visitImportStatement(JmmNode node, Void unused) {
+        var path = new ArrayList<>(node.getObjectAsList("classPackage", String.class));
+        path.add(node.get("className"));
+
+        ollirClass.addImport(String.join(".", path));
+
+        return null;
+    }
+
+    protected void visitClassDeclaration(JmmNode node, Void unused, Consumer<Instruction> result) {
+        ollirClass.setClassName(table.getClassName());
+
+        if (table.getSuper() != null)
+            ollirClass.setSuperClass(table.getSuper());
+
+        for (var symbol : table.getFields()) {
+            var field = new Field();
+            field.setFieldName(symbol.getName());
+            field.setFieldType(toType(symbol.getType().print()));
+            ollirClass.addField(field);
+        }
+
+        visitChildren(node, unused, ignored -> {
+            if (!visitedConstructor) {
+                method = new Method(ollirClass);
+                method.setConstructMethod();
+                method.setMethodName(table.getClassName());
+                method.setReturnType(new Type(ElementType.VOID));
+                emitInvokeSpecialInit(new Operand("this", new ClassType(ElementType.THIS, table.getClassName())));
+                ollirClass.addMethod(method);
+                method = null;
+            }
+
+            ollirClass.buildVarTables();
+
+            result.accept(null);
+        });
+    }
+
+    protected void visitMethodDeclaration(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var methodSymbol = table.getMethod(node.get("methodName"));
+        var returnType = methodSymbol.getReturnType().print();
+
+        method = new Method(ollirClass);
+        setModifiers(method, methodSymbol.getModifiers());
+        method.setMethodName(methodSymbol.getName());
+        method.setReturnType(toType(returnType));
+        addParameters(methodSymbol);
+
+        visitChildren(node, unused, ignored -> {
+            if (!node.getJmmChild(node.getNumChildren() - 1).getKind().equals("ReturnStatement")) {
+                var ret = new ReturnInstruction();
+                ret.setReturnType(toType(returnType));
+                emit(ret);
+            }
+
+            // Labels after the last instruction are not kept
+            labels.clear();
+            ollirClass.addMethod(method);
+            method = null;
+
+            result.accept(null);
+        });
+    }
+
+    protected void visitFieldDeclaration(JmmNode node, Void unused, Consumer<Instruction> result) {
+        if (method != null)
+            schedule(node.getJmmChild(0), unused);
+
+        result.accept(null);
+    }
+
+    protected void visitConstructorDeclaration(JmmNode node, Void unused, Consumer<Instruction> result) {
+        visitedConstructor = true;
+
+        var methodSymbol = table.getMethod("<constructor>");
+
+        method = new Method(ollirClass);
+        method.setConstructMethod();
+        setModifiers(method, methodSymbol.getModifiers());
+        method.setMethodName(node.get("className"));
+        method.setReturnType(toType(methodSymbol.getReturnType().print()));
+        addParameters(methodSymbol);
+
+        emitInvokeSpecialInit(new Operand("this", new ClassType(ElementType.THIS, table.getClassName())));
+
+        visitChildren(node, unused, ignored -> {
+            labels.clear();
+            ollirClass.addMethod(method);
+            method = null;
+
+            result.accept(null);
+        });
+    }
+
+    protected void visitVariableDeclaration(JmmNode node, Void unused, Consumer<Instruction> result) {
+        if (node.getNumChildren() < 2) {
+            result.accept(null);
+            return;
+        }
+
+        var type = node.get("type");
+        var dest = new Operand(node.get("id"), toType(type));
+        var rhsNode = node.getJmmChild(1);
+        rhsNode.put("topLevel", "true");
+
+        // Values of unknown types take the type of the variable
+        if (rhsNode.get("type").equals("*"))
+            rhsNode.put("type", type);
+
+        visit(rhsNode, unused, rhs -> {
+            emitAssign(dest, toType(type), rhs);
+
+            if (isNewObject(rhs))
+                emitInvokeSpecialInit(dest);
+
+            result.accept(null);
+        });
+    }
+
+    protected void visitIfStatement(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var conditionNode = node.getJmmChild(0);
+        conditionNode.put("type", "boolean");
+
+        visitValue(conditionNode, condition -> {
+            var ifLabels = getNextIfLabels();
+
+            emitBranchIfNot(condition, ifLabels[0]);
+
+            schedule(node.getChildren().get(1), unused);
+
+            then(() -> {
+                emitGoto(ifLabels[1]);
+                emitLabel(ifLabels[0]);
+            });
+
+            schedule(node.getChildren().get(2), unused);
+
+            then(() -> emitLabel(ifLabels[1]));
+
+            result.accept(null);
+        });
+    }
+
+    protected void visitWhileStatement(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var whileLabels = getNextWhileLabels();
+
+        node.put("continueLabel", whileLabels[0]);
+        node.put("breakLabel", whileLabels[1]);
+
+        emitLabel(whileLabels[0]);
+
+        var conditionNode = node.getJmmChild(0);
+        conditionNode.put("type", "boolean");
+
+        visitValue(conditionNode, condition -> {
+            emitBranchIfNot(condition, whileLabels[1]);
+
+            schedule(node.getChildren().get(1), unused);
+
+            then(() -> {
+                emitGoto(whileLabels[0]);
+                emitLabel(whileLabels[1]);
+            });
+
+            result.accept(null);
+        });
+    }
+
+    protected void visitDoWhileStatement(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var doWhileLabels = getNextDoWhileLabels();
+
+        node.put("continueLabel", doWhileLabels[0]);
+        node.put("breakLabel", doWhileLabels[1]);
+
+        emitLabel(doWhileLabels[0]);
+
+        schedule(node.getChildren().get(0), unused);
+
+        var conditionNode = node.getChildren().get(1);
+        conditionNode.put("type", "boolean");
+        conditionNode.put("topLevel", "true");
+
+        visit(conditionNode, unused, condition -> {
+            if (condition instanceof SingleOpInstruction singleOp && singleOp.getSingleOperand().getType().getTypeOfElement() == ElementType.BOOLEAN)
+                emitBranch(new SingleOpCondInstruction(singleOp), doWhileLabels[0]);
+            else if (condition instanceof OpInstruction op && op.getOperation().getTypeInfo().getTypeOfElement() == ElementType.BOOLEAN)
+                emitBranch(new OpCondInstruction(op), doWhileLabels[0]);
+            else
+                throw new IllegalStateException("Expected a boolean condition, got " + condition.getInstType());
+
+            emitLabel(doWhileLabels[1]);
+
+            result.accept(null);
+        });
+    }
+
+    protected void visitForStatement(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var forLabels = getNextForLabels();
+
+        node.put("continueLabel", forLabels[0]);
+        node.put("breakLabel", forLabels[1]);
+
+        Consumer<Element> body = terminal -> {
+            emitBranchIfNot(terminal, forLabels[1]);
+
+            schedule(node.getJmmChild(3), unused);
+
+            schedule(node.getJmmChild(2), unused);
+            then(() -> {
+                emitGoto(forLabels[0]);
+                emitLabel(forLabels[1]);
+            });
+
+            result.accept(null);
+        };
+
+        schedule(node.getJmmChild(0), unused);
+        then(() -> emitLabel(forLabels[0]));
+
+        // An empty terminal condition is always true
+        var terminalNode = node.getJmmChild(1);
+        if (terminalNode.getNumChildren() == 0)
+            then(() -> body.accept(new LiteralElement("1", new Type(ElementType.BOOLEAN))));
+        else
+            visitValue(terminalNode.getJmmChild(0), body);
+    }
+
+    protected void visitForEachStatement(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var forEachLabels = getNextForEachLabels();
+
+        node.put("continueLabel", forEachLabels[0]);
+        node.put("breakLabel", forEachLabels[1]);
+
+        var type = node.getJmmChild(0).get("type");
+        var arrayType = table.getType(type).getArrayType().getName();
+        var id = node.get("id");
+        var intType = new Type(ElementType.INT32);
+
+        var arrayNode = node.getJmmChild(1);
+        arrayNode.put("topLevel", "true");
+        arrayNode.put("type", arrayType);
+
+        visit(arrayNode, unused, array -> {
+            var arrayVar = new Operand(forEachLabels[2], toType(arrayType));
+            var length = new Operand(forEachLabels[3], intType);
+            var index = new Operand(forEachLabels[4], intType);
+
+            emitAssign(arrayVar, toType(arrayType), array);
+            emitAssign(length, intType, new CallInstruction(CallType.arraylength, copy(arrayVar), intType));
+            emitAssign(index, intType, new SingleOpInstruction(new LiteralElement("0", intType)));
+
+            emitLabel(forEachLabels[0]);
+            var done = new BinaryOpInstruction(copy(index), new Operation(OperationType.GTE, new Type(ElementType.BOOLEAN)), copy(length));
+            emitBranch(new OpCondInstruction(done), forEachLabels[1]);
+
+            var element = new ArrayOperand(forEachLabels[2], toType(type), List.of(copy(index)));
+            emitAssign(new Operand(id, toType(type)), toType(type), new SingleOpInstruction(element));
+
+            schedule(node.getJmmChild(2), unused);
+
+            then(() -> {
+                var next = new BinaryOpInstruction(copy(index), new Operation(OperationType.ADD, intType), new LiteralElement("1", intType));
+                emitAssign(index, intType, next);
+                emitGoto(forEachLabels[0]);
+                emitLabel(forEachLabels[1]);
+            });
+
+            result.accept(null);
+        });
+    }
+
+    protected void visitSwitchStatement(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var switchLabels = getNextSwitchLabels();
+
+        node.put("breakLabel", switchLabels[1]);
+
+        var expressionNode = node.getJmmChild(0);
+
+        visitValue(expressionNode, expression -> {
+            var defaultCase = switchLabels[1];
+            var cases = node.getChildren().subList(1, node.getNumChildren());
+
+            for (int i = 0; i < cases.size(); i++) {
+                var _case = cases.get(i);
+                if (_case.getKind().equals("DefaultStatement")) {
+                    defaultCase = switchLabels[0] + i;
+                    continue;
+                }
+
+                var value = value(visitLiteral(_case, unused));
+                var equals = new BinaryOpInstruction(copy(expression), new Operation(OperationType.EQ, new Type(ElementType.BOOLEAN)), value);
+                emitBranch(new OpCondInstruction(equals), switchLabels[0] + i);
+            }
+
+            emitGoto(defaultCase);
+
+            for (int i = 0; i < cases.size(); i++) {
+                var label = switchLabels[0] + i;
+
+                then(() -> emitLabel(label));
+                schedule(cases.get(i), unused);
+            }
+
+            then(() -> emitLabel(switchLabels[1]));
+
+            result.accept(null);
+        });
+    }
+
+    protected void visitReturnStatement(JmmNode node, Void unused, Consumer<Instruction> result) {
+        if (node.getNumChildren() == 0) {
+            var ret = new ReturnInstruction();
+            ret.setReturnType(new Type(ElementType.VOID));
+            emit(ret);
+            result.accept(null);
+            return;
+        }
+
+        var child = node.getJmmChild(0);
+
+        visit(child, unused, s -> {
+            var type = toType(child.get("type"));
+
+            if (s != null) {
+                var ret = new ReturnInstruction(value(s));
+                ret.setReturnType(type);
+                emit(ret);
+            }
+
+            result.accept(null);
+        });
+    }
+
+    protected Instruction visitBreakOrContinueStatement(JmmNode node, Void unused) {
+        var label = node.getKind().equals("BreakStatement")
+                ? enclosing.getBreakTarget(node).get("breakLabel")
+                : enclosing.getLoop(node).get("continueLabel");
+        emitGoto(label);
+        return null;
+    }
+
+    protected void visitExpressionStatement(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var child = node.getJmmChild(0);
+        if (child.get("type").equals("*"))
+            child.put("type", child.getKind().equals("MethodCall") ? "void" : "int");
+        child.put("topLevel", "true");
+
+        visit(child, unused, s -> {
+            // Only calls and field stores have an effect, other values are dropped
+            if (s instanceof PutFieldInstruction
+                    || s instanceof CallInstruction call && call.getInvocationType() != CallType.ldc && call.getInvocationType() != CallType.arraylength)
+                emit(s);
+
+            result.accept(null);
+        });
+    }
+
+    protected void visitExplicitPriority(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var child = node.getChildren().get(0);
+        child.put("type", node.get("type"));
+
+        if (node.getOptional("topLevel").isPresent())
+            child.put("topLevel", "true");
+
+        visit(child, unused, result);
+    }
+
+    protected void visitNewObject(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var type = node.get("type");
+
+        Consumer<ArrayList<Element>> newObject = args -> {
+            var ollirType = toType(type);
+            var call = new CallInstruction(CallType.NEW, new Operand(type, new ClassType(ElementType.OBJECTREF, type)), args, ollirType);
+
+            if (node.getOptional("topLevel").isPresent()) {
+                result.accept(call);
+                return;
+            }
+
+            var temp = new Operand(getNextTemp(), ollirType);
+            emitAssign(temp, ollirType, call);
+            emitInvokeSpecialInit(temp);
+
+            result.accept(new SingleOpInstruction(copy(temp)));
+        };
+
+        if (node.getNumChildren() == 0) {
+            newObject.accept(new ArrayList<>());
+            return;
+        }
+
+        if (type.equals(table.getClassName())) {
+            var params = table.getParameters("<constructor>");
+            var argsNode = node.getJmmChild(0);
+            for (int i = 0; i < argsNode.getNumChildren(); i++) {
+                var arg = argsNode.getJmmChild(i);
+                var param = params.get(i);
+                arg.put("type", commonType(param.getType().print(), arg.get("type")));
+            }
+        }
+
+        visitArgumentList(node.getJmmChild(0), newObject);
+    }
+
+    protected void visitNewArray(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var type = toType(node.get("type"));
+
+        visitValue(node.getJmmChild(1), size -> {
+            var sizes = new ArrayList<Element>();
+            sizes.add(size);
+
+            result.accept(temp(node, type, new CallInstruction(CallType.NEW, new Operand("array", new ArrayType()), sizes, type)));
+        });
+    }
+
+    protected void visitMethodCall(JmmNode node, Void unused, Consumer<Instruction> result) {
+        Element lhs = new Operand("this", new ClassType(ElementType.OBJECTREF, table.getClassName()));
+
+        if (node.getNumChildren() == 0) {
+            result.accept(call(node, lhs, new ArrayList<>()));
+            return;
+        }
+
+        var argsNode = node.getJmmChild(0);
+
+        if (argsNode.getKind().equals("ArgumentList")) {
+            visitCall(node, lhs, argsNode, result);
+            return;
+        }
+
+        if (argsNode.get("type").equals("*"))
+            argsNode.put("type", "Object");
+
+        visitValue(argsNode, target -> visitCall(node, target, node.getNumChildren() > 1 ? node.getJmmChild(1) : null, result));
+    }
+
+    /**
+     * Visits the arguments of a call, once its target is known, and then hands the call to the given consumer.
+     */
+    private void visitCall(JmmNode node, Element lhs, JmmNode argsNode, Consumer<Instruction> result) {
+        if (argsNode == null) {
+            result.accept(call(node, lhs, new ArrayList<>()));
+            return;
+        }
+
+        if (isOfThisClass(lhs)) {
+            var params = table.getParameters(node.get("member"));
+            for (int i = 0; i < argsNode.getNumChildren(); i++) {
+                var arg = argsNode.getJmmChild(i);
+                var param = params.get(i);
+                arg.put("type", commonType(param.getType().print(), arg.get("type")));
+            }
+        }
+
+        visitArgumentList(argsNode, args -> result.accept(call(node, lhs, args)));
+    }
+
+    private Instruction call(JmmNode node, Element lhs, ArrayList<Element> args) {
+        var returnType = toType(node.get("type"));
+        var name = new LiteralElement("\"" + node.get("member") + "\"", new Type(ElementType.STRING));
+        var call = isClass(lhs)
+                ? new CallInstruction(CallType.invokestatic, new Operand(((Operand) lhs).getName(), new ClassType(ElementType.CLASS, table.getClassName())), name, args, returnType)
+                : new CallInstruction(CallType.invokevirtual, firstArg(lhs), name, args, returnType);
+
+        return temp(node, returnType, call);
+    }
+
+    protected void visitPropertyAccess(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var lhsNode = node.getJmmChild(0);
+        if (lhsNode.get("type").equals("*"))
+            lhsNode.put("type", "Object");
+
+        visitValue(lhsNode, lhs -> {
+            var type = toType(node.get("type"));
+            var member = node.get("member");
+
+            Instruction line;
+            if (table.getType(lhsNode.get("type")).isArray())
+                line = new CallInstruction(CallType.arraylength, lhs, type);
+            else if (isClass(lhs))
+                throw new IllegalStateException("Static fields are not supported by OLLIR");
+            else
+                line = new GetFieldInstruction(firstArg(lhs), new Operand(member, type), type);
+
+            result.accept(temp(node, type, line));
+        });
+    }
+
+    protected void visitArrayAccess(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var lhsNode = node.getJmmChild(0);
+        var indexNode = node.getJmmChild(1);
+        lhsNode.put("type", table.getType(node.get("type")).getArrayType().getName());
+        indexNode.put("type", "int");
+
+        visitValue(lhsNode, array -> {
+            var lhs = (Operand) array;
+
+            visitValue(indexNode, index -> {
+                var type = toType(node.get("type"));
+
+                var element = new ArrayOperand(lhs.getName(), type, List.of(index));
+                if (lhs.isParameter())
+                    element.setParamId(lhs.getParamId());
+
+                result.accept(temp(node, type, new SingleOpInstruction(element)));
+            });
+        });
+    }
+
+    // TODO
+    private void visitUnaryPostOp(JmmNode jmmNode, Void unused, Consumer<Instruction> result) {
+        var lhsNode = jmmNode.getJmmChild(0);
+        lhsNode.put("type", jmmNode.get("type"));
+        lhsNode.put("topLevel", "true");
+
+        visit(lhsNode, unused, lhs -> {
+            var type = toType(jmmNode.get("type"));
+            var operator = new Operation(toOperationType(jmmNode.get("op").substring(0, 1)), type);
+            var one = new LiteralElement("1", type);
+
+            var temp = new Operand(getNextTemp(), type);
+            emitAssign(temp, type, lhs);
+
+            if (lhs instanceof GetFieldInstruction getField) {
+                var temp2 = new Operand(getNextTemp(), type);
+                emitAssign(temp2, type, new BinaryOpInstruction(copy(temp), operator, one));
+                emit(putField(getField, temp2));
+            } else {
+                emitAssign(value(lhs), type, new BinaryOpInstruction(copy(temp), operator, one));
+            }
+
+            result.accept(new SingleOpInstruction(copy(temp)));
+        });
+    }
+
+    private void visitUnaryPreOp(JmmNode jmmNode, Void unused, Consumer<Instruction> result) {
+        var rhsNode = jmmNode.getJmmChild(0);
+        rhsNode.put("type", jmmNode.get("type"));
+
+        var type = toType(jmmNode.get("type"));
+        var op = jmmNode.get("op");
+
+        // ++ and -- are special boys
+        if (op.length() == 2 && op.charAt(0) == op.charAt(1)) {
+            rhsNode.put("topLevel", "true");
+
+            visit(rhsNode, unused, rhs -> {
+                var operator = new Operation(toOperationType(op.substring(1)), type);
+                var one = new LiteralElement("1", type);
+
+                if (rhs instanceof GetFieldInstruction getField) {
+                    var temp = new Operand(getNextTemp(), type);
+                    emitAssign(temp, type, rhs);
+                    emitAssign(temp, type, new BinaryOpInstruction(copy(temp), operator, one));
+                    emit(putField(getField, temp));
+                    result.accept(new SingleOpInstruction(copy(temp)));
+                } else {
+                    var variable = value(rhs);
+                    emitAssign(variable, type, new BinaryOpInstruction(copy(variable), operator, one));
+                    result.accept(new SingleOpInstruction(copy(variable)));
+                }
+            });
+            return;
+        }
+
+        visitValue(rhsNode, rhs -> {
+            var operator = new Operation(toOperationType(op), type);
+
+            var line = op.equals("-") || op.equals("+")
+                    ? new BinaryOpInstruction(new LiteralElement("0", new Type(ElementType.INT32)), operator, rhs)
+                    : new UnaryOpInstruction(operator, rhs);
+
+            result.accept(temp(jmmNode, type, line));
+        });
+    }
+
+    private void visitBinaryOp(JmmNode jmmNode, Void unused, Consumer<Instruction> result) {
+        var lhsNode = jmmNode.getJmmChild(0);
+        var rhsNode = jmmNode.getJmmChild(1);
+
+        var type = commonType(lhsNode.get("type"), rhsNode.get("type"));
+        lhsNode.put("type", type);
+        rhsNode.put("type", type);
+
+        visitValue(lhsNode, lhs -> visitValue(rhsNode, rhs -> {
+            var ollirType = toType(jmmNode.get("type"));
+            var operator = new Operation(toOperationType(jmmNode.get("op")), ollirType);
+
+            result.accept(temp(jmmNode, ollirType, new BinaryOpInstruction(lhs, operator, rhs)));
+        }));
+    }
+
+    protected void visitTernaryOp(JmmNode node, Void unused, Consumer<Instruction> result) {
+        visitValue(node.getJmmChild(0), condition -> {
+            var ifLabels = getNextIfLabels();
+            var type = toType(node.get("type"));
+            var temp = new Operand(getNextTemp(), type);
+
+            emitBranchIfNot(condition, ifLabels[0]);
+
+            var lhsNode = node.getJmmChild(1);
+            lhsNode.put("topLevel", "true");
+
+            visit(lhsNode, unused, lhs -> {
+                emitAssign(temp, type, lhs);
+
+                emitGoto(ifLabels[1]);
+                emitLabel(ifLabels[0]);
+
+                var rhsNode = node.getJmmChild(2);
+                rhsNode.put("topLevel", "true");
+
+                visit(rhsNode, unused, rhs -> {
+                    emitAssign(temp, type, rhs);
+
+                    emitLabel(ifLabels[1]);
+
+                    result.accept(new SingleOpInstruction(copy(temp)));
+                });
+            });
+        });
+    }
+
+    protected void visitAssignment(JmmNode node, Void unused, Consumer<Instruction> result) {
+        var lhsNode = node.getJmmChild(0);
+        var rhsNode = node.getJmmChild(1);
+        var operator = node.get("op").substring(0, node.get("op").length() - 1);
+        var type = toOllirType(commonType(lhsNode.get("type"), rhsNode.get("type")));
+        var ollirType = toType(type);
+
+        lhsNode.put("type", type);
+        rhsNode.put("type", type);
+
+        lhsNode.put("topLevel", "true");
+
+        visit(lhsNode, unused, lhs -> {
+            if (lhs instanceof GetFieldInstruction getField) {
+                if (!operator.isEmpty()) {
+                    var temp1 = new Operand(getNextTemp(), ollirType);
+                    emitAssign(temp1, ollirType, getField);
+
+                    var temp2 = new Operand(getNextTemp(), ollirType);
+
+                    visitValue(rhsNode, rhs -> {
+                        emitAssign(temp2, ollirType, new BinaryOpInstruction(copy(temp1), new Operation(toOperationType(operator), ollirType), rhs));
+
+                        putField(node, getField, temp2, result);
+                    });
+                } else {
+                    visitValue(rhsNode, value -> putField(node, getField, value, result));
+                }
+
+                return;
+            }
+
+            if (operator.isEmpty())
+                rhsNode.put("topLevel", "true");
+
+            visit(rhsNode, unused, rhs -> {
+                var dest = value(lhs);
+
+                if (operator.isEmpty())
+                    emitAssign(dest, ollirType, rhs);
+                else
+                    emitAssign(dest, ollirType, new BinaryOpInstruction(copy(dest), new Operation(toOperationType(operator), ollirType), value(rhs)));
+
+                if (isNewObject(rhs))
+                    emitInvokeSpecialInit(dest);
+
+                result.accept(node.getOptional("topLevel").isPresent() ? null : new SingleOpInstruction(copy(dest)));
+            });
+        });
+    }
+
+    /**
+     * Stores the value in the field read by the given instruction, handing on the store itself if the assignment is at
+     * the top level, or the stored value otherwise.
+     */
+    private void putField(JmmNode node, GetFieldInstruction getField, Element value, Consumer<Instruction> result) {
+        var putField = putField(getField, value);
+
+        if (node.getOptional("topLevel").isPresent()) {
+            result.accept(putField);
+            return;
+        }
+
+        emit(putField);
+        result.accept(new SingleOpInstruction(copy(value)));
+    }
+
+    protected Instruction visitLiteral(JmmNode node, Void unused) {
+        var type = toOllirType(node.get("type"));
+        var value = node.get("value");
+
+        if (value.equals("null"))
+            return new SingleOpInstruction(new Operand("null", toType(type)));
+
+        return switch (type) {
+            case "String" -> {
+                var stringType = new Type(ElementType.STRING);
+                var line = new CallInstruction(CallType.ldc, new LiteralElement(value, stringType), stringType);
+
+                yield temp(node, new Type(ElementType.STRING), line);
+            }
+
+            case "bool" -> new SingleOpInstruction(new LiteralElement(value.equals("true") ? "1" : "0", new Type(ElementType.BOOLEAN)));
+
+            case "char" -> new SingleOpInstruction(new LiteralElement(String.valueOf((int) value.charAt(value.length() - 1)), new Type(ElementType.INT32)));
+
+            default -> new SingleOpInstruction(new LiteralElement(value.split("\\.")[0], toType(type)));
+        };
+    }
+
+    private Instruction visitVariable(pt.up.fe.comp2023.analysis.Method methodSymbol, String id) {
+        var variable = methodSymbol.getLocalVariable(id);
+        if (variable != null)
+            return new SingleOpInstruction(new Operand(id, toType(variable.getType().print())));
+
+        var parameter = methodSymbol.getParameter(id);
+        if (parameter != null) {
+            var operand = new Operand(id, toType(parameter.getType().print()));
+            operand.setParamId(methodSymbol.getParameterPosition(id) + 1);
+            return new SingleOpInstruction(operand);
+        }
+
+        return null;
+    }
+
+    protected Instruction visitIdentifier(JmmNode node, Void unused) {
+        var id = node.get("id");
+        var methodNode = enclosing.getMethod(node);
+
+        if (methodNode != null) {
+            var methodName = methodNode.getKind().equals("MethodDeclaration") ? methodNode.get("methodName") : "<constructor>";
+            var variable = visitVariable(table.getMethod(methodName), id);
+            if (variable != null)
+                return variable;
+        }
+
+        var field = table.getField(id);
+        if (field != null) {
+            var type = toType(field.getType().print());
+            var _this = new Operand("this", new ClassType(ElementType.THIS, table.getClassName()));
+
+            return temp(node, type, new GetFieldInstruction(_this, new Operand(id, type), type));
+        }
+
+        // Anything else names a class, used as the target of a static call
+        return new SingleOpInstruction(new Operand(id, new ClassType(ElementType.CLASS, id)));
+    }
+
+    protected Instruction visitThis(JmmNode node, Void unused) {
+        return new SingleOpInstruction(new Operand("this", new ClassType(ElementType.OBJECTREF, table.getClassName())));
+    }
+}
@@ -0,0 +1,209 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a {@link ClassUnit} back as OLLIR code, which the OLLIR parser reads back into the same class.
+ * Only used to show the intermediate representation, the compiler itself never goes through the text.
+ */
+public class OllirPrinter {
+
+    public static String print(ClassUnit ollirClass) {
+        var sb = new StringBuilder();
+
+        for (var _import : ollirClass.getImports())
+            sb.append("import ").append(_import).append(";\n");
+
+        sb.append(modifiers(ollirClass.getClassAccessModifier(), ollirClass.isStaticClass(), ollirClass.isFinalClass()));
+        sb.append(ollirClass.getClassName());
+        if (ollirClass.getSuperClass() != null)
+            sb.append(" extends ").append(ollirClass.getSuperClass());
+        sb.append(" {\n");
+
+        for (var field : ollirClass.getFields()) {
+            sb.append("    .field ")
+                    .append(modifiers(field.getFieldAccessModifier(), field.isStaticField(), field.isFinalField()))
+                    .append(field.getFieldName()).append(".").append(toOllirType(field.getFieldType()));
+            if (field.isInitialized())
+                sb.append(" = ").append(field.getInitialValue());
+            sb.append(";\n");
+        }
+
+        for (var method : ollirClass.getMethods())
+            printMethod(method, sb);
+
+        return sb.append("}\n").toString();
+    }
+
+    private static void printMethod(Method method, StringBuilder sb) {
+        sb.append(method.isConstructMethod() ? "    .construct " : "    .method ")
+                .append(modifiers(method.getMethodAccessModifier(), method.isStaticMethod(), method.isFinalMethod()))
+                .append(method.getMethodName())
+                .append("(")
+                .append(method.getParams().stream()
+                        .map(param -> ((Operand) param).getName() + "." + toOllirType(param.getType()))
+                        .collect(Collectors.joining(", ")))
+                .append(").").append(toOllirType(method.getReturnType())).append(" {\n");
+
+        // Method.getLabels(Instruction) caches its result, which would go stale if the method is optimized afterwards
+        var labels = new HashMap<Instruction, List<String>>();
+        method.getLabels().forEach((label, instruction) -> labels.computeIfAbsent(instruction, k -> new ArrayList<>()).add(label));
+
+        for (var instruction : method.getInstructions()) {
+            for (var label : labels.getOrDefault(instruction, List.of()))
+                sb.append("    ").append(label).append(":\n");
+
+            sb.append("        ").append(toOllirStatement(instruction)).append(";\n");
+        }
+
+        sb.append("    }\n");
+    }
+
+    private static String modifiers(AccessModifiers access, boolean isStatic, boolean isFinal) {
+        var sb = new StringBuilder();
+
+        if (access != AccessModifiers.DEFAULT)
+            sb.append(access.name().toLowerCase()).append(" ");
+        if (isStatic)
+            sb.append("static ");
+        if (isFinal)
+            sb.append("final ");
+
+        return sb.toString();
+    }
+
+    /**
+     * @return the given instruction as a whole line of OLLIR code, without the semicolon
+     */
+    public static String toOllirStatement(Instruction instruction) {
+        if (instruction instanceof CondBranchInstruction branch)
+            return "if (" + toOllir(branch.getCondition()) + ") goto " + branch.getLabel();
+
+        if (instruction instanceof GotoInstruction _goto)
+            return "goto " + _goto.getLabel();
+
+        if (instruction instanceof ReturnInstruction ret)
+            return "ret." + toOllirType(ret.getReturnType()) + (ret.hasReturnValue() ? " " + toOllir(ret.getOperand()) : "");
+
+        if (instruction instanceof AssignInstruction assign)
+            return toOllir(assign.getDest()) + " :=." + toOllirType(assign.getTypeOfAssign()) + " " + toOllir(assign.getRhs());
+
+        return toOllir(instruction);
+    }
+
+    /**
+     * @return the given instruction as an OLLIR expression, as found in the right-hand side of an assignment
+     */
+    public static String toOllir(Instruction instruction) {
+        if (instruction instanceof SingleOpInstruction singleOp)
+            return toOllir(singleOp.getSingleOperand());
+
+        if (instruction instanceof UnaryOpInstruction unaryOp)
+            return toOllir(unaryOp.getOperation()) + " " + toOllir(unaryOp.getOperand());
+
+        if (instruction instanceof BinaryOpInstruction binaryOp)
+            return toOllir(binaryOp.getLeftOperand()) + " " + toOllir(binaryOp.getOperation()) + " " + toOllir(binaryOp.getRightOperand());
+
+        if (instruction instanceof GetFieldInstruction getField)
+            return "getfield(" + toOllir(getField.getFirstOperand()) + ", " + toOllir(getField.getSecondOperand()) + ")."
+                    + toOllirType(getField.getFieldType());
+
+        if (instruction instanceof PutFieldInstruction putField)
+            return "putfield(" + toOllir(putField.getFirstOperand()) + ", " + toOllir(putField.getSecondOperand()) + ", "
+                    + toOllir(putField.getThirdOperand()) + ")." + toOllirType(putField.getFieldType());
+
+        if (instruction instanceof CallInstruction call)
+            return toOllir(call);
+
+        return toOllirStatement(instruction);
+    }
+
+    private static String toOllir(CallInstruction call) {
+        var first = call.getFirstArg();
+        var returnType = "." + toOllirType(call.getReturnType());
+
+        return switch (call.getInvocationType()) {
+            case NEW -> "new(" + (first.getType() instanceof ArrayType ? "array" : ((Operand) first).getName())
+                    + toOllirArguments(call.getListOfOperands()) + ")" + returnType;
+            case arraylength -> "arraylength(" + toOllir(first) + ")" + returnType;
+            case ldc -> "ldc(" + ((LiteralElement) first).getLiteral() + ")" + returnType;
+            default -> call.getInvocationType() + "(" + toOllir(first) + ", " + ((LiteralElement) call.getSecondArg()).getLiteral()
+                    + toOllirArguments(call.getListOfOperands()) + ")" + returnType;
+        };
+    }
+
+    private static String toOllirArguments(List<Element> arguments) {
+        return arguments.stream().map(argument -> ", " + toOllir(argument)).collect(Collectors.joining());
+    }
+
+    private static String toOllir(Operation operation) {
+        var symbol = switch (operation.getOpType()) {
+            case ADD -> "+";
+            case SUB -> "-";
+            case MUL -> "*";
+            case DIV -> "/";
+            case SHR -> ">>";
+            case SHL -> "<<";
+            case SHRR -> ">>>";
+            case XOR -> "^";
+            case AND -> "&";
+            case OR -> "|";
+            case LTH -> "<";
+            case GTH -> ">";
+            case EQ -> "==";
+            case NEQ -> "!=";
+            case LTE -> "<=";
+            case GTE -> ">=";
+            case ANDB -> "&&";
+            case ORB -> "||";
+            case NOTB -> "!";
+            case NOT -> "~";
+        };
+
+        return symbol + "." + toOllirType(operation.getTypeInfo());
+    }
+
+    public static String toOllir(Element element) {
+        if (element instanceof LiteralElement literal)
+            return literal.getLiteral() + "." + toOllirType(element.getType());
+
+        var operand = (Operand) element;
+        var sb = new StringBuilder();
+
+        if (operand.isParameter())
+            sb.append("$").append(operand.getParamId()).append(".");
+
+        sb.append(operand.getName());
+
+        if (operand instanceof ArrayOperand arrayOperand)
+            for (var index : arrayOperand.getIndexOperands())
+                sb.append("[").append(toOllir(index)).append("]");
+
+        // Classes used as the target of a static call are written by name only
+        if (operand.getType().getTypeOfElement() != ElementType.CLASS)
+            sb.append(".").append(toOllirType(operand.getType()));
+
+        return sb.toString();
+    }
+
+    public static String toOllirType(Type type) {
+        if (type instanceof ArrayType arrayType)
+            return "array.".repeat(arrayType.getNumDimensions()) + toOllirType(arrayType.getElementType());
+
+        if (type instanceof ClassType classType)
+            return classType.getName();
+
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "i32";
+            case BOOLEAN -> "bool";
+            case STRING -> "String";
+            case VOID -> "V";
+            default -> type.getTypeOfElement().name();
+        };
+    }
+}
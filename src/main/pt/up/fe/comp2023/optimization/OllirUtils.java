@@ -1,72 +1,58 @@
 package pt.up.fe.comp2023.optimization;
 
+import org.specs.comp.ollir.ArrayType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.ElementType;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2023.JmmType;
 
 public class OllirUtils {
-    private static int temporaryVarCounter = 0;
-    private static int ifLabelCounter = 0;
-    private static int whileLabelCounter = 0;
-    private static int doWhileLabelCounter = 0;
-    private static int forLabelCounter = 0;
-    private static int forEachLabelCounter = 0;
-    private static int switchLabelCounter = 0;
-
-    public static String getNextTemp() {
-        return "__temp__" + temporaryVarCounter++;
+    public static String toOllirType(Type type) {
+        return toOllirType(type.print());
     }
 
-    public static String[] getNextIfLabels() {
-        return new String[] { "__else__" + ifLabelCounter, "__endif__" + ifLabelCounter++ };
+    public static String toOllirType(String type) {
+        return JmmType.of(type).getOllirType();
     }
 
-    public static String[] getNextWhileLabels() {
-        return new String[] { "__while__" + whileLabelCounter, "__endwhile__" + whileLabelCounter++ };
+    public static String toOllirSymbol(Symbol symbol) {
+        return symbol.getName() + "." + toOllirType(symbol.getType());
     }
 
-    public static String[] getNextDoWhileLabels() {
-        return new String[] { "__dowhile__" + doWhileLabelCounter, "__enddowhile__" + doWhileLabelCounter++ };
+    /**
+     * Builds the OLLIR type of the given JMM or OLLIR type name, the same way the OLLIR parser would for its textual
+     * form. A new instance is returned every time, as the parser never shares types between elements.
+     */
+    public static org.specs.comp.ollir.Type toType(String type) {
+        return toType(JmmType.of(type));
     }
 
-    public static String[] getNextForLabels() {
-        return new String[] { "__for__" + forLabelCounter, "__endfor__" + forLabelCounter++ };
-    }
+    public static org.specs.comp.ollir.Type toType(JmmType jmmType) {
+        var ollirType = jmmType.getOllirElementType();
+        var dimensions = jmmType.getOllirDimensions();
 
-    public static String[] getNextForEachLabels() {
-        return new String[] {
-            "__foreach__" + forEachLabelCounter,
-            "__endforeach__" + forEachLabelCounter,
-            "__foreacharray__" + forEachLabelCounter,
-            "__foreachlength__" + forEachLabelCounter,
-            "__foreachindex__" + forEachLabelCounter++
+        var elementType = switch (ollirType) {
+            case "i32" -> ElementType.INT32;
+            case "bool" -> ElementType.BOOLEAN;
+            case "String" -> ElementType.STRING;
+            case "V" -> ElementType.VOID;
+            case "*" -> throw new IllegalStateException("Could not infer a type for OLLIR");
+            default -> ElementType.OBJECTREF;
         };
-    }
-
-    public static String[] getNextSwitchLabels() {
-        return new String[] { "__switch__" + switchLabelCounter + "_", "__endswitch__" + switchLabelCounter++ };
-    }
 
-    public static String toOllirType(Type type) {
-        return toOllirType(type.print());
-    }
-
-    public static String toOllirType(String type) {
-        StringBuilder s = new StringBuilder();
-
-        while (type.contains("[]")) {
-            s.append("array.");
-            type = type.replace("[]", "");
+        if (dimensions > 0) {
+            var arrayType = new ArrayType();
+            arrayType.setNumDimensions(dimensions);
+            arrayType.setTypeOfElements(elementType);
+            if (elementType == ElementType.OBJECTREF || elementType == ElementType.STRING)
+                arrayType.setElementClass(ollirType);
+            return arrayType;
         }
 
-        return s.append(switch (type) {
-            case "void" -> "V";
-            case "byte", "short", "int", "long", "float", "double", "Integer" -> "i32";
-            case "boolean" -> "bool";
-            default -> type;
-        }).toString();
-    }
+        if (elementType == ElementType.OBJECTREF)
+            return new ClassType(elementType, ollirType);
 
-    public static String toOllirSymbol(Symbol symbol) {
-        return symbol.getName() + "." + toOllirType(symbol.getType());
+        return new org.specs.comp.ollir.Type(elementType);
     }
 }
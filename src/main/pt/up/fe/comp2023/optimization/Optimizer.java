@@ -1,23 +1,65 @@
 package pt.up.fe.comp2023.optimization;
 
+import org.specs.comp.ollir.*;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
-import pt.up.fe.comp.jmm.ast.JmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
-import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.DeferredReport;
+import pt.up.fe.comp2023.IterativeJmmVisitor;
 import pt.up.fe.comp2023.analysis.JmmSymbolTable;
 
-import java.util.Collections;
-import java.util.regex.Pattern;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 public class Optimizer implements JmmOptimization {
-    private final JmmVisitor<?, Boolean>[] visitors = new JmmVisitor[]{
+    private final IterativeJmmVisitor<?, Boolean>[] visitors = new IterativeJmmVisitor[]{
             new ASTSimplificationVisitor(),
             new ConstantFoldingVisitor(),
             new ConstantPropagationVisitor()
     };
+    private int rounds = 0;
+    private long nodeVisits = 0;
+    private long nodeVisitsSaved = 0;
+    private final Executor allocationExecutor;
+
+    public Optimizer() {
+        this(null);
+    }
+
+    /**
+     * @param allocationExecutor where the registers of each method are allocated, or null for the
+     *                           {@link RegisterAllocator#RegisterAllocator() default}
+     */
+    public Optimizer(Executor allocationExecutor) {
+        this.allocationExecutor = allocationExecutor;
+    }
+
+    /**
+     * @return the number of rounds the last AST optimization took to reach a fixpoint, which is the most any member of
+     * the class took
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * @return how many nodes the visitors of the last AST optimization visited
+     */
+    public long getNodeVisits() {
+        return nodeVisits;
+    }
+
+    /**
+     * @return how many fewer nodes the visitors of the last AST optimization visited than if they had visited the whole
+     * tree in every round, assuming the members that reached their fixpoint would not have changed any further
+     */
+    public long getNodeVisitsSaved() {
+        return nodeVisitsSaved;
+    }
 
     @Override
     public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
@@ -25,73 +67,196 @@ public class Optimizer implements JmmOptimization {
             return semanticsResult;
 
         var node = semanticsResult.getRootNode();
+        var members = new ArrayList<JmmNode>();
+        var otherNodes = findMembers(node, members);
+
+        rounds = 0;
+        nodeVisits = 0;
+        nodeVisitsSaved = 0;
 
-        var cont = true;
-        while (cont) {
-            cont = false;
-            for (var visitor : visitors)
-                cont |= visitor.visit(node);
+        // Each member is only visited again while its last round changed it, as no optimization looks outside of the
+        // member it is in
+        var memberRounds = new int[members.size()];
+        var lastRoundVisits = new long[members.size()];
+
+        for (int i = 0; i < members.size(); i++) {
+            var cont = true;
+            while (cont) {
+                memberRounds[i]++;
+                cont = false;
+
+                var visitsBefore = nodeVisits;
+                for (var visitor : visitors) {
+                    var visitedBefore = visitor.getVisitedNodes();
+                    cont |= visitor.visit(members.get(i));
+                    nodeVisits += visitor.getVisitedNodes() - visitedBefore;
+                }
+                lastRoundVisits[i] = nodeVisits - visitsBefore;
+            }
+
+            rounds = Math.max(rounds, memberRounds[i]);
         }
 
-        semanticsResult.getReports().add(new Report(ReportType.DEBUG, Stage.OPTIMIZATION, -1, -1, "Optimized AST:\n" + node.toTree()));
+        // Visiting the whole tree would also have visited the members that were done, and the nodes outside of them
+        rounds = Math.max(rounds, 1);
+        nodeVisitsSaved = (long) rounds * visitors.length * otherNodes;
+        for (int i = 0; i < members.size(); i++)
+            nodeVisitsSaved += (rounds - memberRounds[i]) * lastRoundVisits[i];
+
+        var optimizedTree = DeferredReport.newDebug(Stage.OPTIMIZATION, () -> "Optimized AST:\n" + node.toTree());
+
+        // The OLLIR generation annotates the tree before the launcher prints this report, so it must be rendered now
+        if (Boolean.parseBoolean(semanticsResult.getConfig().get("debug")))
+            optimizedTree.getMessage();
+
+        semanticsResult.getReports().add(optimizedTree);
 
         return JmmOptimization.super.optimize(semanticsResult);
     }
 
+    /**
+     * Adds the field, method and constructor declarations of the tree to the list.
+     *
+     * @return the number of nodes outside of them
+     */
+    private static int findMembers(JmmNode root, List<JmmNode> members) {
+        var otherNodes = 0;
+        var stack = new ArrayDeque<JmmNode>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            var node = stack.pop();
+
+            switch (node.getKind()) {
+                case "FieldDeclaration", "MethodDeclaration", "ConstructorDeclaration" -> members.add(node);
+                default -> {
+                    otherNodes++;
+
+                    var children = node.getChildren();
+                    for (int i = children.size() - 1; i >= 0; i--)
+                        stack.push(children.get(i));
+                }
+            }
+        }
+
+        return otherNodes;
+    }
+
     @Override
     public OllirResult toOllir(JmmSemanticsResult jmmSemanticsResult) {
-        OllirVisitor ollirVisitor = new OllirVisitor(((JmmSymbolTable) jmmSemanticsResult.getSymbolTable()));
-        ollirVisitor.visit(jmmSemanticsResult.getRootNode(), 0);
+        OllirBuilder ollirBuilder = new OllirBuilder(((JmmSymbolTable) jmmSemanticsResult.getSymbolTable()));
+        ollirBuilder.visit(jmmSemanticsResult.getRootNode());
 
-        String ollirResult = ollirVisitor.getOllirCode();
-        var reports = ollirVisitor.getReports();
+        var ollirClass = ollirBuilder.getOllirClass();
+        var reports = ollirBuilder.getReports();
 
-        reports.add(new Report(ReportType.DEBUG, Stage.OPTIMIZATION, -1, -1, "Generated OLLIR:\n" + ollirResult));
+        reports.add(DeferredReport.newDebug(Stage.OPTIMIZATION, () -> "Generated OLLIR:\n" + OllirPrinter.print(ollirClass)));
 
-        return new OllirResult(jmmSemanticsResult, ollirResult, reports);
+        return new ClassUnitResult(jmmSemanticsResult, ollirClass, reports);
     }
 
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
+        return allocateRegisters(optimizeOllir(ollirResult));
+    }
+
+    public OllirResult allocateRegisters(OllirResult ollirResult) {
         int maxRegsAllowed = Integer.parseInt(ollirResult.getConfig().getOrDefault("registerAllocation", "-1"));
 
-        if (maxRegsAllowed >= 0) {
-            try {
-                ollirResult = new RegisterAllocator().optimizeRegisters(ollirResult);
-            } catch (IllegalStateException e) {
-                ollirResult.getReports().add(new Report(ReportType.ERROR, Stage.OPTIMIZATION, -1, -1, "Register limit exceeded"));
-            }
-        }
+        if (maxRegsAllowed >= 0)
+            ollirResult = allocationExecutor == null
+                    ? new RegisterAllocator().optimizeRegisters(ollirResult)
+                    : new RegisterAllocator(allocationExecutor).optimizeRegisters(ollirResult);
 
+        return ollirResult;
+    }
+
+    /**
+     * Replaces every comparison that is stored only to be negated by a branch with a branch on the inverse comparison.
+     * The OLLIR class is changed in place.
+     */
+    public OllirResult optimizeOllir(OllirResult ollirResult) {
         if (!Boolean.parseBoolean(ollirResult.getConfig().get("optimize")))
             return ollirResult;
 
-        var code = ollirResult.getOllirCode();
-        var newCode = new StringBuilder();
+        // The generated OLLIR is about to change, so it must be printed now
+        if (Boolean.parseBoolean(ollirResult.getConfig().get("debug")))
+            for (var report : ollirResult.getReports())
+                report.getMessage();
+
+        var ollirClass = ollirResult.getOllirClass();
 
-        var ifPattern = Pattern.compile("(\\w+\\.bool)\\s*:=\\.bool\\s*(\\w+\\.\\w+\\s*(<|>|==|!=|<=|>=)\\.bool\\s*\\w+\\.\\w+);\\n\\s*if\\s*\\(!\\.bool\\s*\\1\\)");
-        var ifMatcher = ifPattern.matcher(code);
+        for (var method : ollirClass.getMethods())
+            if (invertBranches(method)) {
+                method.getVarTable().clear();
+                method.buildVarTable();
+            }
+
+        ollirResult.getReports().add(DeferredReport.newDebug(Stage.OPTIMIZATION, () -> "Optimized OLLIR:\n" + OllirPrinter.print(ollirClass)));
+
+        return ollirResult;
+    }
+
+    private boolean invertBranches(Method method) {
+        var instructions = method.getInstructions();
+        var labels = method.getLabels();
+        var changed = false;
+
+        for (int i = 0; i + 1 < instructions.size(); i++) {
+            if (!(instructions.get(i) instanceof AssignInstruction assign)
+                    || !(instructions.get(i + 1) instanceof OpCondInstruction branch))
+                continue;
 
-        while (ifMatcher.find()) {
-            var condition = ifMatcher.group(2);
-            var op = ifMatcher.group(3);
+            if (!(assign.getDest() instanceof Operand dest) || dest instanceof ArrayOperand || dest.isParameter()
+                    || dest.getType().getTypeOfElement() != ElementType.BOOLEAN)
+                continue;
 
-            condition = switch (op) {
-                case "<" -> condition.replace("<", ">=");
-                case ">" -> condition.replace(">", "<=");
-                case "==" -> condition.replace("==", "!=");
-                case "!=" -> condition.replace("!=", "==");
-                case "<=" -> condition.replace("<=", ">");
-                case ">=" -> condition.replace(">=", "<");
-                default -> condition;
+            if (!(assign.getRhs() instanceof BinaryOpInstruction comparison)
+                    || !isSimpleOperand(comparison.getLeftOperand()) || !isSimpleOperand(comparison.getRightOperand()))
+                continue;
+
+            var inverse = switch (comparison.getOperation().getOpType()) {
+                case LTH -> OperationType.GTE;
+                case GTH -> OperationType.LTE;
+                case EQ -> OperationType.NEQ;
+                case NEQ -> OperationType.EQ;
+                case LTE -> OperationType.GTH;
+                case GTE -> OperationType.LTH;
+                default -> null;
             };
 
-            ifMatcher.appendReplacement(newCode, "if (" + condition + ")");
+            if (inverse == null
+                    || !(branch.getCondition() instanceof UnaryOpInstruction negation)
+                    || negation.getOperation().getOpType() != OperationType.NOTB
+                    || !(negation.getOperand() instanceof Operand negated)
+                    || negated instanceof ArrayOperand || negated.isParameter()
+                    || !negated.getName().equals(dest.getName())
+                    || negated.getType().getTypeOfElement() != ElementType.BOOLEAN
+                    || labels.containsValue(branch))
+                continue;
+
+            var operation = new Operation(inverse, comparison.getOperation().getTypeInfo());
+            var inverted = new OpCondInstruction(new BinaryOpInstruction(comparison.getLeftOperand(), operation, comparison.getRightOperand()));
+            inverted.setLabel(branch.getLabel());
+
+            labels.replaceAll((label, instruction) -> instruction == assign ? inverted : instruction);
+            instructions.remove(i + 1);
+            instructions.set(i, inverted);
+            changed = true;
         }
-        ifMatcher.appendTail(newCode);
 
-        ollirResult.getReports().add(new Report(ReportType.DEBUG, Stage.OPTIMIZATION, -1, -1, "Optimized OLLIR:\n" + newCode));
+        return changed;
+    }
+
+    /**
+     * @return whether the given element is a variable or a non-negative number, the only operands the comparison of
+     * an inverted branch may have
+     */
+    private static boolean isSimpleOperand(Element element) {
+        if (element instanceof LiteralElement literal)
+            return !literal.getLiteral().startsWith("-");
 
-        return new OllirResult(new JmmSemanticsResult(null, ollirResult.getSymbolTable(), Collections.emptyList(), ollirResult.getConfig()), newCode.toString(), ollirResult.getReports());
+        return element instanceof Operand operand && !(operand instanceof ArrayOperand) && !operand.isParameter()
+                && !(operand.getType() instanceof ArrayType);
     }
 }
@@ -2,88 +2,250 @@ package pt.up.fe.comp2023.optimization;
 
 import org.specs.comp.ollir.*;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.Metrics;
 import pt.up.fe.specs.util.graphs.Graph;
 
 import javax.swing.tree.TreeNode;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 public class RegisterAllocator {
+    // classes with fewer methods than this, counting the constructor, are not worth splitting between threads
+    private static final int PARALLEL_METHODS_THRESHOLD = 4;
+
     private static class Node {
-        Set<String> defs = new HashSet<>();
-        Set<String> uses = new HashSet<>();
-        Set<String> ins = new HashSet<>();
-        Set<String> outs = new HashSet<>();
+        final BitSet defs = new BitSet();
+        final BitSet uses = new BitSet();
+        final BitSet ins = new BitSet();
+        final BitSet outs = new BitSet();
     }
 
-    public OllirResult optimizeRegisters(OllirResult ollirResult) {
-        ClassUnit ollirClass = ollirResult.getOllirClass();
+    /**
+     * The variables of a method, numbered in the order they first appear in, so the sets of variables can be bit sets.
+     */
+    private static class Variables {
+        final List<String> names = new ArrayList<>();
+        final Map<String, Integer> indices = new HashMap<>();
+
+        int indexOf(String name) {
+            return indices.computeIfAbsent(name, n -> {
+                names.add(n);
+                return names.size() - 1;
+            });
+        }
+    }
 
-        for (Method method : ollirClass.getMethods()) {
-            var nodes = parseVariables(method);
-            var graph = buildInterferenceGraph(nodes);
-            var colorMap = colorGraph(graph);
+    /**
+     * The variables left in the interference graph, in a linked list for each degree, so both finding the one with the
+     * fewest neighbors and moving one when a neighbor is removed take constant time.
+     */
+    private static class DegreeBuckets {
+        private final int[] heads;
+        private final int[] next;
+        private final int[] previous;
+        private final int[] degrees;
+        private int minDegree = 0;
+
+        DegreeBuckets(int size) {
+            heads = new int[size + 1];
+            next = new int[size];
+            previous = new int[size];
+            degrees = new int[size];
+            Arrays.fill(heads, -1);
+        }
 
-            int maxRegsAllowed = Integer.parseInt(ollirResult.getConfig().get("registerAllocation"));
-            var colors = new TreeSet<>(colorMap.values());
-            if (maxRegsAllowed > 0 && colors.size() > maxRegsAllowed)
-                throw new IllegalStateException("More regs than supposed");
+        void add(int variable, int degree) {
+            degrees[variable] = degree;
+            link(variable);
+            minDegree = Math.min(minDegree, degree);
+        }
 
-            replaceWithRegisters(method, colorMap);
+        void decrement(int variable) {
+            unlink(variable);
+            add(variable, degrees[variable] - 1);
         }
 
-        return ollirResult;
+        int removeMin() {
+            while (heads[minDegree] == -1)
+                minDegree++;
+
+            int variable = heads[minDegree];
+            unlink(variable);
+            return variable;
+        }
+
+        private void link(int variable) {
+            int head = heads[degrees[variable]];
+            next[variable] = head;
+            previous[variable] = -1;
+            if (head != -1)
+                previous[head] = variable;
+            heads[degrees[variable]] = variable;
+        }
+
+        private void unlink(int variable) {
+            if (previous[variable] == -1)
+                heads[degrees[variable]] = next[variable];
+            else
+                next[previous[variable]] = next[variable];
+
+            if (next[variable] != -1)
+                previous[next[variable]] = previous[variable];
+        }
     }
 
+    private final Executor executor;
 
-    private List<Node> parseVariables(Method method) {
-        List<Node> nodes = new ArrayList<>();
+    /**
+     * Allocates the registers of each method in the pool of the current task, or in the common pool outside one.
+     */
+    public RegisterAllocator() {
+        this(Objects.requireNonNullElseGet(ForkJoinTask.getPool(), ForkJoinPool::commonPool));
+    }
 
-        // Create empty sets for live-ins and live-outs of instructions
-        Map<Instruction, Set<String>> liveIns = new HashMap<>();
-        Map<Instruction, Set<String>> liveOuts = new HashMap<>();
+    /**
+     * @param executor where the registers of each method are allocated
+     */
+    public RegisterAllocator(Executor executor) {
+        this.executor = executor;
+    }
 
-        // Initialize live-ins and live-outs with empty sets for all instructions
-        for (Instruction instruction : method.getInstructions()) {
-            liveIns.put(instruction, new HashSet<>());
-            liveOuts.put(instruction, new HashSet<>());
+    /**
+     * Allocates the registers of every method of the class at the same time, unless the class has only a few methods,
+     * or the metrics of the compilation are collected, which only count the calling thread.
+     * Each method that needs more registers than allowed keeps its variables as they were, and gets an error report.
+     */
+    public OllirResult optimizeRegisters(OllirResult ollirResult) {
+        ClassUnit ollirClass = ollirResult.getOllirClass();
+        int maxRegsAllowed = Integer.parseInt(ollirResult.getConfig().get("registerAllocation"));
+
+        var methods = ollirClass.getMethods();
+        Executor executor = methods.size() >= PARALLEL_METHODS_THRESHOLD && !Metrics.isEnabled(ollirResult.getConfig())
+                ? this.executor
+                : Runnable::run;
+
+        var allocations = methods.stream()
+                .map(method -> CompletableFuture.supplyAsync(() -> optimizeRegisters(method, maxRegsAllowed), executor))
+                .toList();
+
+        // the reports are added in the order the methods are declared, not the order they finish in
+        for (var allocation : allocations) {
+            try {
+                allocation.join().ifPresent(ollirResult.getReports()::add);
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause)
+                    throw cause;
+                throw e;
+            }
         }
 
-        // Perform the live-in/live-out analysis iteratively until convergence
-        boolean changed;
-        do {
-            changed = false;
-            for (Instruction instruction : method.getInstructions()) {
-                Set<String> oldLiveIn = new HashSet<>(liveIns.get(instruction));
-                Set<String> oldLiveOut = new HashSet<>(liveOuts.get(instruction));
+        return ollirResult;
+    }
+
+    private Optional<Report> optimizeRegisters(Method method, int maxRegsAllowed) {
+        var variables = new Variables();
+        var nodes = parseVariables(method, variables);
 
-                // Compute live-in
-                Set<String> liveIn = new HashSet<>(getUses(instruction));
-                liveIn.addAll(SetUtils.difference(liveOuts.get(instruction), getDefs(instruction)));
+        // this and the parameters are passed in the first registers, so they keep them and only the locals are colored
+        var reserved = new BitSet();
+        for (var name : getReservedVariables(method))
+            if (variables.indices.containsKey(name))
+                reserved.set(variables.indices.get(name));
+        int firstLocal = method.getParams().size() + (method.isStaticMethod() ? 0 : 1);
 
-                // Compute live-out
-                Set<String> liveOut = new HashSet<>();
-                for (var successor : instruction.getSuccessors())
-                    liveOut.addAll(liveIns.get((Instruction) successor));
+        var graph = buildInterferenceGraph(nodes, variables.names.size(), reserved);
+        var colors = colorGraph(graph, reserved);
 
-                liveIns.put(instruction, liveIn);
-                liveOuts.put(instruction, liveOut);
+        int neededRegs = firstLocal + Arrays.stream(colors).max().orElse(-1) + 1;
+        if (maxRegsAllowed > 0 && neededRegs > maxRegsAllowed)
+            return Optional.of(new Report(ReportType.ERROR, Stage.OPTIMIZATION, -1, -1,
+                    "Method " + method.getMethodName() + " needs " + neededRegs + " registers, but only "
+                            + maxRegsAllowed + " are allowed"));
 
-                if (!oldLiveIn.equals(liveIn) || !oldLiveOut.equals(liveOut))
-                    changed = true;
-            }
-        } while (changed);
+        replaceWithRegisters(method, variables, colors, firstLocal);
 
-        // Create nodes with defs, uses, ins, and outs based on the live-ins and live-outs
-        for (Instruction instruction : method.getInstructions()) {
+        return Optional.empty();
+    }
+
+
+    private Set<String> getReservedVariables(Method method) {
+        Set<String> reserved = new HashSet<>();
+
+        if (!method.isStaticMethod())
+            reserved.add("this");
+
+        for (Element param : method.getParams())
+            if (param instanceof Operand op)
+                reserved.add(op.getName());
+
+        return reserved;
+    }
+
+    private List<Node> parseVariables(Method method, Variables variables) {
+        // the liveness analysis follows the successors of each instruction
+        method.buildCFG();
+
+        var instructions = method.getInstructions();
+        Map<Instruction, Integer> indices = new IdentityHashMap<>();
+        List<Node> nodes = new ArrayList<>(instructions.size());
+
+        // the defs and uses of each instruction are worked out once, before the analysis
+        for (Instruction instruction : instructions) {
             Node node = new Node();
-            node.defs.addAll(getDefs(instruction));
-            node.uses.addAll(getUses(instruction));
-            node.ins.addAll(liveIns.get(instruction));
-            node.outs.addAll(liveOuts.get(instruction));
+            getDefs(instruction).forEach(name -> node.defs.set(variables.indexOf(name)));
+            getUses(instruction).forEach(name -> node.uses.set(variables.indexOf(name)));
+
+            indices.put(instruction, nodes.size());
             nodes.add(node);
         }
 
+        // Liveness flows backwards, so the instructions are first visited from the last one, and after that an
+        // instruction is only visited again when the live-ins of one of its successors grow
+        Deque<Integer> worklist = new ArrayDeque<>();
+        var queued = new BitSet();
+        for (int index = nodes.size() - 1; index >= 0; index--)
+            worklist.add(index);
+        queued.set(0, nodes.size());
+
+        var addedLiveIns = new BitSet();
+        while (!worklist.isEmpty()) {
+            int index = worklist.poll();
+            queued.clear(index);
+
+            var instruction = instructions.get(index);
+            var node = nodes.get(index);
+
+            for (var successor : instruction.getSuccessors())
+                if (successor instanceof Instruction successorInstruction)
+                    node.outs.or(nodes.get(indices.get(successorInstruction)).ins);
+
+            // the live-ins only ever grow, so only the variables that are not live-ins yet need to be propagated
+            addedLiveIns.clear();
+            addedLiveIns.or(node.outs);
+            addedLiveIns.andNot(node.defs);
+            addedLiveIns.or(node.uses);
+            addedLiveIns.andNot(node.ins);
+
+            if (addedLiveIns.isEmpty())
+                continue;
+
+            node.ins.or(addedLiveIns);
+
+            for (var predecessor : instruction.getPredecessors()) {
+                if (predecessor instanceof Instruction predecessorInstruction) {
+                    int predecessorIndex = indices.get(predecessorInstruction);
+                    if (!queued.get(predecessorIndex)) {
+                        queued.set(predecessorIndex);
+                        worklist.add(predecessorIndex);
+                    }
+                }
+            }
+        }
+
         return nodes;
     }
 
@@ -144,20 +306,23 @@ public class RegisterAllocator {
 
 
 
-    private Map<String, Set<String>> buildInterferenceGraph(List<Node> nodes) {
-        Map<String, Set<String>> graph = new HashMap<>();
+    private BitSet[] buildInterferenceGraph(List<Node> nodes, int numVariables, BitSet reserved) {
+        var graph = new BitSet[numVariables];
+        for (int variable = 0; variable < numVariables; variable++)
+            graph[variable] = new BitSet();
 
+        // a variable interferes with every other variable that is live after it is defined
         for (Node node : nodes) {
-            for (var def : SetUtils.union(node.defs, node.uses)) {
-                graph.computeIfAbsent(def, s -> new HashSet<>());
-            }
-
-            var pairs = SetUtils.generateCombinations(node.ins);
-            pairs.addAll(SetUtils.generateCombinations(SetUtils.union(node.outs, node.defs)));
-
-            for (var pair : pairs) {
-                var neighbors = graph.get(pair.get(0));
-                neighbors.add(pair.get(1));
+            for (int def = node.defs.nextSetBit(0); def >= 0; def = node.defs.nextSetBit(def + 1)) {
+                if (reserved.get(def))
+                    continue;
+
+                for (int live = node.outs.nextSetBit(0); live >= 0; live = node.outs.nextSetBit(live + 1)) {
+                    if (live != def && !reserved.get(live)) {
+                        graph[def].set(live);
+                        graph[live].set(def);
+                    }
+                }
             }
         }
 
@@ -165,48 +330,53 @@ public class RegisterAllocator {
     }
 
 
-    private Map<String, Integer> colorGraph(Map<String, Set<String>> graph) {
-        Map<String, Integer> colorMap = new HashMap<>();
-        int numColors = graph.size();
-
-        Deque<String> stack = new ArrayDeque<>();
+    /**
+     * @return the color of each variable, or -1 for the reserved ones
+     */
+    private int[] colorGraph(BitSet[] graph, BitSet reserved) {
+        var removed = (BitSet) reserved.clone();
+        var buckets = new DegreeBuckets(graph.length);
+        for (int variable = removed.nextClearBit(0); variable < graph.length; variable = removed.nextClearBit(variable + 1))
+            buckets.add(variable, graph[variable].cardinality());
+
+        // the node with the fewest neighbors left is removed first, so it is colored last
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int left = graph.length - reserved.cardinality(); left > 0; left--) {
+            int node = buckets.removeMin();
+            removed.set(node);
+            stack.push(node);
+
+            var neighbors = graph[node];
+            for (int neighbor = neighbors.nextSetBit(0); neighbor >= 0; neighbor = neighbors.nextSetBit(neighbor + 1))
+                if (!removed.get(neighbor))
+                    buckets.decrement(neighbor);
+        }
 
-        for (var node : graph.entrySet())
-            if (node.getValue().size() < numColors)
-                stack.push(node.getKey());
+        var colors = new int[graph.length];
+        Arrays.fill(colors, -1);
 
+        // each node gets the lowest color that none of its colored neighbors has
+        var usedColors = new BitSet();
         while (!stack.isEmpty()) {
-            String node = stack.pop();
-            var neighbors = graph.get(node);
-
-            boolean[] usedColors = new boolean[numColors];
-            for (String neighbor : neighbors) {
-                Integer neighborColor = colorMap.get(neighbor);
-                if (neighborColor != null)
-                    usedColors[neighborColor] = true;
-            }
+            int node = stack.pop();
 
-            for (int color = 0; color < numColors; color++) {
-                if (!usedColors[color]) {
-                    colorMap.put(node, color);
-                    break;
-                }
-            }
+            usedColors.clear();
+            var neighbors = graph[node];
+            for (int neighbor = neighbors.nextSetBit(0); neighbor >= 0; neighbor = neighbors.nextSetBit(neighbor + 1))
+                if (colors[neighbor] >= 0)
+                    usedColors.set(colors[neighbor]);
 
-            for (var neighbor : neighbors) {
-                neighbors.remove(node);
-                if (neighbors.size() < numColors)
-                    stack.push(neighbor);
-            }
+            colors[node] = usedColors.nextClearBit(0);
         }
 
-        return colorMap;
+        return colors;
     }
 
-    private void replaceWithRegisters(Method method, Map<String, Integer> colorMap) {
+    private void replaceWithRegisters(Method method, Variables variables, int[] colors, int firstLocal) {
         var varTable = method.getVarTable();
 
-        for (var key : colorMap.keySet())
-            varTable.get(key).setVirtualReg(colorMap.get(key));
+        for (int variable = 0; variable < colors.length; variable++)
+            if (colors[variable] >= 0)
+                varTable.get(variables.names.get(variable)).setVirtualReg(firstLocal + colors[variable]);
     }
-}
\ No newline at end of file
+}
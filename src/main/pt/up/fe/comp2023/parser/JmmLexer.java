@@ -0,0 +1,300 @@
+package pt.up.fe.comp2023.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits Java-- code into the same tokens as the lexer generated from {@code Javamm.g4}, always taking the longest
+ * match. Whitespace and comments are skipped, and the last token is always an {@link Type#EOF}.
+ */
+class JmmLexer {
+
+    enum Type {
+        EOF, MODIFIER, PRIMITIVE_TYPE, LITERAL, ID, OPERATOR,
+        BREAK, CASE, CLASS, CONTINUE, DEFAULT, DO, ELSE, EXTENDS, FOR, IF, IMPORT, NEW, PACKAGE, RETURN, SWITCH, THIS,
+        VOID, WHILE,
+        // keywords that the grammar never uses, but that still cannot be identifiers
+        RESERVED,
+        DOT, SC, COMMA, COLON, QM, LB, RB, LP, RP, LSB, RSB
+    }
+
+    record Token(Type type, String text, int line, int column) {
+    }
+
+    static class LexerException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int line;
+        final int column;
+
+        LexerException(int line, int column, String message) {
+            super(message);
+            this.line = line;
+            this.column = column;
+        }
+    }
+
+    private static final Set<String> MODIFIERS = Set.of("public", "private", "protected", "static", "final", "abstract", "transient", "volatile");
+    private static final Set<String> PRIMITIVE_TYPES = Set.of("boolean", "byte", "char", "double", "float", "int", "long", "short");
+    private static final Set<String> WORD_LITERALS = Set.of("null", "false", "true");
+    private static final Map<String, Type> KEYWORDS = Map.ofEntries(
+            Map.entry("break", Type.BREAK), Map.entry("case", Type.CASE), Map.entry("class", Type.CLASS),
+            Map.entry("continue", Type.CONTINUE), Map.entry("default", Type.DEFAULT), Map.entry("do", Type.DO),
+            Map.entry("else", Type.ELSE), Map.entry("extends", Type.EXTENDS), Map.entry("for", Type.FOR),
+            Map.entry("if", Type.IF), Map.entry("import", Type.IMPORT), Map.entry("new", Type.NEW),
+            Map.entry("package", Type.PACKAGE), Map.entry("return", Type.RETURN), Map.entry("switch", Type.SWITCH),
+            Map.entry("this", Type.THIS), Map.entry("void", Type.VOID), Map.entry("while", Type.WHILE),
+            Map.entry("assert", Type.RESERVED), Map.entry("catch", Type.RESERVED), Map.entry("enum", Type.RESERVED),
+            Map.entry("finally", Type.RESERVED), Map.entry("implements", Type.RESERVED),
+            Map.entry("instanceof", Type.RESERVED), Map.entry("interface", Type.RESERVED),
+            Map.entry("native", Type.RESERVED), Map.entry("super", Type.RESERVED),
+            Map.entry("synchronized", Type.RESERVED), Map.entry("throw", Type.RESERVED),
+            Map.entry("throws", Type.RESERVED), Map.entry("try", Type.RESERVED), Map.entry("const", Type.RESERVED),
+            Map.entry("goto", Type.RESERVED)
+    );
+    // longest first, so the first one that matches is the longest match
+    private static final String[] OPERATORS = {
+            ">>>=",
+            ">>>", "<<=", ">>=",
+            "++", "--", "<<", ">>", ">=", "<=", "==", "!=", "&&", "||", "+=", "-=", "*=", "/=", "%=", "&=", "^=", "|=",
+            "!", "+", "-", "~", "*", "/", "%", ">", "<", "&", "^", "|", "="
+    };
+
+    private final char[] code;
+    private final List<Token> tokens = new ArrayList<>();
+    private int position = 0;
+    private int line = 1;
+    private int column = 0;
+
+    private JmmLexer(String code) {
+        this.code = code.toCharArray();
+    }
+
+    static List<Token> tokenize(String code) {
+        var lexer = new JmmLexer(code);
+        lexer.run();
+        return lexer.tokens;
+    }
+
+    private void run() {
+        while (position < code.length) {
+            var c = code[position];
+
+            if (c == ' ' || c == '\t' || c == '\f' || c == '\n' || c == '\r')
+                advance(1);
+            else if (c == '/' && at(position + 1) == '/')
+                advance(lineCommentLength());
+            else if (c == '/' && at(position + 1) == '*' && blockCommentLength() > 0)
+                advance(blockCommentLength());
+            else if (isIdStart(c))
+                word();
+            else if (isDigit(c) || c == '.' && isDigit(at(position + 1)))
+                add(Type.LITERAL, numberLength());
+            else if (c == '"' || c == '\'')
+                add(Type.LITERAL, quotedLength(c));
+            else
+                symbol(c);
+        }
+
+        tokens.add(new Token(Type.EOF, "<EOF>", line, column));
+    }
+
+    private void word() {
+        var length = 1;
+        while (isIdPart(at(position + length)))
+            length++;
+
+        var word = new String(code, position, length);
+        Type type;
+        if (MODIFIERS.contains(word))
+            type = Type.MODIFIER;
+        else if (PRIMITIVE_TYPES.contains(word))
+            type = Type.PRIMITIVE_TYPE;
+        else if (WORD_LITERALS.contains(word))
+            type = Type.LITERAL;
+        else
+            type = KEYWORDS.getOrDefault(word, Type.ID);
+
+        tokens.add(new Token(type, word, line, column));
+        advance(length);
+    }
+
+    private int numberLength() {
+        var integerDigits = digitsAt(position);
+
+        // INTEGER_LITERAL : '0' | [1-9] DIGIT*
+        var integerLength = integerDigits == 0 ? 0 : code[position] == '0' ? 1 : integerDigits;
+
+        // FLOAT_LITERAL : ( DIGIT+ '.' DIGIT* | DIGIT* '.' DIGIT+ ) ( [eE] DIGIT+ )?
+        var floatLength = 0;
+        if (at(position + integerDigits) == '.') {
+            var fractionDigits = digitsAt(position + integerDigits + 1);
+            if (integerDigits > 0 || fractionDigits > 0) {
+                floatLength = integerDigits + 1 + fractionDigits;
+                var exponent = at(position + floatLength);
+                var exponentDigits = digitsAt(position + floatLength + 1);
+                if ((exponent == 'e' || exponent == 'E') && exponentDigits > 0)
+                    floatLength += 1 + exponentDigits;
+            }
+        }
+
+        return Math.max(integerLength, floatLength);
+    }
+
+    private int quotedLength(char quote) {
+        // a string holds any number of characters, a char exactly one, and either can hold the other's quote
+        var other = quote == '"' ? '\'' : '"';
+        var length = 1;
+
+        for (int characters = 0; ; characters++) {
+            var c = at(position + length);
+
+            if (c == quote && (quote == '"' || characters == 1))
+                return length + 1;
+
+            if (quote == '\'' && characters == 1)
+                throw error("Unterminated character literal");
+
+            if (c == '\\')
+                length += escapeLength(position + length);
+            else if (c == other || c != 0 && c != quote && c != '\\' && c != '\r' && c != '\n' && c != '\f')
+                length++;
+            else
+                throw error(quote == '"' ? "Unterminated string literal" : "Invalid character literal");
+        }
+    }
+
+    private int escapeLength(int start) {
+        var c = at(start + 1);
+
+        if ("tbnrfs'\"\\".indexOf(c) >= 0)
+            return 2;
+
+        if (c == 'u') {
+            for (int i = 2; i < 6; i++)
+                if (!isHex(at(start + i)))
+                    throw error("Invalid unicode escape");
+            return 6;
+        }
+
+        if (isOctal(c)) {
+            var length = 2;
+            while (length < 4 && isOctal(at(start + length)))
+                length++;
+            return length;
+        }
+
+        throw error("Invalid escape sequence");
+    }
+
+    private void symbol(char c) {
+        var type = switch (c) {
+            case '.' -> Type.DOT;
+            case ';' -> Type.SC;
+            case ',' -> Type.COMMA;
+            case ':' -> Type.COLON;
+            case '?' -> Type.QM;
+            case '{' -> Type.LB;
+            case '}' -> Type.RB;
+            case '(' -> Type.LP;
+            case ')' -> Type.RP;
+            case '[' -> Type.LSB;
+            case ']' -> Type.RSB;
+            default -> null;
+        };
+
+        if (type != null) {
+            tokens.add(new Token(type, String.valueOf(c), line, column));
+            advance(1);
+            return;
+        }
+
+        for (var operator : OPERATORS)
+            if (startsWith(operator)) {
+                tokens.add(new Token(Type.OPERATOR, operator, line, column));
+                advance(operator.length());
+                return;
+            }
+
+        throw error("Unexpected character '" + c + "'");
+    }
+
+    private int lineCommentLength() {
+        var length = 2;
+        while (position + length < code.length && code[position + length] != '\r' && code[position + length] != '\n')
+            length++;
+        return length;
+    }
+
+    /**
+     * @return the length of the comment, or 0 if it is never closed, in which case it is read as operators instead
+     */
+    private int blockCommentLength() {
+        for (int i = position + 2; i + 1 < code.length; i++)
+            if (code[i] == '*' && code[i + 1] == '/')
+                return i + 2 - position;
+        return 0;
+    }
+
+    private void add(Type type, int length) {
+        tokens.add(new Token(type, new String(code, position, length), line, column));
+        advance(length);
+    }
+
+    private void advance(int length) {
+        for (int end = position + length; position < end; position++) {
+            if (code[position] == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+        }
+    }
+
+    private boolean startsWith(String text) {
+        if (position + text.length() > code.length)
+            return false;
+        for (int i = 0; i < text.length(); i++)
+            if (code[position + i] != text.charAt(i))
+                return false;
+        return true;
+    }
+
+    private int digitsAt(int start) {
+        var count = 0;
+        while (isDigit(at(start + count)))
+            count++;
+        return count;
+    }
+
+    private char at(int index) {
+        return index < code.length ? code[index] : 0;
+    }
+
+    private LexerException error(String message) {
+        return new LexerException(line, column, message);
+    }
+
+    private static boolean isIdStart(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c == '$';
+    }
+
+    private static boolean isIdPart(char c) {
+        return isIdStart(c) || isDigit(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHex(char c) {
+        return isDigit(c) || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+    }
+
+    private static boolean isOctal(char c) {
+        return c >= '0' && c <= '7';
+    }
+}
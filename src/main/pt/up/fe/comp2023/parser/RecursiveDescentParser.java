@@ -0,0 +1,767 @@
+package pt.up.fe.comp2023.parser;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.parser.JmmParser;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.CompactJmmNode;
+import pt.up.fe.comp2023.DeferredReport;
+import pt.up.fe.comp2023.NodeKind;
+import pt.up.fe.comp2023.parser.JmmLexer.Token;
+import pt.up.fe.comp2023.parser.JmmLexer.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A hand-written parser for the {@code Javamm.g4} grammar, which builds the same AST as
+ * {@link pt.up.fe.comp2023.SimpleParser} without the cost of ANTLR's adaptive prediction.
+ * <p>
+ * Every rule is a method that decides between its alternatives with at most a few tokens of lookahead, and the
+ * left-recursive {@code expression} rule is parsed by precedence climbing. Any rule of the grammar can be used as the
+ * starting rule, but only {@code program} has to reach the end of the input.
+ */
+public class RecursiveDescentParser implements JmmParser {
+
+    // the binding power of each operator, the higher the tighter, as given by the order of the alternatives
+    private static final int POSTFIX = 17;
+    private static final int PREFIX = 16;
+    private static final int TERNARY = 5;
+    private static final int ASSIGNMENT = 4;
+    private static final Map<String, Integer> BINARY_OPERATORS = Map.ofEntries(
+            Map.entry("*", 15), Map.entry("/", 15), Map.entry("%", 15),
+            Map.entry("+", 14), Map.entry("-", 14),
+            Map.entry("<<", 13), Map.entry(">>", 13), Map.entry(">>>", 13),
+            Map.entry(">", 12), Map.entry("<", 12), Map.entry(">=", 12), Map.entry("<=", 12),
+            Map.entry("==", 11), Map.entry("!=", 11),
+            Map.entry("&", 10),
+            Map.entry("^", 9),
+            Map.entry("|", 8),
+            Map.entry("&&", 7),
+            Map.entry("||", 6)
+    );
+    private static final List<String> PREFIX_OPERATORS = List.of("!", "++", "--", "+", "-", "~");
+    private static final List<String> ASSIGNMENT_OPERATORS = List.of("=", "+=", "-=", "*=", "/=", "%=", "&=", "^=", "|=", "<<=", ">>=", ">>>=");
+
+    private static class SyntaxException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final Token token;
+
+        SyntaxException(Token token, String message) {
+            super(message);
+            this.token = token;
+        }
+    }
+
+    private List<Token> tokens;
+    private int position;
+
+    @Override
+    public String getDefaultRule() {
+        return "program";
+    }
+
+    @Override
+    public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        // The parser keeps its state in fields, so each parse gets its own instance
+        return new RecursiveDescentParser().run(jmmCode, startingRule, config);
+    }
+
+    private JmmParserResult run(String jmmCode, String startingRule, Map<String, String> config) {
+        JmmNode root;
+        try {
+            tokens = JmmLexer.tokenize(jmmCode);
+            position = 0;
+            root = parseRule(startingRule);
+        } catch (JmmLexer.LexerException e) {
+            return JmmParserResult.newError(new Report(ReportType.ERROR, Stage.SYNTATIC, e.line, e.column, e.getMessage()));
+        } catch (SyntaxException e) {
+            return JmmParserResult.newError(new Report(ReportType.ERROR, Stage.SYNTATIC, e.token.line(), e.token.column(), e.getMessage()));
+        } catch (Exception e) {
+            return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e));
+        }
+
+        // The tree is rendered before the analysis annotates it, as long as the reports are read in between
+        return new JmmParserResult(root, new ArrayList<>(List.of(DeferredReport.newDebug(Stage.SYNTATIC, () -> "Generated AST:\n" + root.toTree()))), config);
+    }
+
+    private JmmNode parseRule(String rule) {
+        return switch (rule) {
+            case "program" -> program();
+            case "package_declaration" -> packageDeclaration();
+            case "import_statement" -> importStatement();
+            case "class_declaration" -> classDeclaration();
+            case "class_extension" -> classExtension();
+            case "program_definition" -> programDefinition();
+            case "method_declaration" -> methodDeclaration();
+            case "variable_declaration" -> variableDeclaration();
+            case "constructor_declaration" -> constructorDeclaration();
+            case "parameter_list" -> parameterList();
+            case "argument_list" -> argumentList();
+            case "assignment_statement" -> assignmentStatement();
+            case "statement" -> statement();
+            case "for_init" -> forInit();
+            case "for_term" -> forTerm();
+            case "for_inc" -> forInc();
+            case "case_statement" -> caseStatement();
+            case "type" -> type();
+            case "expression" -> expression(0);
+            default -> throw new IllegalArgumentException("Unknown rule '" + rule + "'");
+        };
+    }
+
+    // program: package_declaration? ( import_statement )* class_declaration EOF
+    private CompactJmmNode program() {
+        var start = peek();
+        var node = node(NodeKind.Program);
+
+        if (at(Type.PACKAGE))
+            node.add(packageDeclaration());
+        while (at(Type.IMPORT))
+            node.add(importStatement());
+        node.add(classDeclaration());
+        expect(Type.EOF);
+
+        return finish(node, start);
+    }
+
+    // package_declaration: PACKAGE ( packagePath+=ID DOT )* packageName=ID SC
+    private CompactJmmNode packageDeclaration() {
+        var start = peek();
+        var node = node(NodeKind.PackageDeclaration);
+
+        expect(Type.PACKAGE);
+        qualifiedName(node, "packagePath", "packageName");
+        expect(Type.SC);
+
+        return finish(node, start);
+    }
+
+    // import_statement: IMPORT ( classPackage+=ID DOT )* className=ID SC
+    private CompactJmmNode importStatement() {
+        var start = peek();
+        var node = node(NodeKind.ImportStatement);
+
+        expect(Type.IMPORT);
+        qualifiedName(node, "classPackage", "className");
+        expect(Type.SC);
+
+        return finish(node, start);
+    }
+
+    // class_declaration: modifiers+=MODIFIER* CLASS className=ID class_extension? LB program_definition RB
+    private CompactJmmNode classDeclaration() {
+        var start = peek();
+        var node = node(NodeKind.ClassDeclaration);
+
+        modifiers(node);
+        expect(Type.CLASS);
+        node.put("className", expect(Type.ID).text());
+        if (at(Type.EXTENDS))
+            node.add(classExtension());
+        expect(Type.LB);
+        node.add(programDefinition());
+        expect(Type.RB);
+
+        return finish(node, start);
+    }
+
+    // class_extension: EXTENDS ( parentPackage+=ID DOT )* parentClass=ID
+    private CompactJmmNode classExtension() {
+        var start = peek();
+        var node = node(NodeKind.ParentClass);
+
+        expect(Type.EXTENDS);
+        qualifiedName(node, "parentPackage", "parentClass");
+
+        return finish(node, start);
+    }
+
+    // program_definition: ( ( variable_declaration SC ) | method_declaration | constructor_declaration )*
+    private CompactJmmNode programDefinition() {
+        var start = peek();
+        var node = node(NodeKind.Program_definition);
+
+        while (at(Type.MODIFIER) || at(Type.PRIMITIVE_TYPE) || at(Type.VOID) || at(Type.ID)) {
+            var next = skipModifiers(position);
+
+            if (typeOf(next) == Type.ID && typeOf(next + 1) == Type.LP) {
+                node.add(constructorDeclaration());
+            } else {
+                var name = skipType(next);
+                if (name >= 0 && typeOf(name) == Type.ID && typeOf(name + 1) == Type.LP) {
+                    node.add(methodDeclaration());
+                } else {
+                    node.add(variableDeclaration());
+                    expect(Type.SC);
+                }
+            }
+        }
+
+        return finish(node, start);
+    }
+
+    // method_declaration: (modifiers+=MODIFIER)* type methodName=ID LP parameter_list? RP LB statement* RB
+    private CompactJmmNode methodDeclaration() {
+        var start = peek();
+        var node = node(NodeKind.MethodDeclaration);
+
+        modifiers(node);
+        node.add(type());
+        node.put("methodName", expect(Type.ID).text());
+        parameters(node);
+        body(node);
+
+        return finish(node, start);
+    }
+
+    // variable_declaration: (modifiers+=MODIFIER)* assignment_statement
+    private CompactJmmNode variableDeclaration() {
+        var start = peek();
+        var node = node(NodeKind.FieldDeclaration);
+
+        modifiers(node);
+        node.add(assignmentStatement());
+
+        return finish(node, start);
+    }
+
+    // constructor_declaration: (modifiers+=MODIFIER)* className=ID LP parameter_list? RP LB statement* RB
+    private CompactJmmNode constructorDeclaration() {
+        var start = peek();
+        var node = node(NodeKind.ConstructorDeclaration);
+
+        modifiers(node);
+        node.put("className", expect(Type.ID).text());
+        parameters(node);
+        body(node);
+
+        return finish(node, start);
+    }
+
+    // parameter_list: type argName+=ID ( COMMA type argName+=ID )*
+    private CompactJmmNode parameterList() {
+        var start = peek();
+        var node = node(NodeKind.ParameterList);
+        var names = new ArrayList<String>();
+
+        do {
+            node.add(type());
+            names.add(expect(Type.ID).text());
+        } while (accept(Type.COMMA));
+
+        listed(node, "ID", "argName", names);
+
+        return finish(node, start);
+    }
+
+    // argument_list: expression ( COMMA expression )*
+    private CompactJmmNode argumentList() {
+        var start = peek();
+        var node = node(NodeKind.ArgumentList);
+
+        do {
+            node.add(expression(0));
+        } while (accept(Type.COMMA));
+
+        return finish(node, start);
+    }
+
+    // assignment_statement: type id=ID ( op='=' expression )?
+    private CompactJmmNode assignmentStatement() {
+        var start = peek();
+        var node = node(NodeKind.VariableDeclaration);
+
+        node.add(type());
+        node.put("id", expect(Type.ID).text());
+        if (atOperator("=")) {
+            node.put("op", next().text());
+            node.add(expression(0));
+        }
+
+        return finish(node, start);
+    }
+
+    private CompactJmmNode statement() {
+        var start = peek();
+        CompactJmmNode node;
+
+        switch (start.type()) {
+            case LB -> {
+                node = node(NodeKind.StatementBlock);
+                next();
+                while (!at(Type.RB))
+                    node.add(statement());
+                next();
+            }
+            case IF -> {
+                node = node(NodeKind.IfStatement);
+                next();
+                condition(node);
+                node.add(statement());
+                expect(Type.ELSE);
+                node.add(statement());
+            }
+            case WHILE -> {
+                node = node(NodeKind.WhileStatement);
+                next();
+                condition(node);
+                node.add(statement());
+            }
+            case DO -> {
+                node = node(NodeKind.DoStatement);
+                next();
+                node.add(statement());
+                expect(Type.WHILE);
+                condition(node);
+                expect(Type.SC);
+            }
+            case FOR -> {
+                next();
+                expect(Type.LP);
+
+                // FOR LP type id=ID COLON expression RP statement
+                var name = skipType(position);
+                if (name >= 0 && typeOf(name) == Type.ID && typeOf(name + 1) == Type.COLON) {
+                    node = node(NodeKind.ForEachStatement);
+                    node.add(type());
+                    node.put("id", next().text());
+                    next();
+                    node.add(expression(0));
+                } else {
+                    node = node(NodeKind.ForStatement);
+                    node.add(forInit());
+                    expect(Type.SC);
+                    node.add(forTerm());
+                    expect(Type.SC);
+                    node.add(forInc());
+                }
+
+                expect(Type.RP);
+                node.add(statement());
+            }
+            case SWITCH -> {
+                node = node(NodeKind.SwitchStatement);
+                next();
+                condition(node);
+                expect(Type.LB);
+                while (at(Type.CASE) || at(Type.DEFAULT))
+                    node.add(caseStatement());
+                expect(Type.RB);
+            }
+            case RETURN -> {
+                node = node(NodeKind.ReturnStatement);
+                next();
+                if (!at(Type.SC))
+                    node.add(expression(0));
+                expect(Type.SC);
+            }
+            case BREAK -> {
+                node = node(NodeKind.BreakStatement);
+                next();
+                expect(Type.SC);
+            }
+            case CONTINUE -> {
+                node = node(NodeKind.ContinueStatement);
+                next();
+                expect(Type.SC);
+            }
+            case SC -> {
+                node = node(NodeKind.EmptyStatement);
+                next();
+            }
+            default -> {
+                if (isDeclaration(position)) {
+                    node = node(NodeKind.AssignmentStatement);
+                    node.add(variableDeclaration());
+                } else {
+                    node = node(NodeKind.ExpressionStatement);
+                    node.add(expression(0));
+                }
+                expect(Type.SC);
+            }
+        }
+
+        return finish(node, start);
+    }
+
+    // for_init: assignment_statement | expression ( COMMA expression )* |
+    private CompactJmmNode forInit() {
+        var start = peek();
+        var node = node(NodeKind.For_init);
+
+        if (!at(Type.MODIFIER) && isDeclaration(position))
+            node.add(assignmentStatement());
+        else if (!at(Type.SC))
+            expressions(node);
+
+        return finish(node, start);
+    }
+
+    // for_term: expression |
+    private CompactJmmNode forTerm() {
+        var start = peek();
+        var node = node(NodeKind.For_term);
+
+        if (!at(Type.SC))
+            node.add(expression(0));
+
+        return finish(node, start);
+    }
+
+    // for_inc: expression ( COMMA expression )* |
+    private CompactJmmNode forInc() {
+        var start = peek();
+        var node = node(NodeKind.For_inc);
+
+        if (!at(Type.RP))
+            expressions(node);
+
+        return finish(node, start);
+    }
+
+    // case_statement: CASE value=LITERAL COLON statement* | DEFAULT COLON statement*
+    private CompactJmmNode caseStatement() {
+        var start = peek();
+        CompactJmmNode node;
+
+        if (accept(Type.CASE)) {
+            node = node(NodeKind.CaseStatement);
+            node.put("value", expect(Type.LITERAL).text());
+        } else {
+            expect(Type.DEFAULT);
+            node = node(NodeKind.DefaultStatement);
+        }
+
+        expect(Type.COLON);
+        while (!at(Type.CASE) && !at(Type.DEFAULT) && !at(Type.RB))
+            node.add(statement());
+
+        return finish(node, start);
+    }
+
+    private CompactJmmNode type() {
+        var start = peek();
+        CompactJmmNode node;
+
+        switch (start.type()) {
+            case PRIMITIVE_TYPE -> {
+                node = node(NodeKind.PrimitiveType);
+                node.put("id", next().text());
+            }
+            case VOID -> {
+                node = node(NodeKind.VoidType);
+                next();
+            }
+            default -> {
+                node = node(NodeKind.ComplexType);
+                qualifiedName(node, "typePrefix", "id");
+            }
+        }
+
+        finish(node, start);
+
+        // type LSB RSB, only when the brackets are empty, as otherwise they belong to a NewArray
+        while (at(Type.LSB) && typeOf(position + 1) == Type.RSB) {
+            next();
+            next();
+            var array = node(NodeKind.ArrayType);
+            array.add(node);
+            node = finish(array, start);
+        }
+
+        return node;
+    }
+
+    /**
+     * Parses an expression by precedence climbing, only taking the operators that bind at least as tight as the given
+     * precedence, so that the operands are nested as ANTLR nests the alternatives of a left-recursive rule.
+     */
+    private CompactJmmNode expression(int precedence) {
+        var start = peek();
+        var node = primary();
+
+        while (true) {
+            var token = peek();
+            CompactJmmNode operation;
+
+            if (token.type() == Type.DOT) {
+                // expression DOT member=ID LP argument_list? RP | expression DOT member=ID
+                next();
+                var member = expect(Type.ID).text();
+                operation = node(at(Type.LP) ? NodeKind.MethodCall : NodeKind.PropertyAccess);
+                operation.add(node);
+                operation.put("member", member);
+                if (at(Type.LP))
+                    arguments(operation);
+            } else if (token.type() == Type.LSB) {
+                // expression LSB expression RSB
+                next();
+                operation = node(NodeKind.ArrayAccess);
+                operation.add(node);
+                operation.add(expression(0));
+                expect(Type.RSB);
+            } else if (token.type() == Type.QM && TERNARY >= precedence) {
+                // expression QM expression COLON expression
+                next();
+                operation = node(NodeKind.TernaryOp);
+                operation.add(node);
+                operation.add(expression(0));
+                expect(Type.COLON);
+                operation.add(expression(TERNARY + 1));
+            } else if (token.type() == Type.OPERATOR) {
+                var operator = token.text();
+                var binary = BINARY_OPERATORS.get(operator);
+
+                if ((operator.equals("++") || operator.equals("--")) && POSTFIX >= precedence) {
+                    next();
+                    operation = node(NodeKind.UnaryPostOp);
+                    operation.add(node);
+                } else if (binary != null && binary >= precedence) {
+                    next();
+                    operation = node(NodeKind.BinaryOp);
+                    operation.add(node);
+                    operation.add(expression(binary + 1));
+                } else if (ASSIGNMENT_OPERATORS.contains(operator) && ASSIGNMENT >= precedence) {
+                    next();
+                    operation = node(NodeKind.AssignmentExpression);
+                    operation.add(node);
+                    operation.add(expression(ASSIGNMENT + 1));
+                } else {
+                    return node;
+                }
+
+                operation.put("op", operator);
+            } else {
+                return node;
+            }
+
+            node = finish(operation, start);
+        }
+    }
+
+    private CompactJmmNode primary() {
+        var start = peek();
+        CompactJmmNode node;
+
+        switch (start.type()) {
+            case LP -> {
+                node = node(NodeKind.ExplicitPriority);
+                next();
+                node.add(expression(0));
+                expect(Type.RP);
+            }
+            case NEW -> {
+                next();
+                if (at(Type.ID) && typeOf(position + 1) == Type.LP) {
+                    node = node(NodeKind.NewObject);
+                    node.put("id", next().text());
+                    arguments(node);
+                } else {
+                    node = node(NodeKind.NewArray);
+                    node.add(type());
+                    expect(Type.LSB);
+                    node.add(expression(0));
+                    expect(Type.RSB);
+                }
+            }
+            case ID -> {
+                if (typeOf(position + 1) == Type.LP) {
+                    node = node(NodeKind.MethodCall);
+                    node.put("member", next().text());
+                    arguments(node);
+                } else {
+                    node = node(NodeKind.IdentifierExpression);
+                    node.put("id", next().text());
+                }
+            }
+            case OPERATOR -> {
+                if (!PREFIX_OPERATORS.contains(start.text()))
+                    throw unexpected(start);
+
+                node = node(NodeKind.UnaryPreOp);
+                node.put("op", next().text());
+                node.add(expression(PREFIX));
+            }
+            case LITERAL -> {
+                node = node(NodeKind.LiteralExpression);
+                node.put("value", next().text());
+            }
+            case THIS -> {
+                node = node(NodeKind.ThisExpression);
+                next();
+            }
+            default -> throw unexpected(start);
+        }
+
+        return finish(node, start);
+    }
+
+    private void qualifiedName(CompactJmmNode node, String prefixName, String name) {
+        var prefix = new ArrayList<String>();
+        while (at(Type.ID) && typeOf(position + 1) == Type.DOT) {
+            prefix.add(next().text());
+            next();
+        }
+
+        node.put(name, expect(Type.ID).text());
+        listed(node, "ID", prefixName, prefix);
+    }
+
+    private void modifiers(CompactJmmNode node) {
+        var modifiers = new ArrayList<String>();
+        while (at(Type.MODIFIER))
+            modifiers.add(next().text());
+
+        listed(node, "MODIFIER", "modifiers", modifiers);
+    }
+
+    /**
+     * Adds the texts of the tokens of a {@code +=} label, along with the last one, which ANTLR also keeps in a field
+     * named after their token type.
+     */
+    private static void listed(CompactJmmNode node, String tokenType, String name, List<String> texts) {
+        if (!texts.isEmpty())
+            node.put(tokenType, texts.get(texts.size() - 1));
+        node.putObject(name, texts);
+    }
+
+    // LP parameter_list? RP
+    private void parameters(CompactJmmNode node) {
+        expect(Type.LP);
+        if (!at(Type.RP))
+            node.add(parameterList());
+        expect(Type.RP);
+    }
+
+    // LP argument_list? RP
+    private void arguments(CompactJmmNode node) {
+        expect(Type.LP);
+        if (!at(Type.RP))
+            node.add(argumentList());
+        expect(Type.RP);
+    }
+
+    // LB statement* RB
+    private void body(CompactJmmNode node) {
+        expect(Type.LB);
+        while (!at(Type.RB))
+            node.add(statement());
+        next();
+    }
+
+    // LP expression RP
+    private void condition(CompactJmmNode node) {
+        expect(Type.LP);
+        node.add(expression(0));
+        expect(Type.RP);
+    }
+
+    // expression ( COMMA expression )*
+    private void expressions(CompactJmmNode node) {
+        do {
+            node.add(expression(0));
+        } while (accept(Type.COMMA));
+    }
+
+    /**
+     * @return whether a variable declaration starts at the given token, which needs modifiers, a type that cannot be an
+     * expression, or a type followed by the name of the variable
+     */
+    private boolean isDeclaration(int index) {
+        var type = typeOf(index);
+        if (type == Type.MODIFIER || type == Type.PRIMITIVE_TYPE || type == Type.VOID)
+            return true;
+
+        var name = skipType(index);
+        return name >= 0 && typeOf(name) == Type.ID;
+    }
+
+    private int skipModifiers(int index) {
+        while (typeOf(index) == Type.MODIFIER)
+            index++;
+        return index;
+    }
+
+    /**
+     * @return the index of the token after the type that starts at the given token, or -1 if there is no type there
+     */
+    private int skipType(int index) {
+        switch (typeOf(index)) {
+            case PRIMITIVE_TYPE, VOID -> index++;
+            case ID -> {
+                while (typeOf(index + 1) == Type.DOT && typeOf(index + 2) == Type.ID)
+                    index += 2;
+                index++;
+            }
+            default -> {
+                return -1;
+            }
+        }
+
+        while (typeOf(index) == Type.LSB && typeOf(index + 1) == Type.RSB)
+            index += 2;
+
+        return index;
+    }
+
+    private static CompactJmmNode node(NodeKind kind) {
+        return new CompactJmmNode(kind);
+    }
+
+    /**
+     * Adds the position of a node, from its first token to the last one consumed, which for an empty rule is the one
+     * before its start, like ANTLR does.
+     */
+    private CompactJmmNode finish(CompactJmmNode node, Token start) {
+        var end = tokens.get(Math.min(Math.max(position - 1, 0), tokens.size() - 1));
+
+        node.setPosition(start.line(), start.column(), end.line(), end.column());
+
+        return node;
+    }
+
+    private Token peek() {
+        return tokens.get(Math.min(position, tokens.size() - 1));
+    }
+
+    private Type typeOf(int index) {
+        return tokens.get(Math.min(index, tokens.size() - 1)).type();
+    }
+
+    private boolean at(Type type) {
+        return peek().type() == type;
+    }
+
+    private boolean atOperator(String operator) {
+        return at(Type.OPERATOR) && peek().text().equals(operator);
+    }
+
+    private Token next() {
+        var token = peek();
+        position++;
+        return token;
+    }
+
+    private boolean accept(Type type) {
+        if (!at(type))
+            return false;
+        next();
+        return true;
+    }
+
+    private Token expect(Type type) {
+        if (!at(type))
+            throw unexpected(peek());
+        return next();
+    }
+
+    private static SyntaxException unexpected(Token token) {
+        var text = token.type() == Type.EOF ? "end of file" : "'" + token.text() + "'";
+        return new SyntaxException(token, "Unexpected " + text);
+    }
+}
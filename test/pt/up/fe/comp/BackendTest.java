@@ -13,9 +13,20 @@ package pt.up.fe.comp;
  */
 
 import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.ProgramGenerator;
+import pt.up.fe.comp2023.backend.Backend;
+import pt.up.fe.comp2023.backend.JasminOptimizer;
 import pt.up.fe.specs.util.SpecsIo;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 
 public class BackendTest {
 
@@ -27,6 +38,35 @@ public class BackendTest {
         assertEquals("Hello, World!", output.trim());
     }
 
+    @Test
+    public void testParallelMethodsMatchSequential() {
+        // classes with 16 methods or more have their methods generated in parallel
+        var ollirCode = TestUtils.optimize(new ProgramGenerator(0).methods(20).statements(2).generate(), Collections.emptyMap()).getOllirCode();
+        var parallel = new Backend().toJasmin(new OllirResult(ollirCode, Collections.emptyMap()));
+
+        // debug mode shows the OLLIR of each method as it is generated, so it always generates them in order
+        var sequential = new Backend().toJasmin(new OllirResult(ollirCode, Map.of("debug", "true")));
+
+        TestUtils.noErrors(parallel.getReports());
+        assertEquals(sequential.getJasminCode(), parallel.getJasminCode());
+        assertEquals(sequential.getReports().size(), parallel.getReports().size());
+    }
+
+    @Test
+    public void testOptimizingWriterMatchesWholeClass() throws IOException {
+        var ollirResult = TestUtils.optimize(new ProgramGenerator(0).methods(20).generate(), Map.of("optimize", "true"));
+        var jasminCode = new Backend().toJasmin(ollirResult).getJasminCode();
+        var optimizedCode = new JasminOptimizer().optimize(new Backend().toJasmin(ollirResult)).getJasminCode();
+        assertNotEquals(jasminCode, optimizedCode);
+
+        var writer = new StringWriter();
+        try (var optimizing = new JasminOptimizer().optimizing(writer)) {
+            new Backend().writeJasmin(ollirResult, optimizing, new ArrayList<>());
+        }
+
+        assertEquals(optimizedCode, writer.toString());
+    }
+
     // @Test
     // public void testHelloWorld() {
 //
@@ -0,0 +1,164 @@
+package pt.up.fe.comp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2023.BatchCompiler;
+import pt.up.fe.comp2023.ProgramGenerator;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BatchCompilerTest {
+
+    private static final String VALID = """
+            import io;
+            class %s {
+                public static void main(String[] args) {
+                    io.println(1);
+                }
+            }
+            """;
+
+    private static final String UNDECLARED = """
+            class %s {
+                public static void main(String[] args) {
+                    %s = 1;
+                }
+            }
+            """;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private record Batch(int exitCode, String output) {
+    }
+
+    private static Map<String, String> config(String... options) {
+        var config = new HashMap<String, String>();
+        config.put("optimize", "false");
+        config.put("registerAllocation", "-1");
+        config.put("debug", "false");
+        for (int i = 0; i < options.length; i += 2)
+            config.put(options[i], options[i + 1]);
+        return config;
+    }
+
+    /**
+     * Compiles the folder with both standard streams going to the same buffer, so the order of everything that is
+     * printed can be checked.
+     */
+    private static Batch compile(File input, Map<String, String> config) {
+        var buffer = new ByteArrayOutputStream();
+        var stream = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+        var out = System.out;
+        var err = System.err;
+
+        int exitCode;
+        try {
+            System.setOut(stream);
+            System.setErr(stream);
+            exitCode = new BatchCompiler(config).compile(input);
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+
+        return new Batch(exitCode, buffer.toString(StandardCharsets.UTF_8));
+    }
+
+    private File write(File input, String name, String code) {
+        var file = new File(input, name + ".jmm");
+        SpecsIo.write(file, code);
+        return file;
+    }
+
+    /**
+     * @return the Jasmin code written for the given file, without the name of its source
+     */
+    private static String jasmin(File output, String name) {
+        return SpecsIo.read(new File(output, name + ".j")).replaceFirst("\\.source .*\n", "");
+    }
+
+    @Test
+    public void testReportsAreGroupedByFileInOrder() throws IOException {
+        var input = folder.newFolder("input");
+        var a = write(input, "A", VALID.formatted("A"));
+        var b = write(input, "B", UNDECLARED.formatted("B", "x"));
+        var c = write(input, "C", VALID.formatted("C"));
+        var d = write(input, "D", UNDECLARED.formatted("D", "y"));
+
+        var batch = compile(input, config("jobs", "4", "outputFolder", folder.newFolder("output").getPath()));
+
+        assertEquals(1, batch.exitCode());
+
+        var output = batch.output();
+        var positions = new int[]{
+                output.indexOf("[" + a.getPath() + "]"),
+                output.indexOf("[" + b.getPath() + "]"),
+                output.indexOf("'x'"),
+                output.indexOf("[" + c.getPath() + "]"),
+                output.indexOf("[" + d.getPath() + "]"),
+                output.indexOf("'y'"),
+                output.indexOf("Compiled 4 files, with errors"),
+        };
+
+        // the reports of each file come right after its name, whichever file finished first
+        for (int i = 0; i < positions.length; i++) {
+            assertNotEquals(output, -1, positions[i]);
+            if (i > 0)
+                assertTrue(output, positions[i - 1] < positions[i]);
+        }
+    }
+
+    @Test
+    public void testExitCodeWithoutErrors() throws IOException {
+        var input = folder.newFolder("input");
+        write(input, "A", VALID.formatted("A"));
+        write(input, "B", VALID.formatted("B"));
+
+        var output = folder.newFolder("output");
+        var batch = compile(input, config("jobs", "2", "outputFolder", output.getPath()));
+
+        assertEquals(batch.output(), 0, batch.exitCode());
+        assertTrue(batch.output().contains("Compiled 2 files, no errors"));
+        assertTrue(new File(output, "A.j").isFile());
+        assertTrue(new File(output, "B.j").isFile());
+    }
+
+    @Test
+    public void testConcurrentFilesDoNotShareLabelsOrTemporaries() throws IOException {
+        var input = folder.newFolder("input");
+        var files = 16;
+        for (int seed = 0; seed < files; seed++)
+            write(input, "P" + seed, new ProgramGenerator(seed).generate());
+        // the same program twice must be compiled to the same code, whatever was compiled before or alongside it
+        write(input, "Copy", new ProgramGenerator(0).generate());
+
+        var sequential = folder.newFolder("sequential");
+        var parallel = folder.newFolder("parallel");
+
+        for (var config : List.of(config("jobs", "1", "outputFolder", sequential.getPath()), config("jobs", "8", "outputFolder", parallel.getPath()))) {
+            var batch = compile(input, config);
+            assertEquals(batch.output(), 0, batch.exitCode());
+        }
+
+        var copy = jasmin(sequential, "Copy");
+        // labels are numbered from 0 in each file
+        assertTrue(copy, copy.matches("(?s).*__\\w+__0:.*"));
+        assertEquals(jasmin(sequential, "P0"), copy);
+
+        for (int seed = 0; seed < files; seed++)
+            assertEquals(jasmin(sequential, "P" + seed), jasmin(parallel, "P" + seed));
+        assertEquals(copy, jasmin(parallel, "Copy"));
+    }
+}
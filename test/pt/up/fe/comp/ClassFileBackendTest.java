@@ -0,0 +1,89 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.ClassRunner;
+import pt.up.fe.comp2023.ProgramGenerator;
+import pt.up.fe.comp2023.backend.ClassFileBackend;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ClassFileBackendTest {
+
+    private static final List<String> PROGRAMS = List.of(
+            "pt/up/fe/comp/cp2/apps/HelloWorld.jmm",
+            "pt/up/fe/comp/cp2/apps/Simple.jmm",
+            "pt/up/fe/comp/cp2/jasmin/OllirToJasminArithmetics.jmm",
+            "pt/up/fe/comp/cp2/jasmin/OllirToJasminBasic.jmm",
+            "pt/up/fe/comp/cp2/jasmin/OllirToJasminInvoke.jmm",
+            "pt/up/fe/comp/cp2/ollir/CompileBasic.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arithmetic/Arithmetic_and.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arithmetic/Arithmetic_less.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arrays/ArrayAccess.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arrays/ArrayAsArg.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arrays/ArrayInit.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arrays/ComplexArrayAccess.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/calls/ConditionArgsFuncCall.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SimpleControlFlow.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SimpleIfElseNot.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SimpleIfElseStat.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SimpleWhileStat.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SwitchStat.jmm"
+    );
+
+    private static String run(String resource) {
+        var ollirResult = new OllirResult(SpecsIo.getResource(resource), Collections.emptyMap());
+        var classFileResult = new ClassFileBackend().toClassFile(ollirResult);
+        TestUtils.noErrors(classFileResult.getReports());
+
+        return SpecsStrings.normalizeFileContents(classFileResult.run()).trim();
+    }
+
+    @Test
+    public void testHelloWorld() {
+        assertEquals("Hello, World!", run("pt/up/fe/comp/cp2/apps/example_ollir/HelloWorld.ollir"));
+    }
+
+    @Test
+    public void testSimple() {
+        assertEquals("30", run("pt/up/fe/comp/cp2/apps/example_ollir/Simple.ollir"));
+    }
+
+    /**
+     * Compiles the code with both backends, and checks that both classes run successfully with the same output.
+     */
+    private static void assertSameRun(String code, Map<String, String> config) {
+        var jasminResult = TestUtils.backend(code, config);
+        TestUtils.noErrors(jasminResult.getReports());
+
+        var classFileResult = new ClassFileBackend().toClassFile(TestUtils.optimize(code, config));
+        TestUtils.noErrors(classFileResult.getReports());
+
+        var jasminOutput = ClassRunner.run(jasminResult, List.of(), false);
+        var classFileOutput = ClassRunner.run(classFileResult.getClassName(), classFileResult.getClassFile(), List.of(), false);
+
+        assertEquals(jasminOutput.getStdErr(), 0, jasminOutput.getReturnValue());
+        assertEquals(classFileOutput.getStdErr(), 0, classFileOutput.getReturnValue());
+        assertEquals(jasminOutput.getOutput(), classFileOutput.getOutput());
+    }
+
+    @Test
+    public void testSameRunAsJasmin() {
+        for (var program : PROGRAMS)
+            assertSameRun(SpecsIo.getResource(program), Collections.emptyMap());
+    }
+
+    @Test
+    public void testSameRunAsJasminOnGeneratedPrograms() {
+        for (int seed = 0; seed < 3; seed++)
+            assertSameRun(new ProgramGenerator(seed).generate(), Collections.emptyMap());
+    }
+
+}
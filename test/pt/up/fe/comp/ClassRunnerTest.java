@@ -0,0 +1,36 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.ClassRunner;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsStrings;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ClassRunnerTest {
+
+    @Test
+    public void testHelloWorld() {
+        var jasminResult = new JasminResult("HelloWorld", SpecsIo.getResource("pt/up/fe/comp/jasmin/HelloWorld.j"), Collections.emptyList());
+        var output = ClassRunner.run(jasminResult, List.of(), false);
+
+        assertEquals(0, output.getReturnValue());
+        assertEquals("Hello World!\nHello World Again!", SpecsStrings.normalizeFileContents(output.getOutput()).trim());
+    }
+
+    @Test
+    public void testSameOutputAsSubprocess() {
+        var ollirResult = new OllirResult(SpecsIo.getResource("pt/up/fe/comp/cp2/apps/example_ollir/Simple.ollir"), Collections.emptyMap());
+        var jasminResult = TestUtils.backend(ollirResult);
+
+        var output = ClassRunner.run(jasminResult, List.of(), false);
+
+        assertEquals(SpecsStrings.normalizeFileContents(jasminResult.run()).trim(), SpecsStrings.normalizeFileContents(output.getOutput()).trim());
+    }
+
+}
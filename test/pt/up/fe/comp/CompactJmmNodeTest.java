@@ -0,0 +1,73 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp2023.CompactJmmNode;
+import pt.up.fe.comp2023.NodeKind;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompactJmmNodeTest {
+
+    private static CompactJmmNode identifier(String id) {
+        var node = new CompactJmmNode(NodeKind.IdentifierExpression);
+        node.put("id", id);
+        return node;
+    }
+
+    @Test
+    public void testAttributes() {
+        var node = new CompactJmmNode(NodeKind.BinaryOp);
+        node.put("op", "+");
+        node.put("type", "int");
+        node.put(new String("op"), "-");
+        node.setPosition(1, 2, 3, 4);
+
+        assertEquals("BinaryOp", node.getKind());
+        assertEquals(List.of("BinaryOp", "Expression"), node.getHierarchy());
+        assertEquals("-", node.get("op"));
+        assertEquals("2", node.get("colStart"));
+        assertEquals(List.of("op", "type", "lineStart", "lineEnd", "colStart", "colEnd"), node.getAttributes());
+        assertTrue(node.getOptional("value").isEmpty());
+        assertFalse(node.hasAttribute("value"));
+        assertEquals("BinaryOp (op: -, type: int)", node.toString());
+
+        node.put("lineStart", "10");
+        assertEquals("10", node.get("lineStart"));
+    }
+
+    @Test
+    public void testEdits() {
+        var parent = new CompactJmmNode(NodeKind.ArgumentList);
+        var a = identifier("a");
+        var b = identifier("b");
+        var c = identifier("c");
+
+        parent.add(a);
+        parent.add(c);
+        parent.add(b, 1);
+        assertEquals(List.of(a, b, c), parent.getChildren());
+        assertEquals(2, c.getIndexOfSelf());
+
+        // Replacing a node with one without a parent detaches it
+        var d = identifier("d");
+        b.replace(d);
+        assertEquals(List.of(a, d, c), parent.getChildren());
+        assertNull(b.getJmmParent());
+        assertSame(parent, d.getJmmParent());
+
+        // Replacing a node with one that has a parent swaps them
+        var other = new CompactJmmNode(NodeKind.ArgumentList);
+        other.add(b);
+        a.replace(b);
+        assertEquals(List.of(b, d, c), parent.getChildren());
+        assertEquals(List.of(a), other.getChildren());
+        assertSame(other, a.getJmmParent());
+
+        d.delete();
+        assertEquals(List.of(b, c), parent.getChildren());
+        assertEquals(1, c.getIndexOfSelf());
+        assertEquals(-1, d.getIndexOfSelf());
+    }
+}
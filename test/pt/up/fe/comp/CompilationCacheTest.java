@@ -0,0 +1,115 @@
+package pt.up.fe.comp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.CompilationCache;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CompilationCacheTest {
+
+    private static final String CODE = "class A { }";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Map<String, String> config(String... options) {
+        var config = new HashMap<String, String>();
+        config.put("cacheFolder", folder.getRoot().getPath());
+        for (int i = 0; i < options.length; i += 2)
+            config.put(options[i], options[i + 1]);
+        return config;
+    }
+
+    @Test
+    public void testKey() {
+        var key = CompilationCache.key(CODE, config("optimize", "false"), "v1");
+
+        assertArrayEquals(key, CompilationCache.key(CODE, config("optimize", "false"), "v1"));
+        // options that do not change the generated code are not part of the key
+        assertArrayEquals(key, CompilationCache.key(CODE, config("optimize", "false", "jobs", "4"), "v1"));
+
+        assertFalse(Arrays.equals(key, CompilationCache.key("class B { }", config("optimize", "false"), "v1")));
+        assertFalse(Arrays.equals(key, CompilationCache.key(CODE, config("optimize", "true"), "v1")));
+        assertFalse(Arrays.equals(key, CompilationCache.key(CODE, config("optimize", "false"), "v2")));
+    }
+
+    @Test
+    public void testHitReplaysReportsAndJasmin() throws IOException {
+        var config = config();
+        var cache = CompilationCache.open(config);
+        var key = CompilationCache.key(CODE, config);
+
+        assertNull(cache.get(key, config));
+
+        var reports = List.of(
+                Report.newWarn(Stage.SEMANTIC, 1, 2, "unused", null),
+                new Report(ReportType.DEBUG, Stage.OPTIMIZATION, -1, -1, "debug only"));
+        cache.put(key, reports, new JasminResult("A", ".class public A", reports, config), config);
+
+        var cached = cache.get(key, config);
+        assertNotNull(cached);
+        assertEquals("A", cached.jasminResult().getClassName());
+        assertEquals(".class public A", cached.jasminResult().getJasminCode());
+
+        // debug reports are only stored in debug mode, the others are replayed as they were
+        assertEquals(1, cached.reports().size());
+        var report = cached.reports().get(0);
+        assertEquals(ReportType.WARNING, report.getType());
+        assertEquals(Stage.SEMANTIC, report.getStage());
+        assertEquals(1, report.getLine());
+        assertEquals(2, report.getColumn());
+        assertEquals("unused", report.getMessage());
+    }
+
+    @Test
+    public void testFailedCompilationReplaysReports() throws IOException {
+        var config = config();
+        var cache = CompilationCache.open(config);
+        var key = CompilationCache.key(CODE, config);
+
+        cache.put(key, List.of(Report.newError(Stage.SEMANTIC, 1, 1, "error", null)), null, config);
+
+        var cached = cache.get(key, config);
+        assertNotNull(cached);
+        assertNull(cached.jasminResult());
+        assertEquals("error", cached.reports().get(0).getMessage());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws IOException, InterruptedException {
+        var config = config("cacheSize", "1");
+        var cache = CompilationCache.open(config);
+
+        // three entries of 400 KB do not fit in 1 MB
+        var jasmin = "x".repeat(400 << 10);
+        var keys = List.of(
+                CompilationCache.key("class A { }", config),
+                CompilationCache.key("class B { }", config),
+                CompilationCache.key("class C { }", config));
+
+        cache.put(keys.get(0), List.of(), new JasminResult("A", jasmin, List.of(), config), config);
+        Thread.sleep(5);
+        cache.put(keys.get(1), List.of(), new JasminResult("B", jasmin, List.of(), config), config);
+        Thread.sleep(5);
+        // reading A makes B the least recently used entry
+        assertNotNull(cache.get(keys.get(0), config));
+        Thread.sleep(5);
+        cache.put(keys.get(2), List.of(), new JasminResult("C", jasmin, List.of(), config), config);
+
+        assertNotNull(cache.get(keys.get(0), config));
+        assertNull(cache.get(keys.get(1), config));
+        assertNotNull(cache.get(keys.get(2), config));
+    }
+}
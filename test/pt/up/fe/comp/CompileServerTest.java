@@ -0,0 +1,162 @@
+package pt.up.fe.comp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2023.CompileServer;
+import pt.up.fe.comp2023.CompilerVersion;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CompileServerTest {
+
+    private static final String CODE = """
+            import io;
+            class A {
+                public static void main(String[] args) {
+                    io.println(1);
+                }
+            }
+            """;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private UnixDomainSocketAddress address;
+    private Thread serverThread;
+
+    @Before
+    public void startServer() throws InterruptedException {
+        address = UnixDomainSocketAddress.of(new File(folder.getRoot(), "jmm.sock").toPath());
+
+        var server = new CompileServer(address);
+        serverThread = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        for (int attempt = 0; attempt < 100 && !Files.exists(address.getPath()); attempt++)
+            Thread.sleep(50);
+    }
+
+    @After
+    public void stopServer() throws IOException, InterruptedException {
+        if (!serverThread.isAlive())
+            return;
+
+        try (var connection = new Connection()) {
+            var request = new JsonObject();
+            request.addProperty("shutdown", true);
+            connection.send(request.toString());
+        }
+
+        serverThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private static JsonObject compileRequest(String version) {
+        var args = new JsonArray();
+        args.add("--input=A.jmm");
+
+        var request = new JsonObject();
+        request.add("args", args);
+        request.addProperty("code", CODE);
+        if (version != null)
+            request.addProperty("version", version);
+        return request;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        try (var connection = new Connection()) {
+            var response = connection.request(compileRequest(CompilerVersion.fingerprint()).toString());
+
+            assertTrue(response.get("success").getAsBoolean());
+            assertFalse(response.get("stale").getAsBoolean());
+            assertEquals("A", response.get("className").getAsString());
+            assertTrue(response.get("jasmin").getAsString().contains(".class public A"));
+
+            // the connection can be reused for the next request
+            assertTrue(connection.request(compileRequest(null).toString()).get("success").getAsBoolean());
+        }
+    }
+
+    @Test
+    public void testInvalidRequestsAreAnswered() throws IOException {
+        try (var connection = new Connection()) {
+            for (var line : new String[]{"", "null", "{\"args\": null}", "{"}) {
+                var response = connection.request(line);
+
+                assertFalse(line, response.get("success").getAsBoolean());
+                assertTrue(line, response.get("err").getAsString().startsWith("Invalid request"));
+            }
+
+            // the connection is still open after an invalid request
+            assertTrue(connection.request(compileRequest(null).toString()).get("success").getAsBoolean());
+        }
+    }
+
+    @Test
+    public void testStaleServerStops() throws IOException, InterruptedException {
+        try (var connection = new Connection()) {
+            var response = connection.request(compileRequest("another build").toString());
+
+            assertTrue(response.get("stale").getAsBoolean());
+            assertFalse(response.get("success").getAsBoolean());
+        }
+
+        serverThread.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(serverThread.isAlive());
+        // the socket is free for a new server
+        assertFalse(Files.exists(address.getPath()));
+    }
+
+    private class Connection implements Closeable {
+        private final SocketChannel channel;
+        private final PrintWriter writer;
+        private final BufferedReader reader;
+
+        Connection() throws IOException {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(address);
+            writer = new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+            reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+        }
+
+        void send(String line) {
+            writer.println(line);
+            writer.flush();
+        }
+
+        JsonObject request(String line) throws IOException {
+            send(line);
+
+            var response = reader.readLine();
+            assertNotNull("no answer to '" + line + "'", response);
+            return JsonParser.parseString(response).getAsJsonObject();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.DeferredReport;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DeferredReportTest {
+
+    @Test
+    public void testMessageIsBuiltOnce() {
+        var calls = new AtomicInteger();
+        var report = DeferredReport.newDebug(Stage.GENERATION, () -> "message " + calls.incrementAndGet());
+
+        assertFalse(report.isRendered());
+        assertEquals(0, calls.get());
+
+        assertEquals("message 1", report.getMessage());
+        assertEquals("message 1", report.getMessage());
+        assertTrue(report.isRendered());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testDebugReportsAreNotBuiltWithoutDebug() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cp2/apps/Simple.jmm");
+        var jasminResult = TestUtils.backend(code, TestUtils.toConfig());
+
+        for (var report : jasminResult.getReports())
+            if (report instanceof DeferredReport deferred)
+                assertFalse(deferred.isRendered());
+    }
+
+}
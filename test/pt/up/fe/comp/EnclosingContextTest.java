@@ -0,0 +1,87 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.CompactJmmNode;
+import pt.up.fe.comp2023.EnclosingContext;
+import pt.up.fe.comp2023.NodeKind;
+import pt.up.fe.comp2023.parser.RecursiveDescentParser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EnclosingContextTest {
+
+    private static final String CODE = """
+            class A {
+                int f;
+                public int m(int x) {
+                    while (x < 10) {
+                        switch (x) {
+                            case 1:
+                                if (x < 2) break; else x = 2;
+                            default:
+                                continue;
+                        }
+                    }
+                    return x;
+                }
+            }
+            """;
+
+    private static List<JmmNode> find(JmmNode node, String kind, List<JmmNode> found) {
+        if (node.getKind().equals(kind))
+            found.add(node);
+        for (var child : node.getChildren())
+            find(child, kind, found);
+        return found;
+    }
+
+    private static JmmNode find(JmmNode root, String kind) {
+        return find(root, kind, new ArrayList<>()).get(0);
+    }
+
+    @Test
+    public void testLookups() {
+        var root = new RecursiveDescentParser().parse(CODE, new HashMap<>()).getRootNode();
+        var enclosing = new EnclosingContext(root);
+
+        var method = find(root, "MethodDeclaration");
+        var loop = find(root, "WhileStatement");
+        var switchStatement = find(root, "SwitchStatement");
+        var breakStatement = find(root, "BreakStatement");
+        var continueStatement = find(root, "ContinueStatement");
+
+        assertSame(method, enclosing.getMethod(breakStatement));
+        assertSame(loop, enclosing.getLoop(breakStatement));
+        assertSame(switchStatement, enclosing.getBreakTarget(breakStatement));
+        assertSame(loop, enclosing.getLoop(continueStatement));
+        assertEquals(3, enclosing.getControlFlowDepth(breakStatement));
+        assertEquals(2, enclosing.getControlFlowDepth(continueStatement));
+
+        // A node is not enclosed by itself
+        assertNull(enclosing.getLoop(loop));
+        assertEquals(0, enclosing.getControlFlowDepth(loop));
+        assertNull(enclosing.getMethod(find(root, "FieldDeclaration")));
+        assertNull(enclosing.getBreakTarget(find(root, "ReturnStatement")));
+    }
+
+    @Test
+    public void testSubtreesAndNewNodes() {
+        var root = new RecursiveDescentParser().parse(CODE, new HashMap<>()).getRootNode();
+        var breakStatement = find(root, "BreakStatement");
+
+        // What encloses the subtree is still found from the ancestors of its root
+        var enclosing = new EnclosingContext(find(root, "IfStatement"));
+        assertSame(find(root, "SwitchStatement"), enclosing.getBreakTarget(breakStatement));
+        assertSame(find(root, "MethodDeclaration"), enclosing.getMethod(breakStatement));
+
+        var literal = new CompactJmmNode(NodeKind.LiteralExpression);
+        find(root, "ReturnStatement").getJmmChild(0).replace(literal);
+        assertSame(find(root, "MethodDeclaration"), enclosing.getMethod(literal));
+        assertEquals(0, enclosing.getControlFlowDepth(literal));
+    }
+}
@@ -0,0 +1,119 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp2023.ClassRunner;
+import pt.up.fe.comp2023.ProgramGenerator;
+import pt.up.fe.comp2023.optimization.RegisterAllocator;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GeneratedProgramsTest {
+
+    private static final int SEEDS = 10;
+
+    private static void compile(ProgramGenerator generator) {
+        compile(generator.generate(), Collections.emptyMap());
+    }
+
+    private static void compile(String code, Map<String, String> config) {
+        var jasminResult = TestUtils.backend(code, config);
+        TestUtils.noErrors(jasminResult.getReports());
+    }
+
+    @Test
+    public void testDefault() {
+        for (int seed = 0; seed < SEEDS; seed++)
+            compile(new ProgramGenerator(seed));
+    }
+
+    @Test
+    public void testManyMethods() {
+        for (int seed = 0; seed < SEEDS; seed++)
+            compile(new ProgramGenerator(seed).methods(100).statements(2));
+    }
+
+    @Test
+    public void testManyLocals() {
+        for (int seed = 0; seed < SEEDS; seed++)
+            compile(new ProgramGenerator(seed).methods(2).locals(64).statements(50));
+    }
+
+    @Test
+    public void testDeepExpressions() {
+        for (int seed = 0; seed < SEEDS; seed++)
+            compile(new ProgramGenerator(seed).methods(2).expressionDepth(8));
+    }
+
+    @Test
+    public void testNestedLoopsAndSwitches() {
+        for (int seed = 0; seed < SEEDS; seed++)
+            compile(new ProgramGenerator(seed).methods(2).loopNesting(3).switchWidth(16));
+    }
+
+    @Test
+    public void testDeeplyNestedPrograms() {
+        var depth = 2000;
+        var bodies = List.of(
+                "a = a" + " + a".repeat(depth) + ";",
+                "a = " + "(".repeat(depth / 2) + "a" + " + a)".repeat(depth / 2) + ";",
+                "{".repeat(depth) + "a = a + 1;" + "}".repeat(depth),
+                "if (a < 10) { a = a + 1; } else ".repeat(depth) + "{ a = 0; }"
+        );
+
+        for (var body : bodies) {
+            var code = "class Deep { int f(int a) { " + body + " return a; } }";
+            compile(code, Collections.emptyMap());
+            compile(code, Map.of("optimize", "true"));
+        }
+    }
+
+    @Test
+    public void testRegisterAllocationScales() {
+        // a single method of thousands of instructions, full of loops, so liveness takes many passes and the
+        // interference graph is dense
+        var code = new ProgramGenerator(1).methods(1).locals(16).statements(100).generate();
+        var ollirResult = TestUtils.optimize(code, Map.of("registerAllocation", "-1"));
+
+        var start = System.nanoTime();
+        new RegisterAllocator().optimizeRegisters(ollirResult);
+        var allocationMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // it takes well under a second, a forward or quadratic analysis takes minutes
+        assertTrue("Register allocation took " + allocationMillis + " ms", allocationMillis < 5_000);
+    }
+
+    @Test
+    public void testRegisterAllocationStaysOnCallingThread() {
+        Executor pool = task -> fail("The registers were allocated on another thread");
+
+        // a class with few methods is not worth splitting between threads
+        var ollirResult = TestUtils.optimize(new ProgramGenerator(0).methods(1).generate(), Map.of("registerAllocation", "-1"));
+        new RegisterAllocator(pool).optimizeRegisters(ollirResult);
+
+        // the metrics only count the calling thread
+        var config = Map.of("registerAllocation", "-1", "metricsFile", "metrics.json");
+        ollirResult = TestUtils.optimize(new ProgramGenerator(0).methods(20).generate(), config);
+        new RegisterAllocator(pool).optimizeRegisters(ollirResult);
+    }
+
+    @Test
+    public void testRun() {
+        var code = new ProgramGenerator(0).generate();
+        var jasminResult = TestUtils.backend(code, Collections.emptyMap());
+        TestUtils.noErrors(jasminResult.getReports());
+
+        var output = ClassRunner.run(jasminResult, List.of(), false);
+
+        assertEquals(output.getStdErr(), 0, output.getReturnValue());
+        assertEquals("", output.getStdErr());
+        assertEquals("475139", output.getOutput().trim());
+    }
+
+}
@@ -0,0 +1,85 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp2023.JmmType;
+import pt.up.fe.comp2023.optimization.OllirUtils;
+
+import static org.junit.Assert.*;
+
+public class JmmTypeTest {
+
+    @Test
+    public void testInterning() {
+        assertSame(JmmType.INT, JmmType.of("int"));
+        assertSame(JmmType.of("String[]"), JmmType.of(new StringBuilder("String").append("[]").toString()));
+        assertNotSame(JmmType.of("int[]"), JmmType.of("int"));
+        assertNotEquals(JmmType.of("int[]").getId(), JmmType.INT.getId());
+    }
+
+    @Test
+    public void testClassTypesAreInternedPerCompilation() {
+        var types = new JmmType.Interner();
+        var type = types.of("a.B[]");
+
+        assertSame(type, types.of("a.B[]"));
+        assertSame(types.of("a.B"), type.getElementType());
+        assertSame(type, types.of("a.B").getArrayType());
+        assertSame(JmmType.INT, types.of("int"));
+        assertNotEquals(-1, type.getId());
+        assertNotEquals(type.getId(), type.getElementType().getId());
+        assertNotEquals(JmmType.of("a.C"), type.getElementType());
+
+        // another compilation has its own instances, which are still equal
+        var otherType = new JmmType.Interner().of("a.B[]");
+        assertNotSame(type, otherType);
+        assertEquals(type, otherType);
+    }
+
+    @Test
+    public void testClassTypesAreNotInternedOutsideACompilation() {
+        var type = JmmType.of("a.B[]");
+
+        assertNotSame(type, JmmType.of("a.B[]"));
+        assertEquals(type, JmmType.of("a.B[]"));
+        assertEquals(JmmType.of("a.B"), type.getElementType());
+        assertEquals(-1, type.getId());
+    }
+
+    @Test
+    public void testArrays() {
+        var array = JmmType.of("int[][]");
+
+        assertTrue(array.isArray());
+        assertSame(JmmType.of("int[]"), array.getElementType());
+        assertSame(JmmType.INT, array.getElementType().getElementType());
+        assertEquals(array, JmmType.of("int[]").getArrayType());
+        assertFalse(JmmType.INT.isArray());
+        assertNull(JmmType.INT.getElementType());
+    }
+
+    @Test
+    public void testClassification() {
+        assertTrue(JmmType.of("char").isInteger());
+        assertTrue(JmmType.of("char").isPrimitive());
+        assertTrue(JmmType.of("double").isFloatingPoint());
+        assertFalse(JmmType.of("int[]").isPrimitive());
+        assertFalse(JmmType.STRING.isPrimitive());
+        assertTrue(JmmType.of("*").isWildcard());
+    }
+
+    @Test
+    public void testOllirTypes() {
+        assertEquals("i32", JmmType.of("long").getOllirType());
+        assertEquals("array.bool", JmmType.of("boolean[]").getOllirType());
+        assertEquals("array.i32", JmmType.of("int[][]").getOllirType());
+        assertEquals("V", JmmType.VOID.getOllirType());
+        assertEquals("a.B", JmmType.of("a.B").getOllirType());
+
+        // OLLIR names are their own OLLIR types
+        assertEquals("array.i32", JmmType.of("array.i32").getOllirType());
+        assertEquals(1, JmmType.of("array.i32").getOllirDimensions());
+        assertEquals("i32", JmmType.of("array.i32").getOllirElementType());
+
+        assertEquals("array.String", OllirUtils.toOllirType("String[]"));
+    }
+}
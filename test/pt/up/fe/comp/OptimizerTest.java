@@ -0,0 +1,113 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2023.ClassRunner;
+import pt.up.fe.comp2023.optimization.Optimizer;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class OptimizerTest {
+
+    private static final String CODE = """
+            class A {
+                int f;
+
+                public int slow() {
+                    int a;
+                    int b;
+                    a = 1;
+                    if (a < 2) b = 3; else b = 4;
+                    return b;
+                }
+
+                public int fast() {
+                    return 1;
+                }
+            }
+            """;
+
+    private static JmmNode returned(JmmNode root, String methodName) {
+        var classBody = root.getJmmChild(0).getJmmChild(0);
+
+        for (var member : classBody.getChildren())
+            if (member.getOptional("methodName").orElse("").equals(methodName))
+                return member.getJmmChild(member.getNumChildren() - 1).getJmmChild(0);
+
+        throw new AssertionError("No method " + methodName);
+    }
+
+    @Test
+    public void testMembersReachFixpointsOnTheirOwn() {
+        var semanticsResult = TestUtils.analyse(CODE, Map.of("optimize", "true"));
+        TestUtils.noErrors(semanticsResult);
+
+        var optimizer = new Optimizer();
+        optimizer.optimize(semanticsResult);
+
+        var root = semanticsResult.getRootNode();
+        assertEquals("LiteralExpression", returned(root, "slow").getKind());
+        assertEquals("3", returned(root, "slow").get("value"));
+
+        // Only the slow method needed more than one round, the rest of the tree was not visited again
+        assertTrue(optimizer.getRounds() > 1);
+        assertTrue(optimizer.getNodeVisits() > 0);
+        assertTrue(optimizer.getNodeVisitsSaved() > 0);
+    }
+
+    @Test
+    public void testAllocatedRegistersKeepThisAndParameters() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cpf/4_jasmin/control_flow/SwitchStat.jmm");
+        var expected = ClassRunner.run(TestUtils.backend(code, Collections.emptyMap()), List.of(), false);
+
+        var jasminResult = TestUtils.backend(code, Map.of("optimize", "true", "registerAllocation", "0"));
+        TestUtils.noErrors(jasminResult.getReports());
+
+        var output = ClassRunner.run(jasminResult, List.of(), false);
+
+        assertEquals(output.getStdErr(), 0, output.getReturnValue());
+        assertEquals(expected.getOutput(), output.getOutput());
+    }
+
+    @Test
+    public void testRegisterLimitReportsEveryMethodInOrder() {
+        var code = """
+                class Registers {
+                    public int first(int a) {
+                        int b;
+                        int c;
+                        b = a + 1;
+                        c = b + a;
+                        return b + c;
+                    }
+
+                    public int second(int a) {
+                        int b;
+                        b = a + 2;
+                        return b;
+                    }
+
+                    public static void main(String[] args) {
+                    }
+                }
+                """;
+
+        var ollirResult = TestUtils.optimize(code, Map.of("registerAllocation", "2"));
+        var errors = ollirResult.getReports().stream()
+                .filter(report -> report.getType() == ReportType.ERROR)
+                .map(Report::getMessage)
+                .toList();
+
+        assertEquals(List.of(
+                "Method first needs 4 registers, but only 2 are allowed",
+                "Method second needs 3 registers, but only 2 are allowed"
+        ), errors);
+    }
+}
@@ -0,0 +1,140 @@
+package pt.up.fe.comp;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.ProgramGenerator;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.parser.RecursiveDescentParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link RecursiveDescentParser} builds exactly the same trees as the ANTLR {@link SimpleParser}.
+ */
+public class RecursiveDescentParserTest {
+
+    private static final int SEEDS = 10;
+
+    private static String render(JmmNode node) {
+        var sb = new StringBuilder();
+        render(node, "", sb);
+        return sb.toString();
+    }
+
+    private static void render(JmmNode node, String indent, StringBuilder sb) {
+        sb.append(indent).append(node.getKind()).append(' ').append(node.getHierarchy());
+        for (var attribute : new TreeSet<>(node.getAttributes())) {
+            var value = node.getObject(attribute);
+            sb.append(' ').append(attribute).append('=').append(value == null ? null : value.getClass().getSimpleName() + ":" + value);
+        }
+        sb.append('\n');
+
+        for (var child : node.getChildren()) {
+            assertSame(node, child.getJmmParent());
+            render(child, indent + "  ", sb);
+        }
+    }
+
+    private static JmmParserResult parse(String code, String rule) {
+        var expected = new SimpleParser().parse(code, rule, Collections.emptyMap());
+        var actual = new RecursiveDescentParser().parse(code, rule, Collections.emptyMap());
+
+        assertEquals(expected.getRootNode() == null, actual.getRootNode() == null);
+        if (expected.getRootNode() != null)
+            assertEquals(render(expected.getRootNode()), render(actual.getRootNode()));
+
+        return actual;
+    }
+
+    private static void same(String code, String rule) {
+        TestUtils.noErrors(parse(code, rule));
+    }
+
+    private static void same(String code) {
+        same(code, "program");
+    }
+
+    private static void bothFail(String code) {
+        TestUtils.mustFail(parse(code, "program"));
+    }
+
+    @Test
+    public void testTestFiles() throws IOException {
+        List<Path> files;
+        try (var paths = Files.walk(Path.of("test"))) {
+            files = paths.filter(path -> path.toString().endsWith(".jmm")).sorted().toList();
+        }
+
+        assertFalse(files.isEmpty());
+        for (var file : files)
+            parse(Files.readString(file), "program");
+    }
+
+    @Test
+    public void testGeneratedPrograms() {
+        for (int seed = 0; seed < SEEDS; seed++) {
+            same(new ProgramGenerator(seed).generate());
+            same(new ProgramGenerator(seed).methods(2).expressionDepth(8).generate());
+            same(new ProgramGenerator(seed).methods(2).loopNesting(3).switchWidth(16).generate());
+        }
+    }
+
+    @Test
+    public void testDeclarations() {
+        same("package a.b; import c; import d.e.F; public final class Foo extends g.Bar { }");
+        same("class Foo { private static int[][] a; Bar b = new Bar(); a.B c; public Foo(int x, a.b.C[] y) { } void f() { } }");
+        same("class Foo { public static void main(String[] args) { int a; a.b.C c = d; int[] e = new int[3]; } }");
+    }
+
+    @Test
+    public void testStatements() {
+        same("{ if (a) b(); else { c = 1; } while (i < 10) i++; do ; while (false); }", "statement");
+        same("for (int i = 0; i < n; i++, j--) { break; }", "statement");
+        same("for (i = 0, j = 1; ; ) continue;", "statement");
+        same("for (;;) { }", "statement");
+        same("for (a.B[] x : list) return;", "statement");
+        same("switch (x) { case 1: a(); b(); case 'c': default: return x; }", "statement");
+        same("return a;", "statement");
+        same("a[i] = b;", "statement");
+        same("Foo[] a = b;", "statement");
+    }
+
+    @Test
+    public void testExpressions() {
+        same("a = b += c ? d : e || f && g | h ^ i & j == k != l < m >= n << o >>> p + q - r * s / t % u", "expression");
+        same("a * b + c * d - e / f", "expression");
+        same("!a.b().c[d]++ + -~--e", "expression");
+        same("a ? b ? c : d : e ? f : g", "expression");
+        same("(a + b) * c.length", "expression");
+        same("new int[a.length][0]", "expression");
+        same("new Foo(1, \"two\", '3', 4.0e5, .5, null, true).bar(this)", "expression");
+        same("f(g(h()), i)", "expression");
+        same("a = b = -c * d++ - --e", "expression");
+    }
+
+    @Test
+    public void testComments() {
+        same("/* a */ class // b\n Foo /* c \n d */ { }");
+        same("x /* a */ / y", "expression");
+    }
+
+    @Test
+    public void testErrors() {
+        bothFail("class Foo { int a }");
+        bothFail("class Foo { void f() { if (a) b(); } }");
+        bothFail("class Foo { } class Bar { }");
+        bothFail("class Foo { void f() { a + ; } }");
+        bothFail("class Foo { void f() { x = \"unterminated; } }");
+        bothFail("class Foo { void f() { x = #; } }");
+        bothFail("class Foo { /* }");
+        bothFail("");
+    }
+}
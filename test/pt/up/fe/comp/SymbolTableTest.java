@@ -2,9 +2,10 @@ package pt.up.fe.comp;
 
 import org.junit.Test;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2023.analysis.JmmSymbolTable;
 import pt.up.fe.specs.util.SpecsIo;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  * Test variable lookup.
@@ -121,4 +122,24 @@ public class SymbolTableTest {
     	assertEquals("Parameter 2", "boolean", parameters.get(1).getType().getName());
     	assertEquals("Parameter 3", "Parameters", parameters.get(2).getType().getName());
     }
+
+    @Test
+    public void Lookups() {
+    	var st = (JmmSymbolTable) test("symboltable/MethodsAndFields.jmm",false).getSymbolTable();
+    	assertEquals("boolean", st.getField("field2").getType().getName());
+    	assertNull(st.getField("field4"));
+
+    	var all = st.getMethod("all");
+    	assertEquals("boolean", all.getParameter("b").getType().getName());
+    	assertEquals(2, all.getParameterPosition("maf"));
+    	assertEquals(-1, all.getParameterPosition("c"));
+    	assertTrue(all.getLocalVariable("c").getType().isArray());
+    	assertNull(all.getLocalVariable("a"));
+    	assertNull(st.getMethod("none"));
+
+    	var imports = (JmmSymbolTable) test("symboltable/Imports.jmm",false).getSymbolTable();
+    	assertTrue(imports.isImported("io"));
+    	assertTrue(imports.isImported("List"));
+    	assertFalse(imports.isImported("T"));
+    }
 }
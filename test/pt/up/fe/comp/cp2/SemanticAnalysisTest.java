@@ -85,6 +85,12 @@ public class SemanticAnalysisTest {
         TestUtils.mustFail(result);
     }
 
+    @Test
+    public void intInForCondition() {
+        var result = TestUtils.analyse(SpecsIo.getResource("pt/up/fe/comp/cp2/semanticanalysis/IntInForCondition.jmm"));
+        TestUtils.mustFail(result);
+    }
+
     @Test
     public void arrayInWhileCondition() {
         var result = TestUtils.analyse(SpecsIo.getResource("pt/up/fe/comp/cp2/semanticanalysis/ArrayInWhileCondition.jmm"));